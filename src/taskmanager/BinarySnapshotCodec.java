@@ -0,0 +1,282 @@
+package taskmanager;
+
+import taskmodel.Epic;
+import taskmodel.RecurringTask;
+import taskmodel.Subtask;
+import taskmodel.Task;
+import taskmodel.TaskStatus;
+import taskmodel.TaskType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Двоичный снимок: сигнатура и версия, число задач, записи задач, история.
+ * Числа записываются varint, строки - длиной и байтами UTF-8, время начала - минутой от эпохи
+ * и долей минуты в наносекундах (обычно 0, то есть один байт). Исполнитель задачи записывается последним полем
+ * записи, если он назначен (версия 2), правило повторяющейся задачи - строкой после него (версия 3).
+ * Эпик, в который вложен эпик, записывается на месте эпика подзадачи, если он есть (версия 4);
+ * снимки предыдущих версий читаются по-прежнему, а прежние версии кода не читают снимки новых версий
+ */
+final class BinarySnapshotCodec implements SnapshotCodec {
+    private static final byte[] SIGNATURE = {'J', 'K', 'B', 'S'};
+    private static final byte VERSION = 4;
+    private static final byte VERSION_WITHOUT_ASSIGNEES = 1;
+    private static final int TYPE_MASK = 0b11;
+    private static final int HAS_START_TIME_FLAG = 0b100;
+    private static final int HAS_ASSIGNEE_FLAG = 0b1000;
+    private static final int HAS_PARENT_EPIC_FLAG = 0b10000;
+    private static final TaskType[] TASK_TYPES = TaskType.values();
+    private static final TaskStatus[] TASK_STATUSES = TaskStatus.values();
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+    static boolean hasSignature(ByteBuffer buffer) {
+        if (buffer.remaining() < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (buffer.get(buffer.position() + i) != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] encode(TaskSnapshot snapshot) {
+        ByteWriter writer = new ByteWriter(64 + snapshot.getTasks().size() * 64);
+        writer.writeBytes(SIGNATURE);
+        writer.writeByte(VERSION);
+        writer.writeVarInt(snapshot.getTasks().size());
+        for (Task task : snapshot.getTasks()) {
+            writeTask(writer, task);
+        }
+        writer.writeVarInt(snapshot.getHistoryIds().size());
+        for (Integer historyId : snapshot.getHistoryIds()) {
+            writer.writeVarInt(historyId);
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public TaskSnapshot decode(ByteBuffer buffer) {
+        try {
+            if (!hasSignature(buffer)) {
+                throw new ManagerSaveException("Файл не является двоичным снимком менеджера");
+            }
+            buffer.position(buffer.position() + SIGNATURE.length);
+            byte version = buffer.get();
+            if (version < VERSION_WITHOUT_ASSIGNEES || version > VERSION) {
+                throw new ManagerSaveException("Неподдерживаемая версия двоичного снимка менеджера");
+            }
+            byte[] stringBuffer = new byte[256];
+            int taskCount = readVarInt(buffer);
+            List<Task> tasks = new ArrayList<>(taskCount);
+            for (int i = 0; i < taskCount; i++) {
+                stringBuffer = readTask(buffer, stringBuffer, tasks);
+            }
+            int historyCount = readVarInt(buffer);
+            List<Integer> historyIds = new ArrayList<>(historyCount);
+            for (int i = 0; i < historyCount; i++) {
+                historyIds.add(readVarInt(buffer));
+            }
+            return new TaskSnapshot(tasks, historyIds);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                 | DateTimeException e) {
+            throw new ManagerSaveException("Двоичный снимок менеджера поврежден");
+        }
+    }
+
+    private static void writeTask(ByteWriter writer, Task task) {
+        TaskType taskType = FileBackedUtils.typeOf(task);
+        LocalDateTime startTime = task.getStartTime();
+        Integer parentEpicId = taskType == TaskType.EPIC ? ((Epic) task).getIdParentEpic() : null;
+        writer.writeByte(taskType.ordinal() | (startTime != null ? HAS_START_TIME_FLAG : 0)
+                | (task.getAssignee() != null ? HAS_ASSIGNEE_FLAG : 0)
+                | (parentEpicId != null ? HAS_PARENT_EPIC_FLAG : 0));
+        writer.writeVarInt(task.getId());
+        writer.writeByte(task.getStatus().ordinal());
+        writer.writeString(task.getName());
+        writer.writeString(task.getDescription());
+        writer.writeVarInt((int) task.getDuration().toMinutes());
+        if (startTime != null) {
+            long epochSecond = startTime.toEpochSecond(ZoneOffset.UTC);
+            writer.writeVarLong(zigZag(Math.floorDiv(epochSecond, 60)));
+            writer.writeVarLong(Math.floorMod(epochSecond, 60) * 1_000_000_000L + startTime.getNano());
+        }
+        if (taskType == TaskType.SUBTASK) {
+            writer.writeVarInt(((Subtask) task).getIdEpic());
+        } else if (parentEpicId != null) {
+            writer.writeVarInt(parentEpicId);
+        }
+        if (task.getAssignee() != null) {
+            writer.writeString(task.getAssignee());
+        }
+        if (taskType == TaskType.RECURRING) {
+            writer.writeString(((RecurringTask) task).getRule().toString());
+        }
+    }
+
+    /**
+     * чтение записи задачи; возвращает буфер строк (он растет под самую длинную строку)
+     */
+    private static byte[] readTask(ByteBuffer buffer, byte[] stringBuffer, List<Task> tasks) {
+        int header = buffer.get();
+        TaskType taskType = TASK_TYPES[header & TYPE_MASK];
+        int id = readVarInt(buffer);
+        TaskStatus status = TASK_STATUSES[buffer.get()];
+        int nameLength = readVarInt(buffer) - 1;
+        stringBuffer = ensureCapacity(buffer, stringBuffer, nameLength);
+        String name = readString(buffer, nameLength, stringBuffer);
+        int descriptionLength = readVarInt(buffer) - 1;
+        stringBuffer = ensureCapacity(buffer, stringBuffer, descriptionLength);
+        String description = readString(buffer, descriptionLength, stringBuffer);
+        Duration duration = Duration.ofMinutes(readVarInt(buffer));
+        LocalDateTime startTime = null;
+        if ((header & HAS_START_TIME_FLAG) != 0) {
+            long epochMinute = unZigZag(readVarLong(buffer));
+            long nanoOfMinute = readVarLong(buffer);
+            if (nanoOfMinute >= NANOS_PER_MINUTE) {
+                throw new IllegalArgumentException();
+            }
+            startTime = LocalDateTime.ofEpochSecond(epochMinute * 60 + nanoOfMinute / 1_000_000_000L,
+                    (int) (nanoOfMinute % 1_000_000_000L), ZoneOffset.UTC);
+        }
+        Integer epicId = taskType == TaskType.SUBTASK || (header & HAS_PARENT_EPIC_FLAG) != 0 ?
+                readVarInt(buffer) : null;
+        String assignee = null;
+        if ((header & HAS_ASSIGNEE_FLAG) != 0) {
+            int assigneeLength = readVarInt(buffer) - 1;
+            stringBuffer = ensureCapacity(buffer, stringBuffer, assigneeLength);
+            assignee = readString(buffer, assigneeLength, stringBuffer);
+        }
+        Task task;
+        if (taskType == TaskType.RECURRING) {
+            int ruleLength = readVarInt(buffer) - 1;
+            stringBuffer = ensureCapacity(buffer, stringBuffer, ruleLength);
+            task = new RecurringTask(id, name, description, status, duration, startTime,
+                    FileBackedUtils.parseRule(readString(buffer, ruleLength, stringBuffer)));
+        } else {
+            task = FileBackedUtils.createTask(taskType, id, name, description, status, duration, startTime, epicId);
+        }
+        task.setAssignee(assignee);
+        tasks.add(task);
+        return stringBuffer;
+    }
+
+    private static byte[] ensureCapacity(ByteBuffer buffer, byte[] stringBuffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length > stringBuffer.length ? new byte[Math.max(length, stringBuffer.length * 2)] : stringBuffer;
+    }
+
+    private static String readString(ByteBuffer buffer, int length, byte[] stringBuffer) {
+        if (length < 0) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        buffer.get(stringBuffer, 0, length);
+        return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * растущий буфер записи снимка
+     */
+    private static final class ByteWriter {
+        private byte[] bytes;
+        private int size;
+
+        ByteWriter(int initialCapacity) {
+            bytes = new byte[initialCapacity];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * строка: длина + 1 (0 - отсутствующая строка) и байты UTF-8
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length + 1);
+            writeBytes(utf8);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+    }
+}
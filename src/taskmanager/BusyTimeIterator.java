@@ -0,0 +1,81 @@
+package taskmanager;
+
+import taskmodel.RecurringTask;
+import taskmodel.Task;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Занятое время исполнителя в порядке начала: задачи его расписания и повторения его повторяющихся задач,
+ * начинающиеся не раньше from. Повторения строятся порциями по EXPANSION_DAYS дней только по мере продвижения,
+ * поэтому для повторяющихся задач без окончания перебор бесконечен и ограничивается вызывающей стороной
+ */
+final class BusyTimeIterator implements Iterator<Task> {
+    static final int EXPANSION_DAYS = 28;
+
+    private final Iterator<Task> timelineTasks;
+    private final List<RecurringTask> recurringTasks;
+    private final PriorityQueue<Task> occurrences = new PriorityQueue<>(TaskOrder.START_ID_ORDER);
+    private final LocalDateTime expansionEnd; //после него повторений нет, null - есть задачи без окончания
+    private LocalDateTime expandedUntil; //повторения, начинающиеся раньше, уже построены
+    private Task nextTimelineTask;
+
+    BusyTimeIterator(Iterator<Task> timelineTasks, List<RecurringTask> recurringTasks, LocalDateTime from) {
+        this.timelineTasks = timelineTasks;
+        this.recurringTasks = recurringTasks;
+        this.expandedUntil = from;
+        LocalDateTime lastUntil = from;
+        for (RecurringTask recurringTask : recurringTasks) {
+            if (recurringTask.getRule().getUntil() == null) {
+                lastUntil = null;
+                break;
+            }
+            LocalDateTime untilEnd = recurringTask.getRule().getUntil().plusDays(1).atStartOfDay();
+            if (untilEnd.isAfter(lastUntil)) {
+                lastUntil = untilEnd;
+            }
+        }
+        expansionEnd = lastUntil;
+        nextTimelineTask = timelineTasks.hasNext() ? timelineTasks.next() : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return peekOccurrence() != null || nextTimelineTask != null;
+    }
+
+    @Override
+    public Task next() {
+        Task occurrence = peekOccurrence();
+        if (occurrence != null && (nextTimelineTask == null
+                || occurrence.getStartTime().isBefore(nextTimelineTask.getStartTime()))) {
+            return occurrences.poll();
+        }
+        if (nextTimelineTask == null) {
+            throw new NoSuchElementException();
+        }
+        Task task = nextTimelineTask;
+        nextTimelineTask = timelineTasks.hasNext() ? timelineTasks.next() : null;
+        return task;
+    }
+
+    /**
+     * Ближайшее повторение; порции строятся, пока очередь пуста и следующая задача расписания
+     * (если она есть) начинается не раньше построенной части
+     */
+    private Task peekOccurrence() {
+        while (occurrences.isEmpty() && (expansionEnd == null || expandedUntil.isBefore(expansionEnd))
+                && (nextTimelineTask == null || !nextTimelineTask.getStartTime().isBefore(expandedUntil))) {
+            LocalDateTime expandFrom = expandedUntil;
+            expandedUntil = expandedUntil.plusDays(EXPANSION_DAYS);
+            for (RecurringTask recurringTask : recurringTasks) {
+                occurrences.addAll(recurringTask.getOccurrencesStartingBetween(expandFrom, expandedUntil));
+            }
+        }
+        return occurrences.peek();
+    }
+}
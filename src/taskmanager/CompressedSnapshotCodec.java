@@ -0,0 +1,225 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатый снимок: сигнатура и версия, оглавление блоков с собственной контрольной суммой, блоки.
+ * Каждый блок - двоичный снимок части задач (последний блок - история), сжатый Deflate независимо от других
+ * и защищенный CRC32C. Блоки сжимаются и проверяются параллельно; поврежденный блок пропускается
+ * и попадает в список поврежденных блоков снимка, остальные загружаются
+ */
+final class CompressedSnapshotCodec implements SnapshotCodec {
+    private static final byte[] SIGNATURE = {'J', 'K', 'B', 'Z'};
+    private static final byte VERSION = 1;
+    /**
+     * число задач в одном блоке
+     */
+    static final int TASKS_PER_BLOCK = 1024;
+    private static final int BLOCK_ENTRY_BYTES = 3 * Integer.BYTES;
+    private static final BinarySnapshotCodec BLOCK_CODEC = new BinarySnapshotCodec();
+
+    static boolean hasSignature(ByteBuffer buffer) {
+        if (buffer.remaining() < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (buffer.get(buffer.position() + i) != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] encode(TaskSnapshot snapshot) {
+        List<Task> tasks = snapshot.getTasks();
+        List<BlockEncoder> blocks = new ArrayList<>();
+        for (int from = 0; from < tasks.size(); from += TASKS_PER_BLOCK) {
+            List<Task> blockTasks = tasks.subList(from, Math.min(from + TASKS_PER_BLOCK, tasks.size()));
+            blocks.add(new BlockEncoder(new TaskSnapshot(blockTasks, List.of())));
+        }
+        blocks.add(new BlockEncoder(new TaskSnapshot(List.of(), snapshot.getHistoryIds())));
+        ForkJoinTask.invokeAll(blocks);
+
+        int tableSize = Integer.BYTES + blocks.size() * BLOCK_ENTRY_BYTES;
+        int size = SIGNATURE.length + 1 + tableSize + Integer.BYTES;
+        for (BlockEncoder block : blocks) {
+            size += block.compressed.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(SIGNATURE).put(VERSION);
+        int tableStart = buffer.position();
+        buffer.putInt(blocks.size());
+        for (BlockEncoder block : blocks) {
+            buffer.putInt(block.compressed.length).putInt(block.uncompressedLength).putInt(block.checksum);
+        }
+        buffer.putInt(checksum(buffer, tableStart, tableSize));
+        for (BlockEncoder block : blocks) {
+            buffer.put(block.compressed);
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public TaskSnapshot decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (!hasSignature(buffer) || buffer.remaining() < SIGNATURE.length + 1 + 2 * Integer.BYTES) {
+            throw new ManagerSaveException("Файл не является сжатым снимком менеджера");
+        }
+        if (buffer.get(start + SIGNATURE.length) != VERSION) {
+            throw new ManagerSaveException("Неподдерживаемая версия сжатого снимка менеджера");
+        }
+        int tableStart = start + SIGNATURE.length + 1;
+        int blockCount = buffer.getInt(tableStart);
+        long tableSize = Integer.BYTES + (long) blockCount * BLOCK_ENTRY_BYTES;
+        if (blockCount <= 0 || tableStart + tableSize + Integer.BYTES > buffer.limit()
+                || buffer.getInt(tableStart + (int) tableSize) != checksum(buffer, tableStart, (int) tableSize)) {
+            throw new ManagerSaveException("Оглавление сжатого снимка менеджера повреждено");
+        }
+
+        List<BlockDecoder> blocks = new ArrayList<>(blockCount);
+        long offset = tableStart + tableSize + Integer.BYTES;
+        for (int i = 0; i < blockCount; i++) {
+            int entry = tableStart + Integer.BYTES + i * BLOCK_ENTRY_BYTES;
+            BlockDecoder block = new BlockDecoder(buffer, i, offset, buffer.getInt(entry),
+                    buffer.getInt(entry + Integer.BYTES), buffer.getInt(entry + 2 * Integer.BYTES));
+            blocks.add(block);
+            offset += Math.max(0, block.compressedLength);
+        }
+        ForkJoinTask.invokeAll(blocks);
+
+        List<Task> tasks = new ArrayList<>();
+        List<Integer> historyIds = new ArrayList<>();
+        List<CorruptSnapshotBlock> corruptBlocks = new ArrayList<>();
+        for (BlockDecoder block : blocks) {
+            if (block.failure != null) {
+                corruptBlocks.add(new CorruptSnapshotBlock(block.index, block.offset - start, block.failure));
+            } else {
+                tasks.addAll(block.decoded.getTasks());
+                historyIds.addAll(block.decoded.getHistoryIds());
+            }
+        }
+        buffer.position(buffer.limit());
+        return new TaskSnapshot(tasks, historyIds, corruptBlocks);
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int length) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer region = buffer.duplicate();
+        region.limit(from + length).position(from);
+        crc.update(region);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * сжатие одного блока
+     */
+    private static final class BlockEncoder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TaskSnapshot blockSnapshot;
+        private byte[] compressed;
+        private int uncompressedLength;
+        private int checksum;
+
+        BlockEncoder(TaskSnapshot blockSnapshot) {
+            this.blockSnapshot = blockSnapshot;
+        }
+
+        @Override
+        protected void compute() {
+            byte[] uncompressed = BLOCK_CODEC.encode(blockSnapshot);
+            uncompressedLength = uncompressed.length;
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(uncompressed);
+                deflater.finish();
+                ByteBuffer output = ByteBuffer.allocate(uncompressed.length + uncompressed.length / 1000 + 64);
+                while (!deflater.finished()) {
+                    if (!output.hasRemaining()) {
+                        output = ByteBuffer.allocate(output.capacity() * 2).put(output.flip());
+                    }
+                    deflater.deflate(output);
+                }
+                output.flip();
+                compressed = new byte[output.remaining()];
+                output.get(compressed);
+            } finally {
+                deflater.end();
+            }
+            checksum = checksum(ByteBuffer.wrap(compressed), 0, compressed.length);
+        }
+    }
+
+    /**
+     * проверка и распаковка одного блока; ошибка запоминается вместо прерывания загрузки
+     */
+    private static final class BlockDecoder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+        private final int index;
+        private final long offset;
+        private final int compressedLength;
+        private final int uncompressedLength;
+        private final int expectedChecksum;
+        private TaskSnapshot decoded;
+        private String failure;
+
+        BlockDecoder(ByteBuffer buffer, int index, long offset, int compressedLength, int uncompressedLength,
+                     int expectedChecksum) {
+            this.buffer = buffer;
+            this.index = index;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.uncompressedLength = uncompressedLength;
+            this.expectedChecksum = expectedChecksum;
+        }
+
+        @Override
+        protected void compute() {
+            if (compressedLength < 0 || uncompressedLength < 0 || offset + compressedLength > buffer.limit()) {
+                failure = "Блок обрывается до конца файла";
+                return;
+            }
+            if (checksum(buffer, (int) offset, compressedLength) != expectedChecksum) {
+                failure = "Контрольная сумма блока не совпадает";
+                return;
+            }
+            ByteBuffer compressed = buffer.duplicate();
+            compressed.limit((int) offset + compressedLength).position((int) offset);
+            ByteBuffer uncompressed = ByteBuffer.allocate(uncompressedLength);
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                while (!inflater.finished() && uncompressed.hasRemaining()) {
+                    if (inflater.inflate(uncompressed) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                }
+                if (!inflater.finished() || uncompressed.hasRemaining()) {
+                    failure = "Размер распакованного блока не совпадает";
+                    return;
+                }
+                uncompressed.flip();
+                decoded = BLOCK_CODEC.decode(uncompressed);
+            } catch (DataFormatException e) {
+                failure = "Ошибка распаковки блока";
+            } catch (ManagerSaveException e) {
+                failure = e.getMessage();
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
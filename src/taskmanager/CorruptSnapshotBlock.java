@@ -0,0 +1,37 @@
+package taskmanager;
+
+/**
+ * Поврежденный блок сжатого снимка, пропущенный при загрузке менеджера
+ */
+public final class CorruptSnapshotBlock {
+    private final int blockIndex; //номер блока, с 0
+    private final long offset; //смещение блока в файле
+    private final String reason; //причина: несовпадение контрольной суммы, обрыв файла, ошибка распаковки
+
+    CorruptSnapshotBlock(int blockIndex, long offset, String reason) {
+        this.blockIndex = blockIndex;
+        this.offset = offset;
+        this.reason = reason;
+    }
+
+    public int getBlockIndex() {
+        return blockIndex;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "CorruptSnapshotBlock{" +
+                "blockIndex=" + blockIndex +
+                ", offset=" + offset +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
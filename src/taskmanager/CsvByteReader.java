@@ -0,0 +1,302 @@
+package taskmanager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+
+/**
+ * Чтение csv прямо из буфера файла (в том числе отображенного в память) без построения строк для целых записей:
+ * курсор переходит от поля к полю текущей записи, числа и время разбираются из байтов,
+ * строки декодируются только для текстовых полей
+ */
+final class CsvByteReader {
+    private static final byte[] NULL_VALUE = {'n', 'u', 'l', 'l'};
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer fieldView; //копия буфера для чтения полей, когда у буфера нет массива (отображенный файл)
+    private final int limit;
+    private int position;
+    private int fieldStart;
+    private int fieldEnd;
+    private boolean recordEnded = true;
+    private boolean fieldEscaped; //в поле есть удвоенные кавычки
+    private byte[] fieldBytes = new byte[256];
+
+    CsvByteReader(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    /**
+     * чтение части буфера [start, end) - куска файла при параллельном разборе
+     */
+    CsvByteReader(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.fieldView = buffer.duplicate();
+        this.position = start;
+        this.limit = end;
+    }
+
+    int position() {
+        return position;
+    }
+
+    /**
+     * позиция начала первой записи, начинающейся не раньше from; конец буфера, если таких записей нет
+     */
+    static int nextRecordStart(ByteBuffer buffer, int from) {
+        int index = from;
+        if (index > buffer.position() && buffer.get(index - 1) != '\n') {
+            while (index < buffer.limit() && buffer.get(index) != '\n') {
+                index++;
+            }
+            index = Math.min(index + 1, buffer.limit());
+        }
+        return index;
+    }
+
+    boolean hasRemaining() {
+        return position < limit;
+    }
+
+    /**
+     * текущая строка пустая (разделитель задач и истории) или буфер закончился
+     */
+    boolean atBlankLine() {
+        if (position >= limit) {
+            return true;
+        }
+        byte b = buffer.get(position);
+        return b == '\n' || (b == '\r' && position + 1 < limit && buffer.get(position + 1) == '\n');
+    }
+
+    /**
+     * пропуск строки целиком (заголовок, пустая строка)
+     */
+    void skipLine() {
+        while (position < limit && buffer.get(position++) != '\n') {
+        }
+        recordEnded = true;
+    }
+
+    void beginRecord() {
+        recordEnded = false;
+    }
+
+    boolean hasMoreFields() {
+        return !recordEnded;
+    }
+
+    /**
+     * переход к следующему полю текущей записи; поле в кавычках может содержать запятые, переводы строк
+     * и удвоенные кавычки
+     */
+    void nextField() {
+        if (recordEnded) {
+            throw new ManagerSaveException("Ошибка парсинга записи");
+        }
+        fieldEscaped = false;
+        if (position < limit && buffer.get(position) == '"') {
+            nextQuotedField();
+            return;
+        }
+        fieldStart = position;
+        int index = position;
+        while (index < limit) {
+            byte b = buffer.get(index);
+            if (b == ',') {
+                fieldEnd = index;
+                position = index + 1;
+                return;
+            }
+            if (b == '\n') {
+                break;
+            }
+            index++;
+        }
+        fieldEnd = index > fieldStart && buffer.get(index - 1) == '\r' ? index - 1 : index;
+        position = Math.min(index + 1, limit);
+        recordEnded = true;
+    }
+
+    private void nextQuotedField() {
+        int index = position + 1;
+        fieldStart = index;
+        while (true) {
+            if (index >= limit) {
+                position = limit; //незакрытая кавычка: остаток буфера - недописанная запись
+                throw new ManagerSaveException("Ошибка парсинга записи");
+            }
+            if (buffer.get(index) == '"') {
+                if (index + 1 < limit && buffer.get(index + 1) == '"') {
+                    fieldEscaped = true;
+                    index += 2;
+                    continue;
+                }
+                break;
+            }
+            index++;
+        }
+        fieldEnd = index++;
+        if (index < limit && buffer.get(index) == ',') {
+            position = index + 1;
+            return;
+        }
+        if (index < limit && buffer.get(index) == '\r') {
+            index++;
+        }
+        if (index < limit && buffer.get(index) != '\n') {
+            position = index;
+            throw new ManagerSaveException("Ошибка парсинга записи");
+        }
+        position = Math.min(index + 1, limit);
+        recordEnded = true;
+    }
+
+    /**
+     * завершение записи: оставшиеся поля пропускаются
+     */
+    void endRecord() {
+        if (!recordEnded) {
+            skipLine();
+        }
+    }
+
+    boolean isFieldEmpty() {
+        return fieldEnd == fieldStart;
+    }
+
+    int fieldAsInt() {
+        long value = fieldAsLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new ManagerSaveException("Ошибка парсинга записи");
+        }
+        return (int) value;
+    }
+
+    long fieldAsLong() {
+        return parseLong(fieldStart, fieldEnd);
+    }
+
+    /**
+     * значение перечисления, имя которого совпадает с полем
+     */
+    <E extends Enum<E>> E fieldAsEnum(E[] values) {
+        for (E value : values) {
+            if (fieldEquals(value.name())) {
+                return value;
+            }
+        }
+        throw new ManagerSaveException("Ошибка парсинга записи");
+    }
+
+    String fieldAsString() {
+        int length = fieldEnd - fieldStart;
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + fieldStart, length, StandardCharsets.UTF_8);
+        } else {
+            if (length > fieldBytes.length) {
+                fieldBytes = new byte[Math.max(length, fieldBytes.length * 2)];
+            }
+            fieldView.position(fieldStart);
+            fieldView.get(fieldBytes, 0, length);
+            value = new String(fieldBytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return fieldEscaped ? value.replace("\"\"", "\"") : value;
+    }
+
+    /**
+     * время в формате LocalDateTime.toString(); "null" - время не задано
+     */
+    LocalDateTime fieldAsDateTime() {
+        if (fieldEquals(NULL_VALUE)) {
+            return null;
+        }
+        try {
+            return isPlainDateTime() ? parsePlainDateTime() : LocalDateTime.parse(fieldAsString());
+        } catch (DateTimeException e) {
+            throw new ManagerSaveException("Ошибка парсинга записи");
+        }
+    }
+
+    boolean fieldEquals(String ascii) {
+        if (ascii.length() != fieldEnd - fieldStart) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(fieldStart + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean fieldEquals(byte[] ascii) {
+        if (ascii.length != fieldEnd - fieldStart) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length; i++) {
+            if (buffer.get(fieldStart + i) != ascii[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * время вида yyyy-MM-ddTHH:mm[:ss[.n]], которое разбирается без строки; остальное (годы вне 0000-9999)
+     * разбирает LocalDateTime.parse
+     */
+    private boolean isPlainDateTime() {
+        int length = fieldEnd - fieldStart;
+        return length >= 16 && buffer.get(fieldStart + 4) == '-' && buffer.get(fieldStart + 7) == '-'
+                && buffer.get(fieldStart + 10) == 'T' && buffer.get(fieldStart + 13) == ':'
+                && (length == 16 || (length >= 19 && buffer.get(fieldStart + 16) == ':'
+                && (length == 19 || (length >= 21 && length <= 29 && buffer.get(fieldStart + 19) == '.'))));
+    }
+
+    private LocalDateTime parsePlainDateTime() {
+        int length = fieldEnd - fieldStart;
+        int second = length > 16 ? parseDigits(fieldStart + 17, fieldStart + 19) : 0;
+        int nano = 0;
+        if (length > 19) {
+            nano = parseDigits(fieldStart + 20, fieldEnd);
+            for (int i = length - 20; i < 9; i++) {
+                nano *= 10;
+            }
+        }
+        return LocalDateTime.of(parseDigits(fieldStart, fieldStart + 4), parseDigits(fieldStart + 5, fieldStart + 7),
+                parseDigits(fieldStart + 8, fieldStart + 10), parseDigits(fieldStart + 11, fieldStart + 13),
+                parseDigits(fieldStart + 14, fieldStart + 16), second, nano);
+    }
+
+    private int parseDigits(int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ManagerSaveException("Ошибка парсинга записи");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private long parseLong(int start, int end) {
+        boolean negative = start < end && buffer.get(start) == '-';
+        int index = negative ? start + 1 : start;
+        if (index == end || end - index > 18) {
+            throw new ManagerSaveException("Ошибка парсинга записи");
+        }
+        long value = 0;
+        for (; index < end; index++) {
+            int digit = buffer.get(index) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ManagerSaveException("Ошибка парсинга записи");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,170 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Снимок в csv: заголовок, строки задач, пустая строка, строка истории.
+ * Текстовые поля с запятыми, кавычками и переводами строк берутся в кавычки
+ */
+final class CsvSnapshotCodec implements SnapshotCodec {
+    static final String TASK_CSV_HEADER = "id,type,name,status,description,duration,starttime,epic,assignee";
+    /**
+     * размер строк задач, начиная с которого снимок разбирается параллельно
+     */
+    static final int PARALLEL_PARSE_MIN_BYTES = 1024 * 1024;
+    private static final int PARALLEL_PARSE_CHUNK_BYTES = 256 * 1024;
+
+    @Override
+    public byte[] encode(TaskSnapshot snapshot) {
+        StringBuilder csv = new StringBuilder(64 + snapshot.getTasks().size() * 96);
+        csv.append(TASK_CSV_HEADER).append('\n');
+        for (Task task : snapshot.getTasks()) {
+            FileBackedUtils.appendCsvRow(csv, task);
+            csv.append('\n');
+        }
+        csv.append('\n');
+        for (int i = 0; i < snapshot.getHistoryIds().size(); i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            csv.append(snapshot.getHistoryIds().get(i).intValue());
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * разбор снимка прямо из буфера: строки создаются только для названий и описаний задач.
+     * Большой снимок делится на куски по границам записей, которые разбираются параллельно
+     */
+    @Override
+    public TaskSnapshot decode(ByteBuffer buffer) {
+        CsvByteReader reader = new CsvByteReader(buffer);
+        reader.skipLine(); //первая строка - заголовок
+        int tasksStart = reader.position();
+        int tasksSize = buffer.limit() - tasksStart;
+        ParsedChunk parsed;
+        if (tasksSize >= PARALLEL_PARSE_MIN_BYTES && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            parsed = parseInParallel(buffer, tasksStart);
+        } else {
+            parsed = new ParsedChunk(buffer, tasksStart, buffer.limit());
+            parsed.parse();
+        }
+        List<Integer> historyIds = new ArrayList<>();
+        if (parsed.historyStart >= 0) {
+            reader = new CsvByteReader(buffer, parsed.historyStart, buffer.limit());
+            reader.skipLine(); //пустая строка перед историей
+            if (!reader.atBlankLine()) {
+                reader.beginRecord();
+                while (reader.hasMoreFields()) {
+                    reader.nextField();
+                    if (!reader.isFieldEmpty()) {
+                        historyIds.add(reader.fieldAsInt());
+                    }
+                }
+            }
+        }
+        return new TaskSnapshot(parsed.tasks, historyIds);
+    }
+
+    /**
+     * разбор кусков на ForkJoinPool и склейка результатов в порядке файла. Кусок, в котором встретилась
+     * пустая строка, последний: следующие за ним куски приходятся на историю и отбрасываются
+     */
+    private static ParsedChunk parseInParallel(ByteBuffer buffer, int tasksStart) {
+        int tasksSize = buffer.limit() - tasksStart;
+        int chunkCount = Math.max(2, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4,
+                tasksSize / PARALLEL_PARSE_CHUNK_BYTES));
+        List<ParsedChunk> chunks = new ArrayList<>(chunkCount);
+        int chunkStart = tasksStart;
+        for (int i = 1; i <= chunkCount && chunkStart < buffer.limit(); i++) {
+            int chunkEnd = i == chunkCount ? buffer.limit() :
+                    CsvByteReader.nextRecordStart(buffer, tasksStart + (int) ((long) tasksSize * i / chunkCount));
+            if (chunkEnd > chunkStart) {
+                chunks.add(new ParsedChunk(buffer, chunkStart, chunkEnd));
+            }
+            chunkStart = chunkEnd;
+        }
+        ForkJoinTask.invokeAll(chunks);
+
+        int taskCount = 0;
+        for (ParsedChunk chunk : chunks) {
+            taskCount += chunk.tasks.size();
+        }
+        ParsedChunk parsed = new ParsedChunk(buffer, tasksStart, buffer.limit());
+        parsed.tasks = new ArrayList<>(taskCount);
+        int recordStart = tasksStart; //начало записи, следующей за уже принятыми
+        for (ParsedChunk chunk : chunks) {
+            if (chunk.end <= recordStart) {
+                continue; //кусок целиком внутри последней записи предыдущего куска
+            }
+            if (chunk.start != recordStart) {
+                //предыдущий кусок закончился записью с переводом строки в кавычках: кусок начался внутри нее
+                chunk = new ParsedChunk(buffer, recordStart, chunk.end);
+                chunk.parse();
+            }
+            parsed.tasks.addAll(chunk.tasks);
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+            if (chunk.historyStart >= 0) {
+                parsed.historyStart = chunk.historyStart;
+                break;
+            }
+            recordStart = chunk.stop;
+        }
+        return parsed;
+    }
+
+    /**
+     * кусок строк задач: записи, начинающиеся в [start, end) (последняя может заканчиваться за end),
+     * и позиция пустой строки перед историей, если она попала в кусок. Ошибка разбора запоминается - она важна,
+     * только если кусок начался на границе записи и не оказался после истории
+     */
+    private static final class ParsedChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private List<Task> tasks = new ArrayList<>();
+        private int historyStart = -1;
+        private int stop; //позиция после последней разобранной записи
+        private RuntimeException failure;
+
+        ParsedChunk(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                parse();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        void parse() {
+            CsvByteReader reader = new CsvByteReader(buffer, start, buffer.limit());
+            while (reader.position() < end) {
+                if (reader.atBlankLine()) {
+                    historyStart = reader.position();
+                    break;
+                }
+                reader.beginRecord();
+                tasks.add(FileBackedUtils.readTask(reader));
+            }
+            stop = reader.position();
+        }
+    }
+}
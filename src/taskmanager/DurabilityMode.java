@@ -0,0 +1,23 @@
+package taskmanager;
+
+/**
+ * Надежность сохранения файлового менеджера: когда записанные данные принудительно сбрасываются на диск (fsync).
+ * Снимок в любом режиме пишется во временный файл и атомарно подменяет файл менеджера
+ */
+public enum DurabilityMode {
+    /**
+     * без принудительного сброса: данные сбрасывает операционная система. Сбой процесса файл менеджера
+     * не повреждает, но после сбоя питания подмененный файл может оказаться пустым или обрезанным:
+     * временный файл переименовывается без сброса на диск
+     */
+    NO_SYNC,
+    /**
+     * сброс на диск после каждого сохранения: изменение не теряется после возврата из метода менеджера
+     */
+    SYNC_EACH_COMMIT,
+    /**
+     * сброс на диск не чаще одного раза за интервал, а также по таймеру, при flush() и close():
+     * при сбое теряются изменения не более чем за интервал
+     */
+    SYNC_INTERVAL
+}
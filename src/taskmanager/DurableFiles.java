@@ -0,0 +1,93 @@
+package taskmanager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Запись файлов менеджера, устойчивая к сбоям
+ */
+final class DurableFiles {
+
+    private DurableFiles() {
+    }
+
+    /**
+     * путь к временному файлу, в который пишется новый снимок перед подменой файла менеджера
+     */
+    static Path tempPathFor(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * запись содержимого во временный файл рядом с target и атомарная подмена target переименованием:
+     * при сбое во время записи на диске остается прежний целый файл. При sync данные сбрасываются на диск
+     * до переименования, а каталог - после, чтобы переименование тоже пережило сбой
+     */
+    static void writeAtomically(Path target, byte[] content, boolean sync) throws IOException {
+        replace(writeTemp(target, content, sync), target);
+        if (sync) {
+            syncDirectory(target);
+        }
+    }
+
+    /**
+     * запись содержимого во временный файл рядом с target (при sync - со сбросом на диск); возвращается путь к нему
+     */
+    static Path writeTemp(Path target, byte[] content, boolean sync) throws IOException {
+        Path tempPath = tempPathFor(target);
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(true);
+            }
+        }
+        return tempPath;
+    }
+
+    /**
+     * атомарная подмена target файлом source, если файловая система это позволяет
+     */
+    static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * сброс на диск уже записанного файла и его каталога
+     */
+    static void sync(Path file) throws IOException {
+        syncFile(file);
+        syncDirectory(file);
+    }
+
+    static void syncFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * сброс на диск каталога файла (создание, переименование и удаление файлов в нем)
+     */
+    static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //не все системы позволяют открыть каталог (Windows); там переименование фиксирует файловая система
+        }
+    }
+}
@@ -1,31 +1,84 @@
 package taskmanager;
 
 import taskmodel.Epic;
+import taskmodel.RecurringTask;
 import taskmodel.Subtask;
 import taskmodel.Task;
 import taskmodel.TaskStatus;
 import taskmodel.TaskType;
 
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
     static final String DEFAULT_TASK_MANAGER_PATH = "resources/task_manager.csv";
-    static final String TASK_CSV_HEADER = "id,type,name,status,description,duration,starttime,epic";
+    /**
+     * минимальное число записей журнала, после которого журнал сжимается в файл менеджера
+     */
+    static final int JOURNAL_COMPACT_MIN_RECORDS = 1000;
+    /**
+     * размер файла менеджера, начиная с которого при загрузке файл отображается в память
+     */
+    static final int MAPPED_LOAD_MIN_BYTES = 64 * 1024;
+    /**
+     * интервал сброса на диск по умолчанию для режима DurabilityMode.SYNC_INTERVAL
+     */
+    static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofSeconds(1);
 
     private Path taskManagerPath;
+    private final SaveMode saveMode;
+    private final TaskJournal journal; //журнал изменений, в режимах снимка и сегментов - журнал просмотров
+    private final TaskSegments segments; //сегменты задач в режиме сегментов
+    private Set<Integer> dirtySegments = new HashSet<>(); //сегменты с несохраненными изменениями
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private List<CorruptSnapshotBlock> corruptBlocks = List.of(); //блоки снимка, пропущенные при загрузке
+    private final List<Integer> orphanedTaskIds = new ArrayList<>(); //задачи журнала, ссылавшиеся на потерянные задачи
+    private boolean restoring; //признак восстановления менеджера из файла: изменения не сохраняются
+
+    private final Object fileLock = new Object(); //порядок записи в файлы при фоновом сохранении
+    private WriteBehindSaver writeBehindSaver; //поток фонового сохранения, если оно включено
+    private boolean snapshotDirty; //есть несохраненные изменения снимка
+    private List<String> pendingJournalRecords = new ArrayList<>(); //несброшенные записи журнала
+
+    private DurabilityMode durabilityMode = DurabilityMode.NO_SYNC;
+    private long syncIntervalNanos = DEFAULT_SYNC_INTERVAL.toNanos();
+    private long lastSyncNanos = System.nanoTime();
+    private IntervalSyncer intervalSyncer; //поток сброса на диск по таймеру в режиме SYNC_INTERVAL
+    private boolean snapshotUnsynced; //файл менеджера записан без сброса на диск (режим SYNC_INTERVAL)
+    private boolean journalUnsynced; //журнал дописан без сброса на диск (режим SYNC_INTERVAL)
+    private final Set<Integer> unsyncedSegments = new HashSet<>(); //сегменты, записанные без сброса на диск
 
     public FileBackedTaskManager(HistoryManager historyManager) {
+        this(historyManager, Paths.get(DEFAULT_TASK_MANAGER_PATH));
+    }
+
+    public FileBackedTaskManager(HistoryManager historyManager, Path taskManagerPath) {
+        this(historyManager, taskManagerPath, SaveMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(HistoryManager historyManager, Path taskManagerPath, SaveMode saveMode) {
         super(historyManager);
-        taskManagerPath = Paths.get(DEFAULT_TASK_MANAGER_PATH);
+        this.taskManagerPath = taskManagerPath;
+        this.saveMode = saveMode;
+        journal = new TaskJournal(TaskJournal.logPathFor(taskManagerPath, saveMode));
+        segments = saveMode == SaveMode.SEGMENTED ? new TaskSegments(TaskSegments.directoryFor(taskManagerPath)) : null;
         try {
             if (!Files.exists(taskManagerPath)) {
                 Files.createFile(taskManagerPath);
@@ -35,62 +88,380 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         }
     }
 
-    public FileBackedTaskManager(HistoryManager historyManager, Path taskManagerPath) {
-        this(historyManager);
-        this.taskManagerPath = taskManagerPath;
-    }
-
     static FileBackedTaskManager loadFromFile(Path taskManagerFile) {
-        FileBackedTaskManager fileBackedTaskManager = new FileBackedTaskManager(Managers.getDefaultHistory());
+        SaveMode saveMode = SaveMode.SNAPSHOT;
+        Path journalPath = TaskJournal.journalPathFor(taskManagerFile);
+        if (Files.exists(journalPath) || Files.exists(TaskJournal.retiredPathFor(journalPath))) {
+            saveMode = SaveMode.JOURNAL;
+        } else if (Files.isDirectory(TaskSegments.directoryFor(taskManagerFile))) {
+            saveMode = SaveMode.SEGMENTED;
+        }
+        return loadFromFile(taskManagerFile, saveMode);
+    }
 
+    /**
+     * Загрузка менеджера из файла; к снимку применяются записи журнала (в режимах снимка и сегментов -
+     * журнала просмотров). В режиме сегментов задачи читаются из сегментов; задачи из файла менеджера
+     * (переход из другого режима) сразу раскладываются по сегментам
+     */
+    static FileBackedTaskManager loadFromFile(Path taskManagerFile, SaveMode saveMode) {
         try {
-            List<String> taskLines = Files.readAllLines(taskManagerFile);
-            String historyString = taskLines.get(taskLines.size() - 1);
-            for (int i = 1; i < taskLines.size() - 2; i++) {
-                Task task = FileBackedUtils.fromString(taskLines.get(i));
-                String[] taskLineValues = taskLines.get(i).split(",");
-                switch (TaskType.valueOf(taskLineValues[1])) {
+            TaskJournal.recoverSnapshotCommit(taskManagerFile, TaskJournal.logPathFor(taskManagerFile, saveMode));
+            ByteBuffer snapshotBuffer = readSnapshot(taskManagerFile);
+            FileBackedTaskManager fileBackedTaskManager =
+                    new FileBackedTaskManager(Managers.getDefaultHistory(), taskManagerFile, saveMode);
+            boolean mainFileEmpty = !snapshotBuffer.hasRemaining();
+            fileBackedTaskManager.snapshotFormat = SnapshotFormat.detect(snapshotBuffer);
+            fileBackedTaskManager.restoring = true;
+            TaskSnapshot snapshot = fileBackedTaskManager.snapshotFormat.getCodec().decode(snapshotBuffer);
+            if (!snapshot.getCorruptBlocks().isEmpty()) {
+                Files.copy(taskManagerFile, corruptCopyPathFor(taskManagerFile), StandardCopyOption.REPLACE_EXISTING);
+                fileBackedTaskManager.corruptBlocks = snapshot.getCorruptBlocks();
+                snapshot = withoutLostReferences(snapshot);
+            }
+            boolean migrateToSegments = saveMode == SaveMode.SEGMENTED && !snapshot.getTasks().isEmpty();
+            if (saveMode == SaveMode.SEGMENTED) {
+                snapshot = fileBackedTaskManager.readSegments(snapshot, mainFileEmpty);
+            }
+            fileBackedTaskManager.restoreSnapshot(snapshot);
+            ByteBuffer journalBuffer = TaskJournal.read(TaskJournal.logPathFor(taskManagerFile, saveMode));
+            int journalRecordCount = fileBackedTaskManager.replayJournal(journalBuffer);
+            fileBackedTaskManager.journal.open(journalRecordCount, journalBuffer.position());
+            fileBackedTaskManager.restoreEpics();
+            fileBackedTaskManager.restoring = false;
+            if (migrateToSegments) {
+                fileBackedTaskManager.compact();
+            }
+            return fileBackedTaskManager;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения файла");
+        }
+    }
+
+    /**
+     * Чтение снимка: большой файл отображается в память и разбирается прямо из отображения,
+     * небольшой дешевле прочитать целиком
+     */
+    private static ByteBuffer readSnapshot(Path taskManagerFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(taskManagerFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ManagerSaveException("Файл менеджера слишком велик для загрузки");
+            }
+            if (size >= MAPPED_LOAD_MIN_BYTES) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer snapshotBuffer = ByteBuffer.allocate((int) size);
+            while (snapshotBuffer.hasRemaining() && channel.read(snapshotBuffer) >= 0) {
+            }
+            snapshotBuffer.flip();
+            return snapshotBuffer;
+        }
+    }
+
+    /**
+     * путь к копии поврежденного файла менеджера: при следующем сохранении пропущенные блоки будут потеряны
+     */
+    static Path corruptCopyPathFor(Path taskManagerPath) {
+        return taskManagerPath.resolveSibling(taskManagerPath.getFileName() + ".corrupt");
+    }
+
+    /**
+     * Снимок без ссылок на задачи из пропущенных блоков: подзадачи без эпика и просмотры удаленных задач
+     * отбрасываются, эпики, вложенные в потерянный эпик, становятся эпиками верхнего уровня
+     */
+    private static TaskSnapshot withoutLostReferences(TaskSnapshot snapshot) {
+        Set<Integer> epicIds = new HashSet<>();
+        Set<Integer> taskIds = new HashSet<>();
+        List<Task> keptTasks = new ArrayList<>(snapshot.getTasks().size());
+        for (Task task : snapshot.getTasks()) {
+            if (task instanceof Epic) {
+                epicIds.add(task.getId());
+            } else if (task instanceof Subtask && !epicIds.contains(((Subtask) task).getIdEpic())) {
+                continue;
+            }
+            taskIds.add(task.getId());
+            keptTasks.add(task);
+        }
+        for (Task task : keptTasks) {
+            if (task instanceof Epic && !epicIds.contains(((Epic) task).getIdParentEpic())) {
+                ((Epic) task).setIdParentEpic(null);
+            }
+        }
+        List<Integer> keptHistoryIds = new ArrayList<>(snapshot.getHistoryIds().size());
+        for (Integer historyId : snapshot.getHistoryIds()) {
+            if (taskIds.contains(historyId)) {
+                keptHistoryIds.add(historyId);
+            }
+        }
+        return new TaskSnapshot(keptTasks, keptHistoryIds, snapshot.getCorruptBlocks());
+    }
+
+    /**
+     * Добавление к снимку задач из всех сегментов; эпики ставятся раньше подзадач.
+     * Если файл менеджера пуст, формат снимка определяется по первому сегменту
+     */
+    private TaskSnapshot readSegments(TaskSnapshot mainSnapshot, boolean detectFormat) throws IOException {
+        List<Task> segmentTasks = new ArrayList<>(mainSnapshot.getTasks());
+        List<Task> segmentSubtasks = new ArrayList<>();
+        for (ByteBuffer segmentBuffer : segments.readAll().values()) {
+            SnapshotFormat segmentFormat = SnapshotFormat.detect(segmentBuffer);
+            if (detectFormat) {
+                snapshotFormat = segmentFormat;
+                detectFormat = false;
+            }
+            TaskSnapshot segmentSnapshot = segmentFormat.getCodec().decode(segmentBuffer);
+            if (!segmentSnapshot.getCorruptBlocks().isEmpty()) {
+                throw new ManagerSaveException("Сегмент менеджера поврежден");
+            }
+            for (Task task : segmentSnapshot.getTasks()) {
+                (task instanceof Subtask ? segmentSubtasks : segmentTasks).add(task);
+            }
+        }
+        segmentTasks.addAll(segmentSubtasks);
+        return new TaskSnapshot(segmentTasks, mainSnapshot.getHistoryIds(), mainSnapshot.getCorruptBlocks());
+    }
+
+    /**
+     * Восстановление задач и истории из снимка
+     */
+    private void restoreSnapshot(TaskSnapshot snapshot) {
+        if (tasks.isEmpty() && epics.isEmpty() && subtasks.isEmpty() && recurringTasks.isEmpty()) {
+            restoreTasksInBulk(snapshot.getTasks());
+        } else {
+            for (Task task : snapshot.getTasks()) {
+                restoreTask(task);
+            }
+        }
+        linkChildEpics(); //эпики в снимке могут идти раньше эпиков, в которые они вложены
+        for (Integer historyId : snapshot.getHistoryIds()) {
+            historyManager.add(findTask(historyId));
+        }
+    }
+
+    /**
+     * Загрузка снимка в пустой менеджер: задачи раскладываются по таблицам одним проходом, а отсортированный
+     * список строится из параллельно отсортированного массива за линейное время вместо вставки по одной задаче
+     */
+    private void restoreTasksInBulk(List<Task> snapshotTasks) {
+        List<Task> timedTasks = new ArrayList<>();
+        int maxId = 0;
+        for (Task task : snapshotTasks) {
+            switch (FileBackedUtils.typeOf(task)) {
+                case TASK:
+                    tasks.put(task.getId(), task);
+                    break;
+                case EPIC:
+                    epics.put(task.getId(), (Epic) task);
+                    break;
+                case SUBTASK:
+                    Subtask subtask = (Subtask) task;
+                    Epic subtaskEpic = epics.get(subtask.getIdEpic());
+                    if (subtaskEpic == null) {
+                        throw new ManagerSaveException("Подзадача ссылается на несуществующий эпик");
+                    }
+                    subtasks.put(subtask.getId(), subtask);
+                    subtaskEpic.addIdSubtask(subtask.getId());
+                    break;
+                case RECURRING:
+                    recurringTasks.put(task.getId(), (RecurringTask) task);
+                    break;
+                default:
+                    throw new ManagerSaveException("Ошибка загрузки менеджера задач");
+            }
+            //повторяющиеся задачи в расписание не входят, их повторения строятся по запросу
+            if (task.getStartTime() != null && !(task instanceof Epic) && !(task instanceof RecurringTask)) {
+                timedTasks.add(task);
+            }
+            maxId = Math.max(maxId, task.getId());
+        }
+        restoreIdSeq(maxId);
+        if (!timedTasks.isEmpty()) {
+            addAllToPrioritized(timedTasks);
+        }
+    }
+
+    /**
+     * Применение записей журнала к восстановленному снимку; возвращает число примененных записей,
+     * позиция буфера после вызова - конец последней целой записи.
+     * Недописанная последняя запись (сбой во время записи) пропускается
+     */
+    private int replayJournal(ByteBuffer journalBuffer) {
+        CsvByteReader reader = new CsvByteReader(journalBuffer);
+        int recordCount = 0;
+        int validLength = journalBuffer.position();
+        while (reader.hasRemaining()) {
+            if (reader.atBlankLine()) {
+                reader.skipLine();
+                continue;
+            }
+            try {
+                reader.beginRecord();
+                applyJournalRecord(reader);
+                recordCount++;
+                validLength = reader.position();
+            } catch (RuntimeException e) {
+                reader.endRecord();
+                if (reader.hasRemaining()) {
+                    throw new ManagerSaveException("Ошибка восстановления журнала менеджера");
+                }
+            }
+        }
+        journalBuffer.position(validLength);
+        return recordCount;
+    }
+
+    private void applyJournalRecord(CsvByteReader reader) {
+        reader.nextField();
+        String recordType = reader.fieldAsString();
+        switch (recordType) {
+            case TaskJournal.PUT_RECORD:
+                Task task = FileBackedUtils.readTask(reader);
+                if (isOrphaned(task)) { //эпик подзадачи был в поврежденном блоке: запись пропускается
+                    orphanedTaskIds.add(task.getId());
+                } else {
+                    restoreTask(task);
+                }
+                return;
+            case TaskJournal.DELETE_RECORD:
+                reader.nextField();
+                Integer id = reader.fieldAsInt();
+                if (tasks.containsKey(id)) {
+                    deleteTaskById(id);
+                } else if (epics.containsKey(id)) {
+                    deleteEpicById(id);
+                } else if (recurringTasks.containsKey(id)) {
+                    deleteRecurringTaskById(id);
+                } else {
+                    deleteSubtaskById(id);
+                }
+                break;
+            case TaskJournal.CLEAR_RECORD:
+                reader.nextField();
+                switch (reader.fieldAsEnum(TaskType.values())) {
                     case TASK:
-                        fileBackedTaskManager.tasks.put(task.getId(), task);
-                        if (task.getStartTime() != null) {
-                            fileBackedTaskManager.prioritizedTasks.add(task);
-                        }
+                        removeAllTasks();
                         break;
                     case EPIC:
-                        fileBackedTaskManager.epics.put(task.getId(), (Epic) task);
+                        removeAllEpics();
                         break;
                     case SUBTASK:
-                        fileBackedTaskManager.subtasks.put(task.getId(), (Subtask) task);
-                        if (task.getStartTime() != null) {
-                            fileBackedTaskManager.prioritizedTasks.add(task);
-                        }
+                        removeAllSubtasks();
                         break;
-                    default:
-                        throw new ManagerSaveException("Ошибка загрузки менеджера задач");
                 }
-                fileBackedTaskManager.getIdSeq(); //прокрутка счетчика
-            }
-
-            //восстановление информации о списке id подзадач в эпике
-            for (Subtask subtask : fileBackedTaskManager.subtasks.values()) {
-                Epic epic = fileBackedTaskManager.epics.get(subtask.getIdEpic());
-                epic.addIdSubtask(subtask.getId());
-            }
-            List<Integer> historyIdList = FileBackedUtils.historyFromString(historyString);
-            for (Integer historyId : historyIdList) {
-                if (fileBackedTaskManager.tasks.containsKey(historyId)) {
-                    fileBackedTaskManager.historyManager.add(fileBackedTaskManager.tasks.get(historyId));
-                } else if (fileBackedTaskManager.epics.containsKey(historyId)) {
-                    fileBackedTaskManager.historyManager.add(fileBackedTaskManager.epics.get(historyId));
-                } else if (fileBackedTaskManager.subtasks.containsKey(historyId)) {
-                    fileBackedTaskManager.historyManager.add(fileBackedTaskManager.subtasks.get(historyId));
-                } else {
-                    throw new ManagerSaveException("В истории указан несуществующий идентификатор задачи менеджера");
+                break;
+            case TaskJournal.VIEW_RECORD:
+                reader.nextField();
+                Integer viewedId = reader.fieldAsInt();
+                //просмотр мог быть записан раньше, чем снимок с самой задачей
+                if (tasks.containsKey(viewedId) || epics.containsKey(viewedId) || subtasks.containsKey(viewedId)
+                        || recurringTasks.containsKey(viewedId)) {
+                    historyManager.add(findTask(viewedId));
+                }
+                break;
+            default:
+                throw new ManagerSaveException("Неизвестная запись журнала менеджера");
+        }
+        reader.endRecord();
+    }
+
+    /**
+     * подзадача из журнала ссылается на эпик, потерянный вместе с поврежденным блоком снимка
+     */
+    private boolean isOrphaned(Task task) {
+        return !corruptBlocks.isEmpty() && task instanceof Subtask && !epics.containsKey(((Subtask) task).getIdEpic());
+    }
+
+    /**
+     * Помещение восстановленной задачи в менеджер с заменой предыдущей версии
+     */
+    private void restoreTask(Task task) {
+        switch (FileBackedUtils.typeOf(task)) {
+            case TASK:
+                removeFromPrioritized(tasks.put(task.getId(), task));
+                addToPrioritized(task);
+                break;
+            case EPIC:
+                Epic epic = (Epic) task;
+                Epic oldEpic = epics.put(epic.getId(), epic);
+                if (oldEpic != null) {
+                    oldEpic.getSubtaskIds().forEach(epic::addIdSubtask);
+                    oldEpic.getChildEpicIds().forEach(epic::addIdChildEpic);
+                    unlinkFromParentEpic(oldEpic);
+                }
+                if (epics.containsKey(epic.getIdParentEpic())) { //эпик выше может идти в снимке позже
+                    linkToParentEpic(epic);
+                }
+                break;
+            case SUBTASK:
+                Subtask subtask = (Subtask) task;
+                Subtask oldSubtask = subtasks.put(subtask.getId(), subtask);
+                if (oldSubtask != null) {
+                    removeFromPrioritized(oldSubtask);
+                    Epic oldSubtaskEpic = epics.get(oldSubtask.getIdEpic());
+                    if (oldSubtaskEpic != null) {
+                        oldSubtaskEpic.deleteIdSubtask(subtask.getId());
+                    }
+                }
+                Epic subtaskEpic = epics.get(subtask.getIdEpic());
+                if (subtaskEpic == null) {
+                    throw new ManagerSaveException("Подзадача ссылается на несуществующий эпик");
+                }
+                subtaskEpic.addIdSubtask(subtask.getId());
+                addToPrioritized(subtask);
+                break;
+            case RECURRING:
+                recurringTasks.put(task.getId(), (RecurringTask) task);
+                break;
+            default:
+                throw new ManagerSaveException("Ошибка загрузки менеджера задач");
+        }
+        restoreIdSeq(task.getId());
+    }
+
+    /**
+     * Пересчет статуса, продолжительности, начала и завершения эпиков по восстановленным подзадачам
+     */
+    private void restoreEpics() {
+        if (!corruptBlocks.isEmpty()) { //эпик, вложенный в потерянный эпик, становится эпиком верхнего уровня
+            for (Epic epic : epics.values()) {
+                if (epic.getIdParentEpic() != null && !epics.containsKey(epic.getIdParentEpic())) {
+                    epic.setIdParentEpic(null);
+                    orphanedTaskIds.add(epic.getId());
                 }
             }
-            return fileBackedTaskManager;
-        } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка чтения файла");
+        }
+        linkChildEpics();
+        recountAllEpics();
+    }
+
+    /**
+     * Восстановление списков вложенных эпиков по ссылкам эпиков на эпики, в которые они вложены
+     */
+    private void linkChildEpics() {
+        for (Epic epic : epics.values()) {
+            epic.clearChildEpicIds();
+        }
+        parentEpicIds.clear();
+        for (Epic epic : epics.values()) {
+            if (epic.getIdParentEpic() != null && !epics.containsKey(epic.getIdParentEpic())) {
+                throw new ManagerSaveException("Эпик вложен в несуществующий эпик");
+            }
+            linkToParentEpic(epic);
+        }
+    }
+
+    private Task findTask(Integer id) {
+        if (tasks.containsKey(id)) {
+            return tasks.get(id);
+        } else if (epics.containsKey(id)) {
+            return epics.get(id);
+        } else if (subtasks.containsKey(id)) {
+            return subtasks.get(id);
+        } else if (recurringTasks.containsKey(id)) {
+            return recurringTasks.get(id);
+        } else {
+            throw new ManagerSaveException("В истории указан несуществующий идентификатор задачи менеджера");
         }
     }
 
@@ -138,128 +509,848 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         );
     }
 
+    //Чтение идет под той же блокировкой, что и изменения и фиксация состояния для фонового сохранения,
+    //поэтому читатель не видит таблицы и отсортированный список в середине изменения.
+    //Объект getHistoryManager() остается общим и блокировкой менеджера не защищен
+
+    @Override
+    public synchronized ArrayList<Task> getTasksList() {
+        return super.getTasksList();
+    }
+
+    @Override
+    public synchronized ArrayList<Epic> getEpicsList() {
+        return super.getEpicsList();
+    }
+
+    @Override
+    public synchronized ArrayList<Subtask> getSubtasksList() {
+        return super.getSubtasksList();
+    }
+
+    @Override
+    public synchronized ArrayList<RecurringTask> getRecurringTasksList() {
+        return super.getRecurringTasksList();
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        return super.getHistory();
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getPrioritizedTasks() {
+        return super.getPrioritizedTasks();
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getPrioritizedTasksByAssignee(String assignee) {
+        return super.getPrioritizedTasksByAssignee(assignee);
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getPrioritizedTasks(LocalDateTime from, int limit) {
+        return super.getPrioritizedTasks(from, limit);
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getPrioritizedTasksAfter(Task cursor, int limit) {
+        return super.getPrioritizedTasksAfter(cursor, limit);
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getTasksInWindow(LocalDateTime from, LocalDateTime to) {
+        return super.getTasksInWindow(from, to);
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getTasksAt(LocalDateTime moment) {
+        return super.getTasksAt(moment);
+    }
+
+    @Override
+    public synchronized boolean isTimeFree(LocalDateTime from, LocalDateTime to) {
+        return super.isTimeFree(from, to);
+    }
+
+    @Override
+    public synchronized boolean isTimeFree(LocalDateTime from, LocalDateTime to, String assignee) {
+        return super.isTimeFree(from, to, assignee);
+    }
+
+    @Override
+    public synchronized ArrayList<OverlapRegion> auditOverlaps() {
+        return super.auditOverlaps();
+    }
+
+    @Override
+    public synchronized LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore) {
+        return super.findNextFreeSlot(duration, notBefore);
+    }
+
+    @Override
+    public synchronized LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore, String assignee) {
+        return super.findNextFreeSlot(duration, notBefore, assignee);
+    }
+
     @Override
-    public void removeAllTasks() {
+    public synchronized ArrayList<Subtask> getSubtasksListByEpic(Epic epic) {
+        return super.getSubtasksListByEpic(epic);
+    }
+
+    @Override
+    public synchronized ArrayList<Epic> getChildEpicsListByEpic(Integer epicId) {
+        return super.getChildEpicsListByEpic(epicId);
+    }
+
+    @Override
+    public synchronized void removeAllTasks() {
         super.removeAllTasks();
-        save();
+        persistCleared(TaskType.TASK);
     }
 
     @Override
-    public void removeAllEpics() {
+    public synchronized void removeAllEpics() {
         super.removeAllEpics();
-        save();
+        persistCleared(TaskType.EPIC);
     }
 
     @Override
-    public void removeAllSubtasks() {
+    public synchronized void removeAllSubtasks() {
         super.removeAllSubtasks();
-        save();
+        persistCleared(TaskType.SUBTASK);
     }
 
     @Override
-    public Task getTaskById(Integer id) {
+    public synchronized Task getTaskById(Integer id) {
         Task task = super.getTaskById(id);
-        save();
+        persistViewed(task);
         return task;
     }
 
     @Override
-    public Epic getEpicById(Integer id) {
+    public synchronized Epic getEpicById(Integer id) {
         Epic epic = super.getEpicById(id);
-        save();
+        persistViewed(epic);
         return epic;
     }
 
     @Override
-    public Subtask getSubtaskById(Integer id) {
+    public synchronized Subtask getSubtaskById(Integer id) {
         Subtask subtask = super.getSubtaskById(id);
-        save();
+        persistViewed(subtask);
         return subtask;
     }
 
     @Override
-    public Integer addTask(Task newTask) {
+    public synchronized RecurringTask getRecurringTaskById(Integer id) {
+        RecurringTask recurringTask = super.getRecurringTaskById(id);
+        persistViewed(recurringTask);
+        return recurringTask;
+    }
+
+    /**
+     * Подзадачи читаются без сохранения; в режиме VIEW_EPIC дописывается одна запись о просмотре эпика
+     */
+    @Override
+    public synchronized ArrayList<Subtask> getSubtasksListByEpic(Integer epicId, ReadMode readMode) {
+        ArrayList<Subtask> epicSubtasks = super.getSubtasksListByEpic(epicId, readMode);
+        if (readMode == ReadMode.VIEW_EPIC) {
+            persistViewed(epics.get(epicId));
+        }
+        return epicSubtasks;
+    }
+
+    @Override
+    public synchronized Integer addTask(Task newTask) {
+        if (newTask instanceof RecurringTask) {
+            return addRecurringTask((RecurringTask) newTask);
+        }
         Integer idTask = super.addTask(newTask);
-        save();
+        persistChanged(tasks.get(idTask));
         return idTask;
     }
 
     @Override
-    public Integer addEpic(Epic newEpic) {
+    public synchronized Integer addEpic(Epic newEpic) {
         Integer idEpic = super.addEpic(newEpic);
-        save();
+        persistChanged(epics.get(idEpic));
         return idEpic;
     }
 
     @Override
-    public Integer addSubtask(Subtask newSubtask) {
+    public synchronized Integer addSubtask(Subtask newSubtask) {
         Integer idSubtask = super.addSubtask(newSubtask);
-        save();
+        persistChanged(subtasks.get(idSubtask), epics.get(newSubtask.getIdEpic()));
         return idSubtask;
     }
 
+    /**
+     * Добавленные задачи и затронутые эпики сохраняются одной записью
+     */
+    @Override
+    public synchronized ArrayList<Integer> addAll(Collection<? extends Task> newTasks) {
+        ArrayList<Integer> ids = super.addAll(newTasks);
+        Set<Task> changedTasks = new LinkedHashSet<>();
+        for (Integer id : ids) {
+            if (id != 0) {
+                Task addedTask = findTask(id);
+                changedTasks.add(addedTask);
+                if (addedTask instanceof Subtask) {
+                    changedTasks.add(epics.get(((Subtask) addedTask).getIdEpic()));
+                }
+            }
+        }
+        if (!changedTasks.isEmpty()) {
+            persistChanged(changedTasks.toArray(new Task[0]));
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized Integer addRecurringTask(RecurringTask newRecurringTask) {
+        Integer idRecurringTask = super.addRecurringTask(newRecurringTask);
+        persistChanged(recurringTasks.get(idRecurringTask));
+        return idRecurringTask;
+    }
+
     @Override
-    public Integer updateTask(Task updTask) {
+    public synchronized Integer updateTask(Task updTask) {
         Integer idTask = super.updateTask(updTask);
-        save();
+        persistChanged(tasks.get(idTask));
         return idTask;
     }
 
     @Override
-    public Integer updateEpic(Epic updEpic) {
+    public synchronized Integer updateEpic(Epic updEpic) {
         Integer idEpic = super.updateEpic(updEpic);
-        save();
+        persistChanged(epics.get(idEpic));
         return idEpic;
     }
 
+    /**
+     * При переходе подзадачи в другой эпик сохраняется и прежний эпик
+     */
     @Override
-    public Integer updateSubtask(Subtask updSubtask) {
+    public synchronized Integer updateSubtask(Subtask updSubtask) {
+        Subtask oldSubtask = subtasks.get(updSubtask.getId());
         Integer idSubtask = super.updateSubtask(updSubtask);
-        save();
+        Epic oldEpic = oldSubtask == null || oldSubtask.getIdEpic().equals(updSubtask.getIdEpic()) ? null :
+                epics.get(oldSubtask.getIdEpic());
+        persistChanged(subtasks.get(idSubtask), epics.get(updSubtask.getIdEpic()), oldEpic);
         return idSubtask;
     }
 
     @Override
-    public void deleteTaskById(Integer id) {
+    public synchronized Integer updateRecurringTask(RecurringTask updRecurringTask) {
+        Integer idRecurringTask = super.updateRecurringTask(updRecurringTask);
+        persistChanged(recurringTasks.get(idRecurringTask));
+        return idRecurringTask;
+    }
+
+    @Override
+    public synchronized void deleteTaskById(Integer id) {
         super.deleteTaskById(id);
-        save();
+        persistDeleted(id);
     }
 
     @Override
-    public void deleteEpicById(Integer id) {
+    public synchronized void deleteRecurringTaskById(Integer id) {
+        super.deleteRecurringTaskById(id);
+        persistDeleted(id);
+    }
+
+    @Override
+    public synchronized void deleteEpicById(Integer id) {
+        Epic epic = epics.get(id);
+        if (epic != null) {
+            //вложенные эпики и подзадачи удаляются вместе с эпиком
+            for (Epic subtreeEpic : getEpicSubtree(epic)) {
+                markSegmentDirty(subtreeEpic.getId());
+                subtreeEpic.getSubtaskIds().forEach(this::markSegmentDirty);
+            }
+        }
         super.deleteEpicById(id);
-        save();
+        persistDeleted(id);
     }
 
     @Override
-    public void deleteSubtaskById(Integer id) {
+    public synchronized void deleteSubtaskById(Integer id) {
         super.deleteSubtaskById(id);
-        save();
+        persistDeleted(id);
     }
 
     /**
-     * Сохранение всех задач, подзадач, эпиков и истории просмотра любых задач
+     * Запланированные задачи и их эпики сохраняются одной записью
      */
-    void save() {
+    @Override
+    public synchronized ArrayList<Task> scheduleUnscheduled(LocalDateTime notBefore) {
+        ArrayList<Task> scheduledTasks = super.scheduleUnscheduled(notBefore);
+        if (!scheduledTasks.isEmpty()) {
+            Set<Task> changedTasks = new LinkedHashSet<>(scheduledTasks);
+            for (Task scheduledTask : scheduledTasks) {
+                if (scheduledTask instanceof Subtask) {
+                    changedTasks.add(epics.get(((Subtask) scheduledTask).getIdEpic()));
+                }
+            }
+            persistChanged(changedTasks.toArray(new Task[0]));
+        }
+        return scheduledTasks;
+    }
+
+    @Override
+    public synchronized void enableSlotCalendar() {
+        super.enableSlotCalendar();
+    }
+
+    public synchronized SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    /**
+     * Выбор формата снимка; файл менеджера перезаписывается в новом формате
+     */
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        synchronized (this) {
+            this.snapshotFormat = snapshotFormat;
+        }
+        compact();
+    }
+
+    /**
+     * Блоки сжатого снимка, которые не удалось прочитать при загрузке (пустой список - снимок цел);
+     * исходный файл в этом случае сохраняется рядом с расширением .corrupt
+     */
+    public synchronized List<CorruptSnapshotBlock> getCorruptBlocks() {
+        return corruptBlocks;
+    }
+
+    /**
+     * Задачи из журнала, которые при загрузке с поврежденными блоками ссылались на потерянные задачи:
+     * подзадачи потерянных эпиков не восстанавливаются, а эпики, вложенные в потерянные эпики,
+     * становятся эпиками верхнего уровня
+     */
+    public synchronized List<Integer> getOrphanedTaskIds() {
+        return orphanedTaskIds;
+    }
+
+    public synchronized DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    /**
+     * Выбор надежности сохранения; для SYNC_INTERVAL используется интервал по умолчанию
+     */
+    public void setDurabilityMode(DurabilityMode durabilityMode) {
+        setDurabilityMode(durabilityMode, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Выбор надежности сохранения: без сброса на диск, сброс после каждого сохранения
+     * или не реже и не чаще раза в syncInterval (по таймеру, даже если записей больше нет).
+     * Несброшенные изменения сбрасываются на диск сразу
+     */
+    public void setDurabilityMode(DurabilityMode durabilityMode, Duration syncInterval) {
+        if (syncInterval.isNegative() || syncInterval.isZero()) {
+            throw new IllegalArgumentException("Интервал сброса на диск должен быть положительным");
+        }
+        IntervalSyncer oldSyncer;
+        synchronized (fileLock) {
+            synchronized (this) {
+                this.durabilityMode = durabilityMode;
+                this.syncIntervalNanos = syncInterval.toNanos();
+                oldSyncer = intervalSyncer;
+                intervalSyncer = durabilityMode == DurabilityMode.SYNC_INTERVAL ?
+                        new IntervalSyncer(this::syncUnsyncedWrites, syncInterval) : null;
+                try {
+                    syncUnsynced();
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка сброса менеджера на диск");
+                }
+            }
+        }
+        if (oldSyncer != null) { //прежний поток ждет блокировок менеджера, поэтому останавливается без них
+            oldSyncer.close();
+        }
+    }
+
+    /**
+     * Экспорт текущего состояния менеджера в отдельный файл в указанном формате (например, в csv)
+     */
+    public void exportSnapshot(Path exportPath, SnapshotFormat exportFormat) {
+        byte[] snapshot;
+        boolean sync;
+        synchronized (this) {
+            snapshot = exportFormat.getCodec().encode(captureSnapshot());
+            sync = durabilityMode != DurabilityMode.NO_SYNC;
+        }
         try {
-            Writer taskManagerFileWriter = new FileWriter(String.valueOf(taskManagerPath));
+            DurableFiles.writeAtomically(exportPath, snapshot, sync);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка экспорта менеджера");
+        }
+    }
 
-            taskManagerFileWriter.write(TASK_CSV_HEADER + "\n");
-            for (Integer taskId : tasks.keySet()) {
-                taskManagerFileWriter.write(FileBackedUtils.taskToString(tasks.get(taskId)) + "\n");
+    /**
+     * Включение фонового сохранения: изменения помечают менеджер измененным, а отдельный поток
+     * сбрасывает их одной записью раз в flushInterval или по накоплении flushBatchSize изменений
+     */
+    public synchronized void enableWriteBehind(Duration flushInterval, int flushBatchSize) {
+        if (writeBehindSaver == null) {
+            writeBehindSaver = new WriteBehindSaver(() -> flush(false), flushInterval, flushBatchSize);
+        }
+    }
+
+    /**
+     * Принудительный сброс накопленных изменений в файл (точка сохранности при фоновом сохранении);
+     * в режиме SYNC_INTERVAL изменения также сбрасываются на диск
+     */
+    public void flush() {
+        flush(false);
+        syncUnsyncedWrites();
+    }
+
+    /**
+     * Сжатие журнала: запись полного снимка менеджера и очистка журнала
+     */
+    public void compact() {
+        flush(true);
+    }
+
+    /**
+     * Остановка фонового сохранения со сбросом всех накопленных изменений и закрытие журнала
+     */
+    @Override
+    public void close() {
+        WriteBehindSaver saver;
+        IntervalSyncer syncer;
+        synchronized (this) {
+            saver = writeBehindSaver;
+            syncer = intervalSyncer;
+            intervalSyncer = null;
+        }
+        if (saver != null) {
+            saver.close();
+        }
+        if (syncer != null) {
+            syncer.close();
+        }
+        synchronized (fileLock) {
+            flush(false);
+            synchronized (this) {
+                writeBehindSaver = null;
+                try {
+                    syncUnsynced();
+                    journal.close();
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка закрытия журнала менеджера");
+                }
+            }
+        }
+        if (saver != null) {
+            ManagerSaveException failure = saver.takeFailure();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        if (syncer != null) {
+            ManagerSaveException failure = syncer.takeFailure();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * есть записанные, но не сброшенные на диск изменения
+     */
+    synchronized boolean hasUnsyncedWrites() {
+        return snapshotUnsynced || journalUnsynced || !unsyncedSegments.isEmpty();
+    }
+
+    /**
+     * Сброс накопленных изменений: состояние фиксируется под блокировкой менеджера,
+     * а запись в файл идет уже без нее, чтобы не задерживать изменения менеджера
+     */
+    private void flush(boolean forceSnapshot) {
+        WriteBehindSaver saver;
+        synchronized (fileLock) {
+            synchronized (this) {
+                saver = writeBehindSaver;
             }
-            for (Integer epicId : epics.keySet()) {
-                taskManagerFileWriter.write(FileBackedUtils.taskToString(epics.get(epicId)) + "\n");
+            //без фонового сохранения методы менеджера пишут в файлы сами, поэтому сброс идет под блокировкой менеджера
+            synchronized (saver == null ? this : fileLock) {
+                flushPending(forceSnapshot);
             }
-            for (Integer subtaskId : subtasks.keySet()) {
-                taskManagerFileWriter.write(FileBackedUtils.subtaskToString(subtasks.get(subtaskId)) + "\n");
+        }
+        if (saver != null) {
+            ManagerSaveException failure = saver.takeFailure();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void flushPending(boolean forceSnapshot) {
+        byte[] snapshot = null;
+        List<String> records;
+        boolean journalRewritten = false;
+        Map<Integer, byte[]> segmentContents = null;
+        synchronized (this) {
+            records = pendingJournalRecords;
+            pendingJournalRecords = new ArrayList<>();
+            if (segments != null) {
+                if (forceSnapshot || snapshotDirty) {
+                    segmentContents = renderSegments(forceSnapshot);
+                    snapshotDirty = false;
+                }
+                if (forceSnapshot || (!records.isEmpty() && journalNeedsCompaction())) {
+                    records = renderHistoryRecords();
+                    journalRewritten = true;
+                }
+            } else if (forceSnapshot || snapshotDirty) {
+                snapshot = renderSnapshot();
+                snapshotDirty = false;
+            } else if (!records.isEmpty() && journalNeedsCompaction()) {
+                if (saveMode == SaveMode.JOURNAL) {
+                    snapshot = renderSnapshot();
+                } else {
+                    records = renderHistoryRecords();
+                    journalRewritten = true;
+                }
+            }
+        }
+        try {
+            if (segmentContents != null) {
+                commitSegments(segmentContents);
+            }
+            if (snapshot != null) {
+                commitSnapshot(snapshot);
+            } else if (!records.isEmpty() || journalRewritten) {
+                commitJournalRecords(records, journalRewritten);
+            }
+        } catch (IOException | ManagerSaveException e) {
+            synchronized (this) { //несохраненные изменения возвращаются в очередь до следующего сброса
+                snapshotDirty = saveMode != SaveMode.JOURNAL;
+                if (segmentContents != null) {
+                    dirtySegments.addAll(segmentContents.keySet());
+                }
+                records.addAll(pendingJournalRecords);
+                pendingJournalRecords = records;
+            }
+            throw new ManagerSaveException("Ошибка сохранения менеджера");
+        }
+    }
+
+    /**
+     * Сохранение изменившихся задач: в режиме журнала - по одной записи на задачу
+     */
+    private void persistChanged(Task... changedTasks) {
+        if (saveMode != SaveMode.JOURNAL) {
+            for (Task changedTask : changedTasks) {
+                if (changedTask != null) {
+                    markSegmentDirty(changedTask.getId());
+                }
+            }
+            requestSave();
+            return;
+        }
+        List<String> records = new ArrayList<>(changedTasks.length);
+        for (Task changedTask : changedTasks) {
+            if (changedTask != null) {
+                records.add(TaskJournal.putRecord(changedTask));
+            }
+        }
+        appendToJournal(records);
+    }
+
+    private void persistDeleted(Integer id) {
+        if (saveMode != SaveMode.JOURNAL) {
+            markSegmentDirty(id);
+            requestSave();
+        } else {
+            appendToJournal(List.of(TaskJournal.deleteRecord(id)));
+        }
+    }
+
+    private void persistCleared(TaskType taskType) {
+        if (saveMode != SaveMode.JOURNAL) {
+            if (segments != null && !restoring) {
+                dirtySegments.addAll(segments.getStoredSegments());
+            }
+            requestSave();
+        } else {
+            appendToJournal(List.of(TaskJournal.clearRecord(taskType.name())));
+        }
+    }
+
+    /**
+     * Просмотр меняет только историю, поэтому в любом режиме дописывается одна запись,
+     * а файл менеджера не перезаписывается
+     */
+    private void persistViewed(Task viewedTask) {
+        if (viewedTask != null) {
+            appendToJournal(List.of(TaskJournal.viewRecord(viewedTask.getId())));
+        }
+    }
+
+    /**
+     * Отметка сегмента задачи измененным (в режиме сегментов)
+     */
+    private void markSegmentDirty(int id) {
+        if (segments != null && !restoring) {
+            dirtySegments.add(TaskSegments.segmentOf(id));
+        }
+    }
+
+    /**
+     * Сохранение снимка сразу либо, при фоновом сохранении, отметка о необходимости сохранения
+     */
+    private void requestSave() {
+        if (restoring) {
+            return;
+        }
+        if (writeBehindSaver == null) {
+            save();
+        } else {
+            snapshotDirty = true;
+            writeBehindSaver.changed(1);
+        }
+    }
+
+    /**
+     * Дописывание записей в журнал. Первая запись нового менеджера начинает журнал со снимка текущего состояния,
+     * слишком длинный журнал сжимается, поэтому стоимость записи не зависит от размера менеджера.
+     * Журнал просмотров сжимается перезаписью только текущей истории, без перезаписи файла менеджера
+     */
+    private void appendToJournal(List<String> records) {
+        if (restoring || records.isEmpty()) {
+            return;
+        }
+        if (writeBehindSaver != null) {
+            pendingJournalRecords.addAll(records);
+            writeBehindSaver.changed(records.size());
+            return;
+        }
+        try {
+            boolean journalRewritten = false;
+            if (journalNeedsCompaction()) {
+                if (saveMode == SaveMode.JOURNAL) {
+                    save();
+                    return;
+                }
+                records = renderHistoryRecords(); //текущая история уже содержит новые просмотры
+                journalRewritten = true;
+            }
+            commitJournalRecords(records, journalRewritten);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи журнала менеджера");
+        }
+    }
+
+    private boolean journalNeedsCompaction() {
+        return !journal.isOpened() || journal.getRecordCount() + pendingJournalRecords.size()
+                > JOURNAL_COMPACT_MIN_RECORDS + tasks.size() + epics.size() + subtasks.size() + recurringTasks.size();
+    }
+
+    /**
+     * Сохранение всех задач, подзадач, эпиков и истории просмотра любых задач;
+     * снимок включает все изменения, поэтому журнал очищается
+     */
+    void save() {
+        if (restoring) {
+            return;
+        }
+        try {
+            if (segments != null) {
+                commitSegments(renderSegments(false));
+            } else {
+                commitSnapshot(renderSnapshot());
             }
-            taskManagerFileWriter.write("\n");
-            String historyString = FileBackedUtils.historyToString(historyManager);
-            taskManagerFileWriter.write(historyString);
-            taskManagerFileWriter.close();
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка автосохранения менеджера");
         }
     }
+
+    /**
+     * Формирование снимка в выбранном формате
+     */
+    private byte[] renderSnapshot() {
+        return snapshotFormat.getCodec().encode(captureSnapshot());
+    }
+
+    /**
+     * Содержимое измененных (при all - всех) сегментов; null - сегмент опустел и удаляется
+     */
+    private Map<Integer, byte[]> renderSegments(boolean all) {
+        Set<Integer> renderedSegments = dirtySegments;
+        dirtySegments = new HashSet<>();
+        if (all) {
+            renderedSegments.addAll(segments.getStoredSegments());
+            for (Integer id : tasks.keySet()) {
+                renderedSegments.add(TaskSegments.segmentOf(id));
+            }
+            for (Integer id : epics.keySet()) {
+                renderedSegments.add(TaskSegments.segmentOf(id));
+            }
+            for (Integer id : subtasks.keySet()) {
+                renderedSegments.add(TaskSegments.segmentOf(id));
+            }
+            for (Integer id : recurringTasks.keySet()) {
+                renderedSegments.add(TaskSegments.segmentOf(id));
+            }
+        }
+        Map<Integer, byte[]> segmentContents = new TreeMap<>();
+        for (Integer segment : renderedSegments) {
+            List<Task> segmentTasks = new ArrayList<>();
+            List<Task> segmentSubtasks = new ArrayList<>();
+            int firstId = TaskSegments.firstIdOf(segment);
+            for (int id = firstId; id < firstId + TaskSegments.SEGMENT_SIZE; id++) {
+                if (tasks.containsKey(id)) {
+                    segmentTasks.add(tasks.get(id));
+                } else if (epics.containsKey(id)) {
+                    segmentTasks.add(epics.get(id));
+                } else if (subtasks.containsKey(id)) {
+                    segmentSubtasks.add(subtasks.get(id));
+                } else if (recurringTasks.containsKey(id)) {
+                    segmentTasks.add(recurringTasks.get(id));
+                }
+            }
+            segmentTasks.addAll(segmentSubtasks);
+            segmentContents.put(segment, segmentTasks.isEmpty() ? null :
+                    snapshotFormat.getCodec().encode(new TaskSnapshot(segmentTasks, List.of())));
+        }
+        return segmentContents;
+    }
+
+    /**
+     * Задачи, эпики, подзадачи и история на текущий момент
+     */
+    private TaskSnapshot captureSnapshot() {
+        List<Task> snapshotTasks = new ArrayList<>(tasks.size() + epics.size() + subtasks.size()
+                + recurringTasks.size());
+        snapshotTasks.addAll(tasks.values());
+        snapshotTasks.addAll(recurringTasks.values());
+        snapshotTasks.addAll(epics.values());
+        snapshotTasks.addAll(subtasks.values());
+        List<Integer> historyIds = new ArrayList<>();
+        for (Task task : historyManager.getHistory()) {
+            historyIds.add(task.getId());
+        }
+        return new TaskSnapshot(snapshotTasks, historyIds);
+    }
+
+    private List<String> renderHistoryRecords() {
+        List<String> records = new ArrayList<>();
+        for (Task task : historyManager.getHistory()) {
+            records.add(TaskJournal.viewRecord(task.getId()));
+        }
+        return records;
+    }
+
+    /**
+     * Атомарная подмена файла менеджера новым снимком и очистка журнала, вошедшего в снимок.
+     * Журнал откладывается после записи снимка во временный файл и удаляется после подмены, поэтому
+     * при сбое между подменой и очисткой журнал, уже вошедший в снимок, не применяется к нему повторно
+     */
+    private void commitSnapshot(byte[] snapshot) throws IOException {
+        boolean sync = isSyncDue();
+        journal.deleteRetired(); //отложенный журнал предыдущей подмены старше текущего снимка
+        Path tempPath = DurableFiles.writeTemp(taskManagerPath, snapshot, sync);
+        journal.retire(sync);
+        DurableFiles.replace(tempPath, taskManagerPath);
+        if (sync) {
+            DurableFiles.syncDirectory(taskManagerPath);
+        }
+        journal.reset();
+        journal.deleteRetired();
+        snapshotUnsynced = !sync;
+        journalUnsynced = true;
+        if (sync) {
+            syncUnsynced();
+        }
+    }
+
+    /**
+     * Дописывание записей в журнал; при rewrite журнал предварительно очищается
+     */
+    private void commitJournalRecords(List<String> records, boolean rewrite) throws IOException {
+        if (rewrite) {
+            journal.reset();
+        }
+        for (String record : records) {
+            journal.append(record);
+        }
+        journalUnsynced = true;
+        if (isSyncDue()) {
+            syncUnsynced();
+        }
+    }
+
+    /**
+     * Запись измененных сегментов и удаление опустевших одной фиксацией: изменение, затронувшее
+     * несколько сегментов (эпик и его подзадачи), не сохраняется частично. Файл менеджера, оставшийся
+     * от другого режима, очищается, когда его задачи уже записаны в сегменты
+     */
+    private void commitSegments(Map<Integer, byte[]> segmentContents) throws IOException {
+        boolean sync = isSyncDue();
+        segments.commit(segmentContents, sync);
+        for (Map.Entry<Integer, byte[]> segmentContent : segmentContents.entrySet()) {
+            if (!sync || segmentContent.getValue() == null) { //удаление фиксируется сбросом каталога
+                unsyncedSegments.add(segmentContent.getKey());
+            }
+        }
+        if (Files.size(taskManagerPath) > 0) {
+            DurableFiles.writeAtomically(taskManagerPath, new byte[0], sync);
+            snapshotUnsynced = !sync;
+        }
+        if (sync) {
+            syncUnsynced();
+        }
+    }
+
+    private boolean isSyncDue() {
+        switch (durabilityMode) {
+            case SYNC_EACH_COMMIT:
+                return true;
+            case SYNC_INTERVAL:
+                return System.nanoTime() - lastSyncNanos >= syncIntervalNanos;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Сброс на диск всего, что записано после предыдущего сброса (кроме режима NO_SYNC)
+     */
+    private void syncUnsynced() throws IOException {
+        if (durabilityMode == DurabilityMode.NO_SYNC) {
+            return;
+        }
+        if (snapshotUnsynced && Files.exists(taskManagerPath)) {
+            DurableFiles.sync(taskManagerPath);
+        }
+        if (!unsyncedSegments.isEmpty()) {
+            segments.sync(unsyncedSegments);
+            unsyncedSegments.clear();
+        }
+        if (journalUnsynced) {
+            journal.sync();
+        }
+        snapshotUnsynced = false;
+        journalUnsynced = false;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void syncUnsyncedWrites() {
+        synchronized (fileLock) {
+            synchronized (this) {
+                try {
+                    syncUnsynced();
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка сброса менеджера на диск");
+                }
+            }
+        }
+    }
 }
@@ -1,29 +1,94 @@
 package taskmanager;
 
 import taskmodel.Epic;
+import taskmodel.RecurrenceRule;
+import taskmodel.RecurringTask;
 import taskmodel.Subtask;
 import taskmodel.Task;
 import taskmodel.TaskStatus;
 import taskmodel.TaskType;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public final class FileBackedUtils {
+    private static final TaskType[] TASK_TYPES = TaskType.values();
+    private static final TaskStatus[] TASK_STATUSES = TaskStatus.values();
+
     public static Task fromString(String value) {
-        String[] values = value.split(",");
-        Integer id = Integer.valueOf(values[0]);
-        String name = values[2];
-        String description = values[4];
-        TaskStatus status = TaskStatus.valueOf(values[3]);
-        Duration duration = Duration.ofMinutes(Integer.parseInt(values[5]));
-        LocalDateTime startTime = null;
-        if (!values[6].equals("null")) {
-            startTime = LocalDateTime.parse(values[6]);
-        }
-        switch (TaskType.valueOf(values[1])) {
+        CsvByteReader reader = new CsvByteReader(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+        reader.beginRecord();
+        return readTask(reader);
+    }
+
+    /**
+     * разбор задачи из полей текущей записи, начиная с id; после разбора курсор стоит на следующей записи
+     */
+    static Task readTask(CsvByteReader reader) {
+        reader.nextField();
+        int id = reader.fieldAsInt();
+        reader.nextField();
+        TaskType taskType = reader.fieldAsEnum(TASK_TYPES);
+        reader.nextField();
+        String name = reader.fieldAsString();
+        reader.nextField();
+        TaskStatus status = reader.fieldAsEnum(TASK_STATUSES);
+        reader.nextField();
+        String description = reader.fieldAsString();
+        reader.nextField();
+        Duration duration = Duration.ofMinutes(reader.fieldAsLong());
+        reader.nextField();
+        LocalDateTime startTime = reader.fieldAsDateTime();
+        Integer epicId = null;
+        if (taskType == TaskType.SUBTASK) {
+            reader.nextField();
+            epicId = reader.fieldAsInt();
+        } else if (reader.hasMoreFields()) {
+            reader.nextField();
+            if (taskType == TaskType.EPIC && !reader.isFieldEmpty()) { //эпик, в который вложен эпик
+                epicId = reader.fieldAsInt();
+            }
+        }
+        String assignee = null;
+        if (reader.hasMoreFields()) {
+            reader.nextField();
+            assignee = reader.isFieldEmpty() ? null : reader.fieldAsString();
+        }
+        Task task;
+        if (taskType == TaskType.RECURRING) {
+            reader.nextField();
+            task = new RecurringTask(id, name, description, status, duration, startTime,
+                    parseRule(reader.fieldAsString()));
+        } else {
+            task = createTask(taskType, id, name, description, status, duration, startTime, epicId);
+        }
+        reader.endRecord();
+        task.setAssignee(assignee);
+        return task;
+    }
+
+    /**
+     * разбор правила повторения, записанного в файл
+     */
+    static RecurrenceRule parseRule(String value) {
+        try {
+            return RecurrenceRule.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new ManagerSaveException("Ошибка парсинга записи");
+        }
+    }
+
+    /**
+     * создание задачи нужного типа по прочитанным из файла полям; epicId - эпик подзадачи
+     * или эпик, в который вложен эпик (null - эпик верхнего уровня)
+     */
+    static Task createTask(TaskType taskType, Integer id, String name, String description, TaskStatus status,
+                           Duration duration, LocalDateTime startTime, Integer epicId) {
+        switch (taskType) {
             case TASK:
                 return startTime == null ?
                         new Task(id, name, description, status,
@@ -31,14 +96,16 @@ public final class FileBackedUtils {
                         new Task(id, name, description, status,
                                 duration, startTime);
             case EPIC:
-                return startTime == null ?
+                Epic epic = startTime == null ?
                         new Epic(id, name, description,
                                 duration, new ArrayList<>()) :
                         new Epic(id, name, description,
                                 duration, startTime,
                                 new ArrayList<>());
+                epic.setStatus(status);
+                epic.setIdParentEpic(epicId);
+                return epic;
             case SUBTASK:
-                Integer epicId = Integer.valueOf(values[7]);
                 return startTime == null ?
                         new Subtask(id, name, description, status,
                                 duration, epicId) :
@@ -50,14 +117,147 @@ public final class FileBackedUtils {
     }
 
     public static String taskToString(Task task) {
-        return String.format("%d,%s,%s,%s,%s,%d,%s,", task.getId(), task.getClass().getSimpleName().toUpperCase(),
-                task.getName(),
-                task.getStatus().toString(), task.getDescription(), task.getDuration().getSeconds() / 60,
-                task.getStartTime());
+        StringBuilder row = new StringBuilder(64);
+        appendTaskFields(row, task);
+        appendAssignee(row, task);
+        return row.toString();
     }
 
     public static String subtaskToString(Subtask subtask) {
-        return taskToString(subtask) + subtask.getIdEpic();
+        StringBuilder row = new StringBuilder(64);
+        appendTaskFields(row, subtask);
+        row.append(subtask.getIdEpic().intValue());
+        appendAssignee(row, subtask);
+        return row.toString();
+    }
+
+    /**
+     * дописывание строки файла для задачи любого типа (без перевода строки) в переиспользуемый буфер
+     */
+    static void appendCsvRow(StringBuilder row, Task task) {
+        appendTaskFields(row, task);
+        if (task instanceof Subtask) {
+            row.append(((Subtask) task).getIdEpic().intValue());
+        } else if (task instanceof Epic && ((Epic) task).getIdParentEpic() != null) {
+            row.append(((Epic) task).getIdParentEpic().intValue());
+        }
+        appendAssignee(row, task);
+    }
+
+    static TaskType typeOf(Task task) {
+        if (task instanceof Subtask) {
+            return TaskType.SUBTASK;
+        }
+        if (task instanceof RecurringTask) {
+            return TaskType.RECURRING;
+        }
+        return task instanceof Epic ? TaskType.EPIC : TaskType.TASK;
+    }
+
+    /**
+     * поля задачи до номера эпика включительно с запятой после времени начала
+     */
+    private static void appendTaskFields(StringBuilder row, Task task) {
+        row.append(task.getId()).append(',').append(typeOf(task).name()).append(',');
+        appendTextField(row, task.getName());
+        row.append(',').append(task.getStatus().name()).append(',');
+        appendTextField(row, task.getDescription());
+        row.append(',').append(task.getDuration().getSeconds() / 60).append(',');
+        appendDateTime(row, task.getStartTime());
+        row.append(',');
+    }
+
+    /**
+     * Поле исполнителя после номера эпика; у задачи без исполнителя поле не пишется,
+     * поэтому ее строка совпадает со строкой файлов, сохраненных до появления исполнителей.
+     * У повторяющейся задачи поле исполнителя пишется всегда, а за ним идет правило повторения
+     */
+    private static void appendAssignee(StringBuilder row, Task task) {
+        if (task instanceof RecurringTask) {
+            row.append(',');
+            if (task.getAssignee() != null) {
+                appendTextField(row, task.getAssignee());
+            }
+            row.append(',');
+            appendTextField(row, ((RecurringTask) task).getRule().toString());
+        } else if (task.getAssignee() != null) {
+            row.append(',');
+            appendTextField(row, task.getAssignee());
+        }
+    }
+
+    /**
+     * текстовое поле; поле с запятой, кавычкой или переводом строки берется в кавычки, кавычки внутри удваиваются
+     */
+    private static void appendTextField(StringBuilder row, String value) {
+        if (value == null) {
+            row.append("null");
+            return;
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    /**
+     * время начала в формате LocalDateTime.toString() без промежуточной строки
+     */
+    private static void appendDateTime(StringBuilder row, LocalDateTime dateTime) {
+        if (dateTime == null) {
+            row.append("null");
+            return;
+        }
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            row.append(dateTime);
+            return;
+        }
+        appendZeroPadded(row, year, 4).append('-');
+        appendZeroPadded(row, dateTime.getMonthValue(), 2).append('-');
+        appendZeroPadded(row, dateTime.getDayOfMonth(), 2).append('T');
+        appendZeroPadded(row, dateTime.getHour(), 2).append(':');
+        appendZeroPadded(row, dateTime.getMinute(), 2);
+        int second = dateTime.getSecond();
+        int nano = dateTime.getNano();
+        if (second > 0 || nano > 0) {
+            appendZeroPadded(row.append(':'), second, 2);
+            if (nano > 0) {
+                row.append('.');
+                if (nano % 1_000_000 == 0) {
+                    appendZeroPadded(row, nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    appendZeroPadded(row, nano / 1000, 6);
+                } else {
+                    appendZeroPadded(row, nano, 9);
+                }
+            }
+        }
+    }
+
+    private static StringBuilder appendZeroPadded(StringBuilder row, int value, int width) {
+        int bound = 10;
+        for (int i = 1; i < width; i++) {
+            if (value < bound) {
+                row.append('0');
+            }
+            bound *= 10;
+        }
+        return row.append(value);
     }
 
     static String historyToString(HistoryManager manager) {
@@ -1,36 +1,58 @@
 package taskmanager;
 
 import taskmodel.Epic;
+import taskmodel.RecurrenceRule;
+import taskmodel.RecurringTask;
 import taskmodel.Subtask;
 import taskmodel.Task;
 import taskmodel.TaskStatus;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
 
 public class InMemoryTaskManager implements TaskManager {
     private int idSeq = 0; //счетчик задач в менеджере
 
     protected HashMap<Integer, Task> tasks;
     protected HashMap<Integer, Epic> epics;
+    //id эпика -> id эпика, в сводных значениях которого он учтен. Ссылка idParentEpic в самом эпике - запрошенный
+    //перенос: ее можно изменить на месте до вызова updateEpic, а сводные значения исключаются из прежнего эпика выше
+    protected HashMap<Integer, Integer> parentEpicIds;
     protected HashMap<Integer, Subtask> subtasks;
+    protected HashMap<Integer, RecurringTask> recurringTasks; //повторяющиеся задачи, повторения строятся по запросу
     protected HistoryManager historyManager;
 
     protected TreeSet<Task> prioritizedTasks;
+    private final HashMap<String, TaskTimeline> timelines; //расписания по исполнителям, null - задачи без исполнителя
+    //id задачи -> исполнитель, в расписании которого она учтена: исполнителя можно изменить на месте до обновления
+    private final HashMap<Integer, String> timelineAssignees;
+    private boolean slotCalendarEnabled; //календарь занятости по 15-минутным слотам включен для всех расписаний
 
     public InMemoryTaskManager(HistoryManager historyManager) {
         tasks = new HashMap<>();
         epics = new HashMap<>();
+        parentEpicIds = new HashMap<>();
         subtasks = new HashMap<>();
+        recurringTasks = new HashMap<>();
         this.historyManager = historyManager;
-        prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        prioritizedTasks = new TreeSet<>(TaskOrder.START_ID_ORDER);
+        timelines = new HashMap<>();
+        timelineAssignees = new HashMap<>();
     }
 
     /**
@@ -40,6 +62,15 @@ public class InMemoryTaskManager implements TaskManager {
         return ++idSeq;
     }
 
+    /**
+     * прокрутка счетчика до восстановленного id, чтобы новые id не совпадали с уже существующими
+     */
+    protected void restoreIdSeq(int id) {
+        if (id > idSeq) {
+            idSeq = id;
+        }
+    }
+
     /**
      * получение списка задач
      */
@@ -64,6 +95,14 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(subtasks.values());
     }
 
+    /**
+     * получение списка повторяющихся задач
+     */
+    @Override
+    public ArrayList<RecurringTask> getRecurringTasksList() {
+        return new ArrayList<>(recurringTasks.values());
+    }
+
     /**
      * получение менеджера истории
      */
@@ -88,13 +127,503 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(prioritizedTasks);
     }
 
+    /**
+     * получение задач и подзадач исполнителя assignee (null - без исполнителя) в порядке времени начала
+     */
+    @Override
+    public ArrayList<Task> getPrioritizedTasksByAssignee(String assignee) {
+        TaskTimeline timeline = timelines.get(assignee);
+        return timeline == null ? new ArrayList<>() : new ArrayList<>(timeline.getTasks());
+    }
+
+    /**
+     * получение страницы отсортированного списка: не более limit задач, начинающихся не раньше from
+     */
+    @Override
+    public ArrayList<Task> getPrioritizedTasks(LocalDateTime from, int limit) {
+        return copyPage(prioritizedTasks.tailSet(TaskTimeline.timeProbe(from), true), limit);
+    }
+
+    /**
+     * получение следующей страницы отсортированного списка: не более limit задач после задачи cursor
+     * (последней задачи предыдущей страницы)
+     */
+    @Override
+    public ArrayList<Task> getPrioritizedTasksAfter(Task cursor, int limit) {
+        return copyPage(prioritizedTasks.tailSet(cursor, false), limit);
+    }
+
+    private static ArrayList<Task> copyPage(SortedSet<Task> tailTasks, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        ArrayList<Task> page = new ArrayList<>(Math.min(limit, 64));
+        for (Iterator<Task> iterator = tailTasks.iterator(); iterator.hasNext() && page.size() < limit; ) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * получение задач, подзадач и повторений повторяющихся задач, которые выполняются в окне [from, to):
+     * начинаются в окне или начались раньше и еще не завершились к его началу; задачи упорядочены по времени начала.
+     * Задачи расписаний ищутся по деревьям интервалов за O(log n + k) и для пересекающихся между собой задач
+     */
+    @Override
+    public ArrayList<Task> getTasksInWindow(LocalDateTime from, LocalDateTime to) {
+        ArrayList<Task> windowTasks = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return windowTasks;
+        }
+        for (TaskTimeline timeline : timelines.values()) {
+            timeline.collectTasksInWindow(from, to, windowTasks);
+        }
+        for (RecurringTask recurringTask : recurringTasks.values()) {
+            windowTasks.addAll(recurringTask.getOccurrences(from, to));
+        }
+        windowTasks.sort(prioritizedTasks.comparator());
+        return windowTasks;
+    }
+
+    /**
+     * получение задач, подзадач и повторений повторяющихся задач, которые выполняются в момент moment
+     * (задача продолжительностью 0 выполняется в момент своего начала)
+     */
+    @Override
+    public ArrayList<Task> getTasksAt(LocalDateTime moment) {
+        ArrayList<Task> momentTasks = new ArrayList<>();
+        for (TaskTimeline timeline : timelines.values()) {
+            timeline.collectTasksAt(moment, momentTasks);
+        }
+        for (RecurringTask recurringTask : recurringTasks.values()) {
+            //LocalDateTime хранит время с точностью до наносекунды: окно захватывает повторения, начинающиеся в moment
+            for (Task occurrence : recurringTask.getOccurrencesStartingBetween(
+                    moment.minus(recurringTask.getDuration()), moment.plusNanos(1))) {
+                if (occurrence.getStartTime().equals(moment) || occurrence.getEndTime().isAfter(moment)) {
+                    momentTasks.add(occurrence);
+                }
+            }
+        }
+        momentTasks.sort(prioritizedTasks.comparator());
+        return momentTasks;
+    }
+
+    /**
+     * интервал [from, to) не занят ни одной задачей, подзадачей или повторением ни одного исполнителя
+     */
+    @Override
+    public boolean isTimeFree(LocalDateTime from, LocalDateTime to) {
+        for (TaskTimeline timeline : timelines.values()) {
+            if (!timeline.isFree(from, to)) {
+                return false;
+            }
+        }
+        for (RecurringTask recurringTask : recurringTasks.values()) {
+            if (isOccurring(recurringTask, from, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * интервал [from, to) не занят ни одной задачей, подзадачей или повторением исполнителя assignee
+     * (null - без исполнителя)
+     */
+    @Override
+    public boolean isTimeFree(LocalDateTime from, LocalDateTime to, String assignee) {
+        TaskTimeline timeline = timelines.get(assignee);
+        if (timeline != null && !timeline.isFree(from, to)) {
+            return false;
+        }
+        for (RecurringTask recurringTask : recurringTasksOf(assignee)) {
+            if (isOccurring(recurringTask, from, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * повторение задачи recurringTask выполняется в интервале [from, to)
+     */
+    private static boolean isOccurring(RecurringTask recurringTask, LocalDateTime from, LocalDateTime to) {
+        for (Task occurrence : recurringTask.getOccurrencesStartingBetween(from.minus(recurringTask.getDuration()),
+                to)) {
+            if (occurrence.getEndTime().isAfter(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверка всех задач и подзадач на пересечения (например, после загрузки из файла, которая их не проверяет).
+     * Задачи перебираются в порядке времени начала; активными остаются задачи, не завершившиеся к началу
+     * очередной, и каждая активная задача образует с ней пару пересечения. Время работы O(n log n + k),
+     * где k - число найденных пар. Пересечения группируются по областям - цепочкам пересекающихся задач;
+     * задачи разных исполнителей не пересекаются, поэтому каждый исполнитель проверяется отдельно
+     */
+    @Override
+    public ArrayList<OverlapRegion> auditOverlaps() {
+        List<Task> timedTasks = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            if (task.getStartTime() != null) {
+                timedTasks.add(task);
+            }
+        }
+        for (Subtask subtask : subtasks.values()) {
+            if (subtask.getStartTime() != null) {
+                timedTasks.add(subtask);
+            }
+        }
+        Task[] sortedTasks = timedTasks.toArray(new Task[0]);
+        Arrays.parallelSort(sortedTasks, Comparator.comparing(Task::getAssignee, Comparator.nullsFirst(
+                Comparator.<String>naturalOrder())).thenComparing(TaskOrder.START_END_ORDER));
+
+        ArrayList<OverlapRegion> regions = new ArrayList<>();
+        PriorityQueue<Task> activeTasks = new PriorityQueue<>(Comparator.comparing(Task::getEndTime));
+        List<Task> regionTasks = new ArrayList<>();
+        List<Map.Entry<Task, Task>> regionPairs = new ArrayList<>();
+        LocalDateTime regionEnd = null;
+        String assignee = null;
+        for (Task task : sortedTasks) {
+            LocalDateTime startTime = task.getStartTime();
+            LocalDateTime endTime = task.getEndTime();
+            boolean isNextAssignee = !Objects.equals(assignee, task.getAssignee());
+            //задача не продолжает цепочку пересечений
+            if (regionEnd != null && (isNextAssignee || !startTime.isBefore(regionEnd))) {
+                addOverlapRegion(regions, assignee, regionTasks, regionPairs, regionEnd);
+                regionTasks = new ArrayList<>();
+                regionPairs = new ArrayList<>();
+                regionEnd = null;
+            }
+            if (isNextAssignee) {
+                activeTasks.clear();
+                assignee = task.getAssignee();
+            }
+            while (!activeTasks.isEmpty() && !activeTasks.peek().getEndTime().isAfter(startTime)) {
+                activeTasks.poll();
+            }
+            for (Task activeTask : activeTasks) {
+                if (endTime.isAfter(activeTask.getStartTime())) {
+                    regionPairs.add(Map.entry(activeTask, task));
+                }
+            }
+            regionTasks.add(task);
+            if (regionEnd == null || endTime.isAfter(regionEnd)) {
+                regionEnd = endTime;
+            }
+            if (endTime.isAfter(startTime)) {
+                activeTasks.add(task);
+            }
+        }
+        addOverlapRegion(regions, assignee, regionTasks, regionPairs, regionEnd);
+        return regions;
+    }
+
+    private static void addOverlapRegion(List<OverlapRegion> regions, String assignee, List<Task> regionTasks,
+                                         List<Map.Entry<Task, Task>> regionPairs, LocalDateTime regionEnd) {
+        if (!regionPairs.isEmpty()) {
+            regions.add(new OverlapRegion(assignee, regionTasks.get(0).getStartTime(), regionEnd, regionTasks,
+                    regionPairs));
+        }
+    }
+
+    /**
+     * получение самого раннего времени не раньше notBefore, с которого задача без исполнителя
+     * продолжительностью duration не пересечется ни с одной задачей или подзадачей без исполнителя
+     */
+    @Override
+    public LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore) {
+        return findNextFreeSlot(duration, notBefore, null);
+    }
+
+    /**
+     * Получение самого раннего времени не раньше notBefore, с которого задача исполнителя assignee
+     * продолжительностью duration не пересечется с его задачами, подзадачами и повторениями;
+     * просматриваются только задачи до найденного промежутка. null - повторяющиеся задачи без окончания
+     * не оставляют промежутка такой продолжительности
+     */
+    @Override
+    public LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore, String assignee) {
+        LocalDateTime slotStart = skipRunningTasks(assignee, notBefore);
+        LocalDateTime searchEnd = freeTimeSearchEnd(assignee, slotStart);
+        long durationMinutes = duration.toMinutes();
+        //занятое время сливается по самому позднему завершению: загруженные из файла задачи могут пересекаться,
+        //и задача, начавшаяся до slotStart, может завершиться после него
+        for (Iterator<Task> busyTasks = busyTimeFrom(assignee, notBefore); busyTasks.hasNext(); ) {
+            Task nextTask = busyTasks.next();
+            if (!slotStart.plusMinutes(durationMinutes).isAfter(nextTask.getStartTime())) {
+                return slotStart;
+            }
+            if (searchEnd != null && nextTask.getStartTime().isAfter(searchEnd)) {
+                return null;
+            }
+            if (nextTask.getEndTime().isAfter(slotStart)) {
+                slotStart = nextTask.getEndTime();
+            }
+        }
+        return slotStart;
+    }
+
+    /**
+     * занятое время исполнителя, начиная с from: задачи его расписания и повторения в порядке начала
+     */
+    private Iterator<Task> busyTimeFrom(String assignee, LocalDateTime from) {
+        TaskTimeline timeline = timelines.get(assignee);
+        Iterator<Task> timelineTasks = timeline == null ? Collections.emptyIterator() :
+                timeline.tasksFrom(from);
+        return new BusyTimeIterator(timelineTasks, recurringTasksOf(assignee), from);
+    }
+
+    /**
+     * время, не раньше moment, когда завершается задача или повторение исполнителя, выполняемые в момент moment
+     */
+    private LocalDateTime skipRunningTasks(String assignee, LocalDateTime moment) {
+        TaskTimeline timeline = timelines.get(assignee);
+        LocalDateTime freeFrom = timeline == null ? moment : timeline.skipRunningTasks(moment);
+        for (RecurringTask recurringTask : recurringTasksOf(assignee)) {
+            for (Task occurrence : recurringTask.getOccurrencesStartingBetween(
+                    moment.minus(recurringTask.getDuration()), moment)) {
+                if (occurrence.getEndTime().isAfter(freeFrom)) {
+                    freeFrom = occurrence.getEndTime();
+                }
+            }
+        }
+        return freeFrom;
+    }
+
+    /**
+     * Граница перебора свободного времени исполнителя. После того как его задачи закончились,
+     * повторяющиеся задачи начались, а ограниченные датой - завершились, свободное время повторяется
+     * с общим периодом повторяющихся задач без окончания, поэтому промежуток, если он есть, встретится
+     * в пределах двух периодов. null - повторяющихся задач без окончания нет и перебор конечен
+     */
+    private LocalDateTime freeTimeSearchEnd(String assignee, LocalDateTime from) {
+        LocalDateTime periodicFrom = from;
+        long periodDays = 0;
+        for (RecurringTask recurringTask : recurringTasksOf(assignee)) {
+            periodicFrom = latest(periodicFrom, recurringTask.getStartTime());
+            RecurrenceRule rule = recurringTask.getRule();
+            if (rule.getUntil() == null) {
+                periodDays = periodDays == 0 ? rule.getPeriodDays() : lcm(periodDays, rule.getPeriodDays());
+            } else {
+                periodicFrom = latest(periodicFrom, rule.getUntil().plusDays(1).atStartOfDay());
+            }
+        }
+        if (periodDays == 0) {
+            return null;
+        }
+        TaskTimeline timeline = timelines.get(assignee);
+        if (timeline != null) {
+            periodicFrom = latest(periodicFrom, timeline.getMaxEnd());
+        }
+        return periodicFrom.plusDays(2 * periodDays);
+    }
+
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        return second.isAfter(first) ? second : first;
+    }
+
+    private static long lcm(long first, long second) {
+        long a = first;
+        long b = second;
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return first / a * second;
+    }
+
+    /**
+     * Планирование задач и подзадач без времени начала: за один проход по расписанию исполнителя задач
+     * каждый промежуток между его задачами, начиная с notBefore, заполняется самыми длинными из помещающихся в него
+     * задач (при равной продолжительности - в порядке id), оставшиеся задачи ставятся после последней задачи.
+     * Повторения повторяющихся задач исполнителя тоже занимают время; задачи, которым повторения без окончания
+     * не оставляют места, и задачи нулевой продолжительности не планируются. Возвращаются новые версии запланированных задач
+     */
+    @Override
+    public ArrayList<Task> scheduleUnscheduled(LocalDateTime notBefore) {
+        List<Task> unscheduledTasks = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            if (task.getStartTime() == null && task.getDuration().toMinutes() > 0) {
+                unscheduledTasks.add(task);
+            }
+        }
+        for (Subtask subtask : subtasks.values()) {
+            if (subtask.getStartTime() == null && subtask.getDuration().toMinutes() > 0) {
+                unscheduledTasks.add(subtask);
+            }
+        }
+        unscheduledTasks.sort(Comparator.comparing(Task::getId));
+        //очереди задач по исполнителям (без исполнителя - первыми) и продолжительности
+        TreeMap<String, TreeMap<Long, ArrayDeque<Task>>> pendingByAssignee =
+                new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        for (Task task : unscheduledTasks) {
+            pendingByAssignee.computeIfAbsent(task.getAssignee(), assignee -> new TreeMap<>())
+                    .computeIfAbsent(task.getDuration().toMinutes(), minutes -> new ArrayDeque<>()).add(task);
+        }
+
+        ArrayList<Task> scheduledTasks = new ArrayList<>(unscheduledTasks.size());
+        for (Map.Entry<String, TreeMap<Long, ArrayDeque<Task>>> assigneeEntry : pendingByAssignee.entrySet()) {
+            TreeMap<Long, ArrayDeque<Task>> pendingByMinutes = assigneeEntry.getValue();
+            String assignee = assigneeEntry.getKey();
+            LocalDateTime gapStart = skipRunningTasks(assignee, notBefore);
+            LocalDateTime searchEnd = freeTimeSearchEnd(assignee, gapStart);
+            Iterator<Task> busyTasks = busyTimeFrom(assignee, notBefore);
+            while (!pendingByMinutes.isEmpty() && busyTasks.hasNext()) {
+                Task nextTask = busyTasks.next();
+                gapStart = fillGap(pendingByMinutes, gapStart, nextTask.getStartTime(), scheduledTasks);
+                if (searchEnd != null && nextTask.getStartTime().isAfter(searchEnd)) {
+                    break;
+                }
+                if (nextTask.getEndTime().isAfter(gapStart)) {
+                    gapStart = nextTask.getEndTime();
+                }
+            }
+            if (!busyTasks.hasNext()) {
+                fillGap(pendingByMinutes, gapStart, null, scheduledTasks);
+            }
+        }
+
+        for (Task scheduledTask : scheduledTasks) {
+            if (scheduledTask instanceof Subtask) {
+                Subtask scheduledSubtask = (Subtask) scheduledTask;
+                Epic epicFromSubtask = epics.get(scheduledSubtask.getIdEpic());
+                removeFromRollups(epicFromSubtask, subtasks.put(scheduledSubtask.getId(), scheduledSubtask));
+                addToRollups(epicFromSubtask, scheduledSubtask);
+            } else {
+                tasks.put(scheduledTask.getId(), scheduledTask);
+            }
+            addToPrioritized(scheduledTask);
+        }
+        return scheduledTasks;
+    }
+
+    /**
+     * заполнение промежутка [gapStart, gapEnd) (gapEnd == null - до бесконечности) задачами из очереди:
+     * каждый раз берется самая длинная помещающаяся задача; возвращается начало оставшейся части промежутка
+     */
+    private static LocalDateTime fillGap(TreeMap<Long, ArrayDeque<Task>> pendingByMinutes, LocalDateTime gapStart,
+                                         LocalDateTime gapEnd, List<Task> scheduledTasks) {
+        while (!pendingByMinutes.isEmpty()) {
+            long gapMinutes = gapEnd == null ? Long.MAX_VALUE : Duration.between(gapStart, gapEnd).toMinutes();
+            Map.Entry<Long, ArrayDeque<Task>> fittingEntry = pendingByMinutes.floorEntry(gapMinutes);
+            if (fittingEntry == null) {
+                break;
+            }
+            Task task = fittingEntry.getValue().poll();
+            if (fittingEntry.getValue().isEmpty()) {
+                pendingByMinutes.remove(fittingEntry.getKey());
+            }
+            scheduledTasks.add(withStartTime(task, gapStart));
+            gapStart = gapStart.plusMinutes(fittingEntry.getKey());
+        }
+        return gapStart;
+    }
+
+    /**
+     * новая версия задачи с заданным временем начала (прежняя версия остается в истории без изменений)
+     */
+    private static Task withStartTime(Task task, LocalDateTime startTime) {
+        Task scheduledTask = task instanceof Subtask ?
+                new Subtask(task.getId(), task.getName(), task.getDescription(), task.getStatus(),
+                        task.getDuration(), startTime, ((Subtask) task).getIdEpic()) :
+                new Task(task.getId(), task.getName(), task.getDescription(), task.getStatus(), task.getDuration(),
+                        startTime);
+        scheduledTask.setAssignee(task.getAssignee());
+        return scheduledTask;
+    }
+
+    /**
+     * Включение календаря занятости по 15-минутным слотам во всех расписаниях: проверка пересечений
+     * и свободного времени для интервала со свободными слотами сводится к нескольким операциям над словами
+     * битовой карты
+     */
+    public void enableSlotCalendar() {
+        slotCalendarEnabled = true;
+        for (TaskTimeline timeline : timelines.values()) {
+            timeline.enableSlotCalendar();
+        }
+    }
+
+    /**
+     * добавление задачи со временем начала в отсортированный список и расписание ее исполнителя
+     */
+    protected void addToPrioritized(Task task) {
+        if (task.getStartTime() != null && prioritizedTasks.add(task)) {
+            timelineAssignees.put(task.getId(), task.getAssignee());
+            timelineOf(task).add(task);
+        }
+    }
+
+    /**
+     * Массовое добавление задач со временем начала (после загрузки из файла): отсортированный список
+     * и расписания строятся из отсортированных массивов за линейное время
+     */
+    protected void addAllToPrioritized(Collection<Task> timedTasks) {
+        Task[] sortedTasks = timedTasks.toArray(new Task[0]);
+        Arrays.parallelSort(sortedTasks, prioritizedTasks.comparator());
+        if (prioritizedTasks.isEmpty()) { //конструктор TreeSet строит дерево из SortedSet за линейное время
+            prioritizedTasks = new TreeSet<>(new SortedTaskArray(sortedTasks, prioritizedTasks.comparator()));
+        } else {
+            prioritizedTasks.addAll(Arrays.asList(sortedTasks));
+        }
+        Map<String, List<Task>> tasksByAssignee = new HashMap<>();
+        for (Task task : prioritizedTasks) {
+            if (!timelineAssignees.containsKey(task.getId())) { //задачи, уже учтенные в расписаниях, пропускаются
+                timelineAssignees.put(task.getId(), task.getAssignee());
+                tasksByAssignee.computeIfAbsent(task.getAssignee(), assignee -> new ArrayList<>()).add(task);
+            }
+        }
+        for (Map.Entry<String, List<Task>> assigneeEntry : tasksByAssignee.entrySet()) {
+            List<Task> assigneeTasks = assigneeEntry.getValue();
+            assigneeTasks.sort(TaskOrder.START_END_ORDER);
+            timelineOf(assigneeTasks.get(0)).addAllSorted(assigneeTasks);
+        }
+    }
+
+    /**
+     * Удаление задачи из отсортированного списка и из расписания исполнителя, в котором она учтена
+     * (а не исполнителя, указанного в задаче сейчас); пустое расписание удаляется
+     */
+    protected void removeFromPrioritized(Task task) {
+        if (task == null || task.getStartTime() == null || !prioritizedTasks.remove(task)) {
+            return;
+        }
+        String assignee = timelineAssignees.remove(task.getId());
+        TaskTimeline timeline = timelines.get(assignee);
+        if (timeline == null) {
+            return;
+        }
+        timeline.remove(task);
+        if (timeline.isEmpty()) {
+            timelines.remove(assignee);
+        }
+    }
+
+    /**
+     * расписание исполнителя задачи (создается при первой задаче исполнителя)
+     */
+    private TaskTimeline timelineOf(Task task) {
+        return timelines.computeIfAbsent(task.getAssignee(), assignee -> {
+            TaskTimeline timeline = new TaskTimeline();
+            if (slotCalendarEnabled) {
+                timeline.enableSlotCalendar();
+            }
+            return timeline;
+        });
+    }
+
     /**
      * удаление всех задач
      */
     @Override
     public void removeAllTasks() {
         for (Integer taskId : tasks.keySet()) {
-            prioritizedTasks.remove(tasks.get(taskId));
+            removeFromPrioritized(tasks.get(taskId));
             historyManager.remove(taskId);
         }
         tasks.clear();
@@ -109,8 +638,9 @@ public class InMemoryTaskManager implements TaskManager {
             historyManager.remove(epicId);
         }
         epics.clear();
+        parentEpicIds.clear();
         for (Integer subtaskId : subtasks.keySet()) {
-            prioritizedTasks.remove(subtasks.get(subtaskId));
+            removeFromPrioritized(subtasks.get(subtaskId));
             historyManager.remove(subtaskId);
         }
         subtasks.clear();
@@ -122,13 +652,12 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void removeAllSubtasks() {
         for (Integer subtaskId : subtasks.keySet()) {
-            prioritizedTasks.remove(subtasks.get(subtaskId));
+            removeFromPrioritized(subtasks.get(subtaskId));
             historyManager.remove(subtaskId);
         }
         subtasks.clear();
         for (Epic epic : epics.values()) {
-            epic.setStatus(TaskStatus.NEW);
-            epic.clearSubtaskIdList();
+            epic.clearSubtaskIdList(); //эпик без подзадач становится новым
         }
     }
 
@@ -162,16 +691,29 @@ public class InMemoryTaskManager implements TaskManager {
         return subtask;
     }
 
+    /**
+     * получение повторяющейся задачи по идентификатору
+     */
+    @Override
+    public RecurringTask getRecurringTaskById(Integer id) {
+        RecurringTask recurringTask = recurringTasks.get(id);
+        historyManager.add(recurringTask);
+        return recurringTask;
+    }
+
     /**
      * создание задачи
      */
     @Override
     public Integer addTask(Task newTask) {
+        if (newTask instanceof RecurringTask) { //повторяющаяся задача хранится правилом, а не одной задачей
+            return addRecurringTask((RecurringTask) newTask);
+        }
         if (newTask.getStartTime() == null || hasTaskNoIntersections(newTask)) {
             newTask.setId(getIdSeq());
             tasks.put(newTask.getId(), newTask);
             if (newTask.getStartTime() != null) {
-                prioritizedTasks.add(newTask);
+                addToPrioritized(newTask);
             }
             return newTask.getId();
         } else { //если есть пересечения, возврашаем 0 и не добавляем задачу
@@ -180,12 +722,17 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
     /**
-     * создание эпика
+     * Создание эпика; эпик может быть вложен в существующий эпик.
+     * Если эпика, в который вложен новый эпик, нет, возвращается 0 и эпик не добавляется
      */
     @Override
     public Integer addEpic(Epic newEpic) {
+        if (newEpic.getIdParentEpic() != null && !epics.containsKey(newEpic.getIdParentEpic())) {
+            return 0;
+        }
         newEpic.setId(getIdSeq());
         epics.put(newEpic.getId(), newEpic);
+        linkToParentEpic(newEpic);
         return newEpic.getId();
     }
 
@@ -200,10 +747,9 @@ public class InMemoryTaskManager implements TaskManager {
                 subtasks.put(newSubtask.getId(), newSubtask);
                 Epic epicFromSubtask = epics.get(newSubtask.getIdEpic());
                 epicFromSubtask.addIdSubtask(newSubtask.getId());
-                updateEpicStatus(epicFromSubtask);
-                updateEpicDurationStartTimeEndTime(epicFromSubtask);
+                addToRollups(epicFromSubtask, newSubtask);
                 if (newSubtask.getStartTime() != null) {
-                    prioritizedTasks.add(newSubtask);
+                    addToPrioritized(newSubtask);
                 }
             } else { //если есть пересечения, возврашаем 0 и не добавляем подзадачу
                 return 0;
@@ -212,17 +758,120 @@ public class InMemoryTaskManager implements TaskManager {
         return newSubtask.getId();
     }
 
+    /**
+     * Создание повторяющейся задачи: хранится одна задача с правилом, повторения не заводятся.
+     * Повторения не должны пересекаться друг с другом, с задачами исполнителя и с повторениями
+     * других его повторяющихся задач
+     */
+    @Override
+    public Integer addRecurringTask(RecurringTask newRecurringTask) {
+        validateRecurringTask(newRecurringTask);
+        return putRecurringTask(newRecurringTask);
+    }
+
+    /**
+     * добавление проверенной повторяющейся задачи; 0 - есть пересечения, задача не добавлена
+     */
+    private int putRecurringTask(RecurringTask newRecurringTask) {
+        if (!hasRecurringTaskNoIntersections(newRecurringTask, null)) {
+            return 0; //если есть пересечения, возврашаем 0 и не добавляем задачу
+        }
+        newRecurringTask.setId(getIdSeq());
+        recurringTasks.put(newRecurringTask.getId(), newRecurringTask);
+        return newRecurringTask.getId();
+    }
+
+    /**
+     * Добавление пачки задач, эпиков и подзадач. Задачи со временем начала проверяются на пересечения
+     * в порядке времени начала за один проход: каждая сравнивается с соседом в расписании своего исполнителя
+     * и с самой поздно завершающейся из уже принятых задач пачки того же исполнителя, поэтому при пересечении внутри пачки
+     * добавляется более ранняя задача. Статус и время каждого затронутого эпика пересчитываются один раз.
+     * Повторяющиеся задачи добавляются как в addRecurringTask после остальных задач пачки и проверяются
+     * на пересечения с ними.
+     * Возвращаются id в порядке задач пачки; 0 - задача не добавлена (пересечение, подзадача
+     * несуществующего эпика или эпик, вложенный в несуществующий эпик)
+     */
+    @Override
+    public ArrayList<Integer> addAll(Collection<? extends Task> newTasks) {
+        List<Task> batch = new ArrayList<>(newTasks);
+        boolean[] accepted = new boolean[batch.size()];
+        List<Integer> timedIndexes = new ArrayList<>();
+        List<Integer> recurringIndexes = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Task newTask = batch.get(i);
+            if (newTask instanceof RecurringTask) {
+                validateRecurringTask((RecurringTask) newTask); //до изменения менеджера
+                recurringIndexes.add(i);
+                continue;
+            }
+            if (newTask instanceof Subtask && !epics.containsKey(((Subtask) newTask).getIdEpic())) {
+                continue;
+            }
+            if (newTask instanceof Epic && ((Epic) newTask).getIdParentEpic() != null
+                    && !epics.containsKey(((Epic) newTask).getIdParentEpic())) {
+                continue;
+            }
+            if (newTask instanceof Epic || newTask.getStartTime() == null) {
+                accepted[i] = true;
+            } else {
+                timedIndexes.add(i);
+            }
+        }
+        timedIndexes.sort(Comparator.comparing(index -> batch.get(index).getStartTime()));
+        //принятые задачи пачки по исполнителям, завершающиеся позже остальных задач исполнителя
+        Map<String, Task> latestEndingTasks = new HashMap<>();
+        for (int index : timedIndexes) {
+            Task newTask = batch.get(index);
+            Task latestEndingTask = latestEndingTasks.get(newTask.getAssignee());
+            if ((latestEndingTask == null || !CommonTaskManagerUtils.isIntersecting(newTask, latestEndingTask))
+                    && hasTaskNoIntersections(newTask)) {
+                accepted[index] = true;
+                if (latestEndingTask == null || newTask.getEndTime().isAfter(latestEndingTask.getEndTime())) {
+                    latestEndingTasks.put(newTask.getAssignee(), newTask);
+                }
+            }
+        }
+
+        ArrayList<Integer> ids = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (!accepted[i]) {
+                ids.add(0);
+                continue;
+            }
+            Task newTask = batch.get(i);
+            newTask.setId(getIdSeq());
+            if (newTask instanceof Epic) {
+                epics.put(newTask.getId(), (Epic) newTask);
+                linkToParentEpic((Epic) newTask);
+            } else if (newTask instanceof Subtask) {
+                Subtask newSubtask = (Subtask) newTask;
+                subtasks.put(newSubtask.getId(), newSubtask);
+                Epic epicFromSubtask = epics.get(newSubtask.getIdEpic());
+                epicFromSubtask.addIdSubtask(newSubtask.getId());
+                addToRollups(epicFromSubtask, newSubtask);
+                addToPrioritized(newSubtask);
+            } else {
+                tasks.put(newTask.getId(), newTask);
+                addToPrioritized(newTask);
+            }
+            ids.add(newTask.getId());
+        }
+        for (int index : recurringIndexes) {
+            ids.set(index, putRecurringTask((RecurringTask) batch.get(index)));
+        }
+        return ids;
+    }
+
     /**
      * обновление задачи
      */
     @Override
     public Integer updateTask(Task updTask) {
         if (tasks.containsKey(updTask.getId())) {
-            if (updTask.getStartTime() == null || hasTaskNoIntersections(updTask)) {
-                tasks.put(updTask.getId(), updTask);
-                prioritizedTasks.remove(tasks.get(updTask.getId()));
+            if (updTask.getStartTime() == null || hasTaskNoIntersections(updTask, tasks.get(updTask.getId()))) {
+                removeFromPrioritized(tasks.put(updTask.getId(), updTask)); //из списка удаляется прежняя версия
                 if (updTask.getStartTime() != null) {
-                    prioritizedTasks.add(updTask);
+                    addToPrioritized(updTask);
                 }
             } else { //если есть пересечения, возврашаем 0 и не обновляем задачу
                 return 0;
@@ -232,32 +881,61 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
     /**
-     * обновление эпика
+     * Обновление эпика; эпик может быть перенесен в другой эпик или стать эпиком верхнего уровня.
+     * Вложенные эпики сохраняются. Если эпика, в который переносится эпик, нет или он вложен в обновляемый эпик,
+     * возвращается 0 и эпик не обновляется.
+     * Эпик выше учитывает перенесенный эпик одной записью, поэтому перенос стоит O(глубина · log c),
+     * где c - число подзадач и вложенных эпиков эпика выше
      */
     @Override
     public Integer updateEpic(Epic updEpic) {
-        if (epics.containsKey(updEpic.getId())) {
+        Epic oldEpic = epics.get(updEpic.getId());
+        if (oldEpic != null) {
+            if (!canBeParentEpic(updEpic.getIdParentEpic(), updEpic.getId())) {
+                return 0;
+            }
+            //сводные значения прежней версии исключаются из эпиков выше, новой - учитываются заново
+            removeFromParentRollup(oldEpic);
+            if (oldEpic != updEpic) {
+                updEpic.clearChildEpicIds();
+                oldEpic.getChildEpicIds().forEach(updEpic::addIdChildEpic);
+            }
             epics.put(updEpic.getId(), updEpic);
-            updateEpicStatus(updEpic);
-            updateEpicDurationStartTimeEndTime(updEpic);
+            recountEpic(updEpic);
+            linkToParentEpic(updEpic);
+            updateAncestorRollups(updEpic);
         }
         return updEpic.getId();
     }
 
     /**
-     * обновление подзадачи
+     * Обновление подзадачи; подзадача может перейти в другой существующий эпик.
+     * Статусы и время эпика подзадачи и всех эпиков выше пересчитываются по счетчикам без просмотра
+     * остальных подзадач, за время, пропорциональное глубине вложенности
      */
     @Override
     public Integer updateSubtask(Subtask updSubtask) {
         if (subtasks.containsKey(updSubtask.getId())) {
-            if (updSubtask.getStartTime() == null || hasTaskNoIntersections(updSubtask)) {
-                subtasks.put(updSubtask.getId(), updSubtask);
-                Epic epicFromSubtask = epics.get(updSubtask.getIdEpic());
-                updateEpicStatus(epicFromSubtask);
-                updateEpicDurationStartTimeEndTime(epicFromSubtask);
-                prioritizedTasks.remove(subtasks.get(updSubtask.getId()));
+            //подзадача, ссылающаяся на несуществующий эпик, отклоняется до изменения менеджера
+            Epic epicFromSubtask = Objects.requireNonNull(epics.get(updSubtask.getIdEpic()), "Эпик подзадачи не найден");
+            if (updSubtask.getStartTime() == null
+                    || hasTaskNoIntersections(updSubtask, subtasks.get(updSubtask.getId()))) {
+                Subtask oldSubtask = subtasks.put(updSubtask.getId(), updSubtask);
+                removeFromPrioritized(oldSubtask); //из списка удаляется прежняя версия
+                Epic oldEpicFromSubtask = epics.get(oldSubtask.getIdEpic());
+                if (oldSubtask == updSubtask) {
+                    //подзадача изменена на месте: прежние значения неизвестны, эпик пересчитывается целиком
+                    replaceEpicRollup(epicFromSubtask);
+                } else {
+                    removeFromRollups(oldEpicFromSubtask, oldSubtask);
+                    if (oldEpicFromSubtask != epicFromSubtask) {
+                        oldEpicFromSubtask.deleteIdSubtask(updSubtask.getId());
+                        epicFromSubtask.addIdSubtask(updSubtask.getId());
+                    }
+                    addToRollups(epicFromSubtask, updSubtask);
+                }
                 if (updSubtask.getStartTime() != null) {
-                    prioritizedTasks.add(updSubtask);
+                    addToPrioritized(updSubtask);
                 }
             } else { //если есть пересечения, возврашаем 0 и не обновляем подзадачу
                 return 0;
@@ -266,31 +944,60 @@ public class InMemoryTaskManager implements TaskManager {
         return updSubtask.getId();
     }
 
+    /**
+     * обновление повторяющейся задачи
+     */
+    @Override
+    public Integer updateRecurringTask(RecurringTask updRecurringTask) {
+        validateRecurringTask(updRecurringTask);
+        if (recurringTasks.containsKey(updRecurringTask.getId())) {
+            if (hasRecurringTaskNoIntersections(updRecurringTask, recurringTasks.get(updRecurringTask.getId()))) {
+                recurringTasks.put(updRecurringTask.getId(), updRecurringTask);
+            } else { //если есть пересечения, возврашаем 0 и не обновляем задачу
+                return 0;
+            }
+        }
+        return updRecurringTask.getId();
+    }
+
     /**
      * удаление задачи
      */
     @Override
     public void deleteTaskById(Integer id) {
-        prioritizedTasks.remove(tasks.get(id));
+        removeFromPrioritized(tasks.get(id));
         tasks.remove(id);
         historyManager.remove(id);
     }
 
     /**
-     * удаление эпика
+     * удаление повторяющейся задачи вместе со всеми ее повторениями
+     */
+    @Override
+    public void deleteRecurringTaskById(Integer id) {
+        recurringTasks.remove(id);
+        historyManager.remove(id);
+    }
+
+    /**
+     * удаление эпика вместе с вложенными эпиками
      */
     @Override
     public void deleteEpicById(Integer id) {
-        Epic deletedEpic = epics.remove(id);
+        Epic deletedEpic = epics.get(id);
         if (deletedEpic == null) { //если объект не существовал - выходим из метода
             return;
         }
-        historyManager.remove(id);
-        //удаление связанных с эпиком подзадач
-        for (Integer subtaskId : deletedEpic.getSubtaskIdList()) {
-            prioritizedTasks.remove(subtasks.get(subtaskId));
-            subtasks.remove(subtaskId);
-            historyManager.remove(subtaskId);
+        removeFromParentRollup(deletedEpic);
+        for (Epic epic : getEpicSubtree(deletedEpic)) {
+            epics.remove(epic.getId());
+            parentEpicIds.remove(epic.getId());
+            historyManager.remove(epic.getId());
+            //удаление связанных с эпиком подзадач
+            epic.getSubtaskIds().forEach(subtaskId -> {
+                removeFromPrioritized(subtasks.remove(subtaskId));
+                historyManager.remove(subtaskId);
+            });
         }
     }
 
@@ -300,13 +1007,12 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteSubtaskById(Integer id) {
         if (subtasks.containsKey(id)) {
-            prioritizedTasks.remove(subtasks.get(id));
+            removeFromPrioritized(subtasks.get(id));
             Subtask deletedSubtask = subtasks.remove(id);
             historyManager.remove(id);
             Epic epicOfRemovedSubtask = epics.get(deletedSubtask.getIdEpic()); //эпик удаляемой подзадачи
             epicOfRemovedSubtask.deleteIdSubtask(id);
-            updateEpicStatus(epicOfRemovedSubtask); //проверка статуса эпика после удаления подзадачи
-            updateEpicDurationStartTimeEndTime(epicOfRemovedSubtask);
+            removeFromRollups(epicOfRemovedSubtask, deletedSubtask); //статус и время эпиков после удаления подзадачи
             deletedSubtask.setId(0); //Удаляемые подзадачи не должны хранить внутри себя старые id
         }
     }
@@ -316,87 +1022,294 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public ArrayList<Subtask> getSubtasksListByEpic(Epic epic) {
-        return epic.getSubtaskIdList().stream()
-                .map(this::getSubtaskById)
-                .collect(Collectors.toCollection(ArrayList::new));
+        ArrayList<Subtask> epicSubtasks = new ArrayList<>(epic.getSubtaskIds().size());
+        epic.getSubtaskIds().forEach(subtaskId -> epicSubtasks.add(getSubtaskById(subtaskId)));
+        return epicSubtasks;
+    }
+
+    /**
+     * Получение списка подзадач эпика одним проходом по таблице подзадач: подзадачи не попадают в историю,
+     * в режиме VIEW_EPIC в историю записывается только просмотр эпика. Для несуществующего эпика - пустой список
+     */
+    @Override
+    public ArrayList<Subtask> getSubtasksListByEpic(Integer epicId, ReadMode readMode) {
+        Epic epic = epics.get(epicId);
+        if (epic == null) {
+            return new ArrayList<>();
+        }
+        if (readMode == ReadMode.VIEW_EPIC) {
+            historyManager.add(epic);
+        }
+        ArrayList<Subtask> epicSubtasks = new ArrayList<>(epic.getSubtaskIds().size());
+        epic.getSubtaskIds().forEach(subtaskId -> epicSubtasks.add(subtasks.get(subtaskId)));
+        return epicSubtasks;
     }
 
     /**
-     * обновление статуса эпика:
+     * Получение списка эпиков, непосредственно вложенных в эпик, без записи в историю.
+     * Для несуществующего эпика - пустой список
+     */
+    @Override
+    public ArrayList<Epic> getChildEpicsListByEpic(Integer epicId) {
+        Epic epic = epics.get(epicId);
+        if (epic == null) {
+            return new ArrayList<>();
+        }
+        ArrayList<Epic> childEpics = new ArrayList<>(epic.getChildEpicIds().size());
+        epic.getChildEpicIds().forEach(childId -> childEpics.add(epics.get(childId)));
+        return childEpics;
+    }
+
+    /**
+     * Пересчет эпика заново по его подзадачам и сводным значениям вложенных эпиков (при замене эпика):
      * нет подзадач - новая
      * если статус хотя бы одной подзадачи отличается от других, то эпик в работе
-     * иначе определяется единым статусом всех входящих в эпик подзадач
-     */
-    protected void updateEpicStatus(Epic epic) {
-        TaskStatus identityElementStatus = epic.getSubtaskIdList().stream()
-                .map(subtaskId -> getSubtaskById(subtaskId).getStatus())
-                .findFirst()
-                .orElse(TaskStatus.NEW);
-        epic.setStatus(epic.getSubtaskIdList().stream()
-                .map(subtaskId -> getSubtaskById(subtaskId).getStatus())
-                .reduce(identityElementStatus,
-                        (subtaskStatus, intermediateSubTaskStatus) -> (intermediateSubTaskStatus != subtaskStatus) ?
-                                TaskStatus.IN_PROGRESS : subtaskStatus));
-    }
-
-    /**
-     * определение:
-     * продолжительности эпика (сумма продолжительностей всех его подзадач)
-     * определение времени начала эпика - даты старта самой ранней подзадачи
-     * время завершения эпика — время окончания самой поздней из подзадач
-     */
-    protected void updateEpicDurationStartTimeEndTime(Epic epic) {
-        class DurationStartTimeEndTimeAccumulator {
-            private Duration duration = Duration.ZERO;
-            private LocalDateTime startTime = null;
-            private LocalDateTime endTime = null;
-
-            void accumulate(Subtask subtask) {
-                duration = duration.plus(subtask.getDuration());
-                LocalDateTime accStartTime = subtask.getStartTime();
-                if (accStartTime != null) {
-                    startTime = (startTime == null) ? accStartTime :
-                            (accStartTime.isBefore(startTime) ? accStartTime : startTime);
-                }
-                LocalDateTime accEndTime = subtask.getEndTime();
-                if (accEndTime != null) {
-                    endTime = (endTime == null) ? accEndTime : (accEndTime.isAfter(endTime) ? accEndTime : endTime);
-                }
-
-            }
+     * иначе определяется единым статусом всех входящих в эпик подзадач;
+     * продолжительность - сумма продолжительностей подзадач,
+     * время начала - старт самой ранней подзадачи, время завершения - окончание самой поздней.
+     * При добавлении, обновлении и удалении подзадачи эпики учитывают ее сами за O(log k) на уровень вложенности
+     */
+    protected void recountEpic(Epic epic) {
+        epic.clearSubtaskStatuses();
+        epic.clearSubtaskTimes();
+        epic.getSubtaskIds().forEach(subtaskId -> {
+            Subtask subtask = subtasks.get(subtaskId);
+            epic.addSubtaskStatus(subtask.getStatus());
+            epic.addSubtaskTime(subtask);
+        });
+        epic.getChildEpicIds().forEach(childId -> epic.putChildRollup(epics.get(childId)));
+    }
 
-            DurationStartTimeEndTimeAccumulator combine(DurationStartTimeEndTimeAccumulator acc) {
-                duration = duration.plus(acc.duration);
-                LocalDateTime accStartTime = acc.startTime;
-                if (accStartTime != null) {
-                    startTime = (startTime == null) ? accStartTime :
-                            (accStartTime.isBefore(startTime) ? accStartTime : startTime);
-                }
-                LocalDateTime accEndTime = acc.endTime;
-                if (accEndTime != null) {
-                    endTime = (endTime == null) ? accEndTime : (accEndTime.isAfter(endTime) ? accEndTime : endTime);
+    /**
+     * Пересчет сводных значений всех эпиков заново (после загрузки): каждая подзадача учитывается в своем эпике,
+     * затем эпики каждого дерева учитываются в эпиках выше, начиная с самых глубоких
+     */
+    protected void recountAllEpics() {
+        for (Epic epic : epics.values()) {
+            epic.clearSubtaskStatuses();
+            epic.clearSubtaskTimes();
+        }
+        for (Subtask subtask : subtasks.values()) {
+            Epic epic = epics.get(subtask.getIdEpic());
+            epic.addSubtaskStatus(subtask.getStatus());
+            epic.addSubtaskTime(subtask);
+        }
+        for (Epic epic : epics.values()) {
+            if (getParentEpic(epic) == null) {
+                List<Epic> subtree = getEpicSubtree(epic); //вложенные эпики идут после эпиков, в которые вложены
+                for (int i = subtree.size() - 1; i > 0; i--) {
+                    getParentEpic(subtree.get(i)).putChildRollup(subtree.get(i));
                 }
-                return this;
             }
         }
+    }
 
-        DurationStartTimeEndTimeAccumulator acc = epic.getSubtaskIdList().stream()
-                .map(subtaskId -> subtasks.get(subtaskId))
-                .collect(Collector.of(DurationStartTimeEndTimeAccumulator::new,
-                        DurationStartTimeEndTimeAccumulator::accumulate,
-                        DurationStartTimeEndTimeAccumulator::combine));
+    /**
+     * эпик, в который вложен эпик в менеджере, за O(1); null - эпик верхнего уровня
+     */
+    protected Epic getParentEpic(Epic epic) {
+        Integer idParentEpic = parentEpicIds.get(epic.getId());
+        return idParentEpic == null ? null : epics.get(idParentEpic);
+    }
 
-        epic.setDuration(acc.duration);
-        epic.setStartTime(acc.startTime);
-        epic.setEndTime(acc.endTime);
+    /**
+     * эпик и все вложенные в него эпики на любой глубине, начиная с самого эпика
+     */
+    protected List<Epic> getEpicSubtree(Epic epic) {
+        List<Epic> subtree = new ArrayList<>();
+        subtree.add(epic);
+        for (int i = 0; i < subtree.size(); i++) {
+            subtree.get(i).getChildEpicIds().forEach(childId -> subtree.add(epics.get(childId)));
+        }
+        return subtree;
+    }
 
+    /**
+     * учет подзадачи в эпике и замена сводных значений в эпиках выше: O(глубина · log c)
+     */
+    private void addToRollups(Epic epic, Subtask subtask) {
+        epic.addSubtaskStatus(subtask.getStatus());
+        epic.addSubtaskTime(subtask);
+        updateAncestorRollups(epic);
+    }
+
+    /**
+     * исключение подзадачи из эпика и замена сводных значений в эпиках выше: O(глубина · log c)
+     */
+    private void removeFromRollups(Epic epic, Subtask subtask) {
+        epic.removeSubtaskStatus(subtask.getStatus());
+        epic.removeSubtaskTime(subtask);
+        updateAncestorRollups(epic);
+    }
+
+    /**
+     * пересчет эпика целиком с заменой его сводных значений в эпиках выше
+     */
+    private void replaceEpicRollup(Epic epic) {
+        recountEpic(epic);
+        updateAncestorRollups(epic);
+    }
+
+    /**
+     * Замена сводных значений эпика в эпике, в который он вложен, затем этого эпика - в следующем и так далее
+     * до верхнего уровня: каждый эпик выше учитывает вложенный эпик одной записью, за O(log c) на уровень
+     */
+    private void updateAncestorRollups(Epic epic) {
+        for (Epic child = epic, parent = getParentEpic(epic); parent != null;
+                child = parent, parent = getParentEpic(parent)) {
+            parent.putChildRollup(child);
+        }
+    }
+
+    /**
+     * извлечение эпика из эпика, в который он вложен, с исключением его сводных значений из эпиков выше
+     */
+    private void removeFromParentRollup(Epic epic) {
+        Epic parentEpic = getParentEpic(epic);
+        unlinkFromParentEpic(epic);
+        if (parentEpic != null) {
+            parentEpic.removeChildRollup(epic.getId());
+            updateAncestorRollups(parentEpic);
+        }
+    }
+
+    /**
+     * Эпик с id idParentEpic может принять эпик с id epicId: эпика верхнего уровня (null) или существующий эпик,
+     * который не совпадает с эпиком epicId и не вложен в него
+     */
+    private boolean canBeParentEpic(Integer idParentEpic, int epicId) {
+        if (idParentEpic == null) {
+            return true;
+        }
+        for (Epic current = epics.get(idParentEpic); current != null; current = getParentEpic(current)) {
+            if (current.getId() == epicId) {
+                return false;
+            }
+        }
+        return epics.containsKey(idParentEpic);
+    }
+
+    /**
+     * вложение эпика в эпик по его ссылке idParentEpic; эпик, в который он вложен, должен существовать
+     */
+    protected void linkToParentEpic(Epic epic) {
+        if (epic.getIdParentEpic() != null) {
+            parentEpicIds.put(epic.getId(), epic.getIdParentEpic());
+            epics.get(epic.getIdParentEpic()).addIdChildEpic(epic.getId());
+        }
+    }
+
+    protected void unlinkFromParentEpic(Epic epic) {
+        Epic parentEpic = getParentEpic(epic);
+        if (parentEpic != null) {
+            parentEpic.deleteIdChildEpic(epic.getId());
+        }
+        parentEpicIds.remove(epic.getId());
     }
 
     /**
      * Валидация наличия пересечений с задачами и подзадачами таск менеджера
      */
     protected boolean hasTaskNoIntersections(Task validatedTask) {
-        return getPrioritizedTasks().stream()
-                .noneMatch(task -> CommonTaskManagerUtils.isIntersecting(validatedTask, task));
+        return hasTaskNoIntersections(validatedTask, null);
+    }
+
+    /**
+     * Валидация наличия пересечений при обновлении: прежняя версия задачи replacedTask при проверке пропускается.
+     * Задача проверяется только по расписанию своего исполнителя: задачи разных исполнителей могут пересекаться
+     */
+    protected boolean hasTaskNoIntersections(Task validatedTask, Task replacedTask) {
+        TaskTimeline timeline = timelines.get(validatedTask.getAssignee());
+        if (timeline != null && !timeline.hasNoIntersections(validatedTask, replacedTask)) {
+            return false;
+        }
+        for (RecurringTask recurringTask : recurringTasksOf(validatedTask.getAssignee())) {
+            if (hasOccurrenceIntersecting(recurringTask, validatedTask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * повторяющиеся задачи исполнителя assignee (null - без исполнителя)
+     */
+    private List<RecurringTask> recurringTasksOf(String assignee) {
+        List<RecurringTask> assigneeRecurringTasks = new ArrayList<>();
+        for (RecurringTask recurringTask : recurringTasks.values()) {
+            if (Objects.equals(recurringTask.getAssignee(), assignee)) {
+                assigneeRecurringTasks.add(recurringTask);
+            }
+        }
+        return assigneeRecurringTasks;
+    }
+
+    /**
+     * с задачей task пересекается повторение recurringTask; строятся только повторения около задачи
+     */
+    private static boolean hasOccurrenceIntersecting(RecurringTask recurringTask, Task task) {
+        for (Task occurrence : recurringTask.getOccurrencesStartingBetween(
+                task.getStartTime().minus(recurringTask.getDuration()), task.getEndTime())) {
+            if (CommonTaskManagerUtils.isIntersecting(task, occurrence)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void validateRecurringTask(RecurringTask recurringTask) {
+        if (recurringTask.getStartTime() == null || recurringTask.getRule() == null) {
+            throw new IllegalArgumentException("Повторяющаяся задача должна иметь время первого повторения и правило");
+        }
+    }
+
+    /**
+     * Валидация повторяющейся задачи (replacedTask - прежняя версия при обновлении):
+     * соседние повторения в пределах двух периодов не пересекаются; с каждой задачей расписания исполнителя
+     * сравниваются только повторения около нее; с другой повторяющейся задачей исполнителя повторения
+     * сравниваются в пределах общего периода обеих задач после начала обеих - дальше их взаимное расположение
+     * повторяется
+     */
+    private boolean hasRecurringTaskNoIntersections(RecurringTask validatedTask, RecurringTask replacedTask) {
+        LocalDateTime firstStart = validatedTask.getStartTime();
+        RecurrenceRule rule = validatedTask.getRule();
+        List<Task> firstOccurrences = validatedTask.getOccurrencesStartingBetween(firstStart,
+                firstStart.plusDays(2L * rule.getPeriodDays()));
+        for (int i = 1; i < firstOccurrences.size(); i++) {
+            if (CommonTaskManagerUtils.isIntersecting(firstOccurrences.get(i - 1), firstOccurrences.get(i))) {
+                return false;
+            }
+        }
+
+        TaskTimeline timeline = timelines.get(validatedTask.getAssignee());
+        if (timeline != null) {
+            LocalDateTime lastEnd = rule.getUntil() == null ? LocalDateTime.MAX :
+                    rule.getUntil().plusDays(1).atStartOfDay().plus(validatedTask.getDuration());
+            List<Task> timelineTasks = new ArrayList<>();
+            timeline.collectTasksInWindow(firstStart, lastEnd, timelineTasks);
+            for (Task task : timelineTasks) {
+                if (hasOccurrenceIntersecting(validatedTask, task)) {
+                    return false;
+                }
+            }
+        }
+
+        for (RecurringTask otherTask : recurringTasksOf(validatedTask.getAssignee())) {
+            if (otherTask == replacedTask) {
+                continue;
+            }
+            LocalDateTime bothStarted = latest(firstStart, otherTask.getStartTime());
+            Duration longerDuration = validatedTask.getDuration().compareTo(otherTask.getDuration()) > 0 ?
+                    validatedTask.getDuration() : otherTask.getDuration();
+            long commonPeriodDays = lcm(rule.getPeriodDays(), otherTask.getRule().getPeriodDays());
+            for (Task occurrence : validatedTask.getOccurrencesStartingBetween(
+                    bothStarted.minus(validatedTask.getDuration()),
+                    bothStarted.plus(longerDuration).plusDays(commonPeriodDays))) {
+                if (hasOccurrenceIntersecting(otherTask, occurrence)) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 }
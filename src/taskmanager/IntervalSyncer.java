@@ -0,0 +1,78 @@
+package taskmanager;
+
+import java.time.Duration;
+
+/**
+ * Сброс записанных изменений на диск по таймеру (режим DurabilityMode.SYNC_INTERVAL): изменения,
+ * после которых больше не было записей, сбрасываются отдельным потоком не позже чем через интервал
+ */
+final class IntervalSyncer implements Runnable {
+    private final Runnable syncAction;
+    private final long syncIntervalMillis;
+    private final Thread syncerThread;
+
+    private boolean closed;
+    private volatile ManagerSaveException failure; //ошибка последнего фонового сброса
+
+    IntervalSyncer(Runnable syncAction, Duration syncInterval) {
+        this.syncAction = syncAction;
+        this.syncIntervalMillis = Math.max(1, syncInterval.toMillis()); //wait(0) ждал бы без ограничения
+        syncerThread = new Thread(this, "task-manager-syncer");
+        syncerThread.setDaemon(true);
+        syncerThread.start();
+    }
+
+    /**
+     * получение и сброс ошибки фонового сброса на диск
+     */
+    ManagerSaveException takeFailure() {
+        ManagerSaveException lastFailure = failure;
+        failure = null;
+        return lastFailure;
+    }
+
+    /**
+     * остановка потока сброса; несброшенные изменения сбрасывает вызывающая сторона
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            syncerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (awaitInterval()) {
+            try {
+                syncAction.run();
+            } catch (ManagerSaveException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * ожидание истечения интервала; false - поток остановлен
+     */
+    private synchronized boolean awaitInterval() {
+        long deadlineMillis = System.currentTimeMillis() + syncIntervalMillis;
+        try {
+            while (!closed) {
+                long waitMillis = deadlineMillis - System.currentTimeMillis();
+                if (waitMillis <= 0) {
+                    return true;
+                }
+                wait(waitMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Область времени, в которой задачи одного исполнителя пересекаются: объединение цепочки пересекающихся
+ * интервалов и все пары пересекающихся в ней задач
+ */
+public final class OverlapRegion {
+    private final String assignee; //исполнитель задач области, null - задачи без исполнителя
+    private final LocalDateTime startTime; //начало самой ранней задачи области
+    private final LocalDateTime endTime; //завершение самой поздней задачи области
+    private final List<Task> tasks; //задачи области в порядке времени начала
+    private final List<Map.Entry<Task, Task>> conflictingPairs; //пары пересекающихся задач, раньше начавшаяся первой
+
+    OverlapRegion(String assignee, LocalDateTime startTime, LocalDateTime endTime, List<Task> tasks,
+                  List<Map.Entry<Task, Task>> conflictingPairs) {
+        this.assignee = assignee;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.tasks = tasks;
+        this.conflictingPairs = conflictingPairs;
+    }
+
+    public String getAssignee() {
+        return assignee;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public List<Map.Entry<Task, Task>> getConflictingPairs() {
+        return conflictingPairs;
+    }
+
+    @Override
+    public String toString() {
+        return "OverlapRegion{" +
+                "assignee=" + assignee +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", tasks=" + tasks.size() +
+                ", conflictingPairs=" + conflictingPairs.size() +
+                '}';
+    }
+}
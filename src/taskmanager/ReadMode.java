@@ -0,0 +1,16 @@
+package taskmanager;
+
+/**
+ * Режим чтения списка подзадач эпика
+ */
+public enum ReadMode {
+    /**
+     * чтение без записи в историю просмотров и без сохранения
+     */
+    SILENT,
+    /**
+     * в историю просмотров записывается один просмотр эпика (в файловом менеджере - одна запись журнала),
+     * подзадачи в историю не попадают
+     */
+    VIEW_EPIC
+}
@@ -0,0 +1,21 @@
+package taskmanager;
+
+/**
+ * Режим сохранения файлового менеджера задач
+ */
+public enum SaveMode {
+    /**
+     * полная перезапись файла менеджера после каждого изменения задач;
+     * просмотры задач дописываются в журнал просмотров
+     */
+    SNAPSHOT,
+    /**
+     * дописывание одной записи об изменении в журнал; файл менеджера перезаписывается только при сжатии журнала
+     */
+    JOURNAL,
+    /**
+     * задачи хранятся в сегментах по диапазонам id, после изменения перезаписываются только измененные сегменты;
+     * просмотры задач дописываются в журнал просмотров
+     */
+    SEGMENTED
+}
@@ -0,0 +1,129 @@
+package taskmanager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Календарь занятости по 15-минутным слотам: бит слота установлен, если слот хотя бы частично занят задачей.
+ * Биты хранятся страницами по неделе (672 слота в 11 словах long), страница заводится при первой занятой
+ * в ней задаче и освобождается, когда в ней не остается занятых слотов.
+ * Свободный по календарю интервал точно свободен; занятый слот может быть занят лишь частично,
+ * поэтому такой ответ требует точной проверки по задачам
+ */
+final class SlotCalendar {
+    static final int SLOT_SECONDS = 15 * 60;
+    static final int SLOTS_PER_PAGE = 7 * 24 * 4;
+    private static final int WORDS_PER_PAGE = (SLOTS_PER_PAGE + Long.SIZE - 1) / Long.SIZE;
+
+    private final Map<Long, long[]> pages = new HashMap<>(); //номер недели от эпохи -> биты ее слотов
+
+    /**
+     * отметка слотов интервала [startTime, endTime) занятыми
+     */
+    void occupy(LocalDateTime startTime, LocalDateTime endTime) {
+        long firstSlot = firstSlotOf(startTime);
+        long endSlot = endSlotOf(firstSlot, endTime);
+        while (firstSlot < endSlot) {
+            long pageIndex = Math.floorDiv(firstSlot, SLOTS_PER_PAGE);
+            long pageEndSlot = Math.min(endSlot, (pageIndex + 1) * SLOTS_PER_PAGE);
+            long[] page = pages.computeIfAbsent(pageIndex, index -> new long[WORDS_PER_PAGE]);
+            int fromBit = (int) (firstSlot - pageIndex * SLOTS_PER_PAGE);
+            int toBit = (int) (pageEndSlot - pageIndex * SLOTS_PER_PAGE);
+            for (int word = fromBit / Long.SIZE; word * Long.SIZE < toBit; word++) {
+                page[word] |= wordMask(word, fromBit, toBit);
+            }
+            firstSlot = pageEndSlot;
+        }
+    }
+
+    /**
+     * снятие отметки со слотов интервала [startTime, endTime); слоты, которые делятся с соседними задачами,
+     * вызывающая сторона отмечает заново
+     */
+    void release(LocalDateTime startTime, LocalDateTime endTime) {
+        long firstSlot = firstSlotOf(startTime);
+        long endSlot = endSlotOf(firstSlot, endTime);
+        while (firstSlot < endSlot) {
+            long pageIndex = Math.floorDiv(firstSlot, SLOTS_PER_PAGE);
+            long pageEndSlot = Math.min(endSlot, (pageIndex + 1) * SLOTS_PER_PAGE);
+            long[] page = pages.get(pageIndex);
+            if (page != null) {
+                int fromBit = (int) (firstSlot - pageIndex * SLOTS_PER_PAGE);
+                int toBit = (int) (pageEndSlot - pageIndex * SLOTS_PER_PAGE);
+                for (int word = fromBit / Long.SIZE; word * Long.SIZE < toBit; word++) {
+                    page[word] &= ~wordMask(word, fromBit, toBit);
+                }
+                if (isEmpty(page)) {
+                    pages.remove(pageIndex);
+                }
+            }
+            firstSlot = pageEndSlot;
+        }
+    }
+
+    /**
+     * все слоты интервала [startTime, endTime) свободны (интервал нулевой длины проверяется по слоту своего начала)
+     */
+    boolean isFree(LocalDateTime startTime, LocalDateTime endTime) {
+        long firstSlot = firstSlotOf(startTime);
+        long endSlot = endSlotOf(firstSlot, endTime);
+        while (firstSlot < endSlot) {
+            long pageIndex = Math.floorDiv(firstSlot, SLOTS_PER_PAGE);
+            long pageEndSlot = Math.min(endSlot, (pageIndex + 1) * SLOTS_PER_PAGE);
+            long[] page = pages.get(pageIndex);
+            if (page != null) {
+                int fromBit = (int) (firstSlot - pageIndex * SLOTS_PER_PAGE);
+                int toBit = (int) (pageEndSlot - pageIndex * SLOTS_PER_PAGE);
+                for (int word = fromBit / Long.SIZE; word * Long.SIZE < toBit; word++) {
+                    if ((page[word] & wordMask(word, fromBit, toBit)) != 0) {
+                        return false;
+                    }
+                }
+            }
+            firstSlot = pageEndSlot;
+        }
+        return true;
+    }
+
+    void clear() {
+        pages.clear();
+    }
+
+    int getPageCount() {
+        return pages.size();
+    }
+
+    private static long firstSlotOf(LocalDateTime startTime) {
+        return Math.floorDiv(startTime.toEpochSecond(ZoneOffset.UTC), SLOT_SECONDS);
+    }
+
+    /**
+     * номер слота, следующего за последним слотом интервала; интервал нулевой длины занимает слот своего начала
+     */
+    private static long endSlotOf(long firstSlot, LocalDateTime endTime) {
+        long endSecond = endTime.toEpochSecond(ZoneOffset.UTC) + (endTime.getNano() > 0 ? 1 : 0);
+        return Math.max(firstSlot + 1, Math.floorDiv(endSecond + SLOT_SECONDS - 1, SLOT_SECONDS));
+    }
+
+    /**
+     * маска битов [fromBit, toBit) страницы, попадающих в слово word
+     */
+    private static long wordMask(int word, int fromBit, int toBit) {
+        int wordStart = word * Long.SIZE;
+        int from = Math.max(fromBit - wordStart, 0);
+        int to = Math.min(toBit - wordStart, Long.SIZE);
+        long upperMask = to == Long.SIZE ? -1L : (1L << to) - 1;
+        return upperMask & (-1L << from);
+    }
+
+    private static boolean isEmpty(long[] page) {
+        for (long word : page) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
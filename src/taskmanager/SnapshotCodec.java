@@ -0,0 +1,13 @@
+package taskmanager;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Формат файла менеджера: преобразование снимка в байты и обратно
+ */
+interface SnapshotCodec {
+
+    byte[] encode(TaskSnapshot snapshot);
+
+    TaskSnapshot decode(ByteBuffer buffer);
+}
@@ -0,0 +1,42 @@
+package taskmanager;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Формат снимка файлового менеджера задач
+ */
+public enum SnapshotFormat {
+    /**
+     * текстовый csv-формат, пригодный для импорта и экспорта
+     */
+    CSV(new CsvSnapshotCodec()),
+    /**
+     * компактный двоичный формат с версией
+     */
+    BINARY(new BinarySnapshotCodec()),
+    /**
+     * двоичный формат, сжатый независимыми блоками с контрольными суммами: повреждение одного блока
+     * не мешает загрузить остальные
+     */
+    COMPRESSED(new CompressedSnapshotCodec());
+
+    private final SnapshotCodec codec;
+
+    SnapshotFormat(SnapshotCodec codec) {
+        this.codec = codec;
+    }
+
+    SnapshotCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * определение формата по началу файла: двоичный и сжатый снимки начинаются с сигнатуры
+     */
+    static SnapshotFormat detect(ByteBuffer buffer) {
+        if (CompressedSnapshotCodec.hasSignature(buffer)) {
+            return COMPRESSED;
+        }
+        return BinarySnapshotCodec.hasSignature(buffer) ? BINARY : CSV;
+    }
+}
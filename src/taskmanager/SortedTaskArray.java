@@ -0,0 +1,117 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Отсортированный массив задач в виде SortedSet только для чтения: конструктор TreeSet(SortedSet)
+ * строит из него дерево за линейное время. Задачи с совпадающим ключом сортировки отбрасываются,
+ * кроме первой, как при добавлении в TreeSet. Поиск и диапазоны - двоичным поиском по массиву
+ */
+final class SortedTaskArray extends AbstractSet<Task> implements SortedSet<Task> {
+    private final Task[] sortedTasks;
+    private final int fromIndex; //границы диапазона в массиве: [fromIndex, toIndex)
+    private final int toIndex;
+    private final Comparator<? super Task> comparator;
+
+    SortedTaskArray(Task[] sortedTasks, Comparator<? super Task> comparator) {
+        this(sortedTasks, 0, removeDuplicates(sortedTasks, comparator), comparator);
+    }
+
+    private SortedTaskArray(Task[] sortedTasks, int fromIndex, int toIndex, Comparator<? super Task> comparator) {
+        this.sortedTasks = sortedTasks;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return Arrays.asList(sortedTasks).subList(fromIndex, toIndex).iterator();
+    }
+
+    @Override
+    public int size() {
+        return toIndex - fromIndex;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Task && Arrays.binarySearch(sortedTasks, fromIndex, toIndex, (Task) o, comparator) >= 0;
+    }
+
+    @Override
+    public Comparator<? super Task> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public Task first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return sortedTasks[fromIndex];
+    }
+
+    @Override
+    public Task last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return sortedTasks[toIndex - 1];
+    }
+
+    @Override
+    public SortedSet<Task> subSet(Task fromElement, Task toElement) {
+        if (comparator.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("Начало диапазона больше его конца");
+        }
+        return new SortedTaskArray(sortedTasks, lowerBound(fromElement), lowerBound(toElement), comparator);
+    }
+
+    @Override
+    public SortedSet<Task> headSet(Task toElement) {
+        return new SortedTaskArray(sortedTasks, fromIndex, lowerBound(toElement), comparator);
+    }
+
+    @Override
+    public SortedSet<Task> tailSet(Task fromElement) {
+        return new SortedTaskArray(sortedTasks, lowerBound(fromElement), toIndex, comparator);
+    }
+
+    /**
+     * сдвиг различных по ключу сортировки задач в начало массива; возвращает их число
+     */
+    private static int removeDuplicates(Task[] sortedTasks, Comparator<? super Task> comparator) {
+        int distinctCount = 0;
+        for (Task task : sortedTasks) {
+            if (distinctCount == 0 || comparator.compare(sortedTasks[distinctCount - 1], task) != 0) {
+                sortedTasks[distinctCount++] = task;
+            }
+        }
+        return distinctCount;
+    }
+
+    /**
+     * позиция первой задачи диапазона, не меньшей task
+     */
+    private int lowerBound(Task task) {
+        int low = fromIndex;
+        int high = toIndex;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(sortedTasks[middle], task) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,331 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.time.LocalDateTime;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Дерево интервалов задач: сбалансированное (AVL) дерево по TaskOrder.START_END_ORDER, в каждом узле которого
+ * хранится самое позднее завершение задач его поддерева. По нему поиск задач, пересекающих интервал, пропускает
+ * поддеревья, все задачи которых завершились раньше, и не зависит от того, пересекаются ли задачи между собой:
+ * поиск одной пересекающей задачи - O(log n), всех k пересекающих задач - O(log n + k)
+ */
+final class TaskIntervalTree extends AbstractCollection<Task> {
+    private Node root;
+    private int size;
+    private boolean changed; //последняя вставка или удаление изменили дерево
+
+    TaskIntervalTree() {
+    }
+
+    /**
+     * построение дерева из задач, отсортированных по TaskOrder.START_END_ORDER, за линейное время
+     */
+    TaskIntervalTree(Task[] sortedTasks) {
+        root = build(sortedTasks, 0, sortedTasks.length);
+        size = sortedTasks.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Task)) {
+            return false;
+        }
+        Node node = root;
+        while (node != null) {
+            int byOrder = TaskOrder.START_END_ORDER.compare((Task) o, node.task);
+            if (byOrder == 0) {
+                return true;
+            }
+            node = byOrder < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean add(Task task) {
+        changed = false;
+        root = insert(root, task);
+        if (changed) {
+            size++;
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Task)) {
+            return false;
+        }
+        changed = false;
+        root = delete(root, (Task) o);
+        if (changed) {
+            size--;
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new TaskIterator(null);
+    }
+
+    /**
+     * задачи в порядке TaskOrder.START_END_ORDER, начиная с первой задачи, не меньшей probe
+     */
+    Iterator<Task> iteratorFrom(Task probe) {
+        return new TaskIterator(probe);
+    }
+
+    /**
+     * самое позднее завершение задач дерева; null - дерево пусто
+     */
+    LocalDateTime getMaxEnd() {
+        return root == null ? null : root.maxEnd;
+    }
+
+    /**
+     * самое позднее завершение задач, начинающихся раньше moment, за O(log n); null - таких задач нет
+     */
+    LocalDateTime getMaxEndBefore(LocalDateTime moment) {
+        LocalDateTime maxEnd = null;
+        Node node = root;
+        while (node != null) {
+            if (node.task.getStartTime().isBefore(moment)) { //узел и все его левое поддерево начинаются раньше
+                maxEnd = latest(maxEnd, node.task.getEndTime());
+                maxEnd = node.left == null ? maxEnd : latest(maxEnd, node.left.maxEnd);
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return maxEnd;
+    }
+
+    /**
+     * Первая задача, пересекающая интервал [from, to) (начинается раньше to и завершается позже from),
+     * кроме задачи excluded; null - таких задач нет
+     */
+    Task findIntersecting(LocalDateTime from, LocalDateTime to, Task excluded) {
+        return findIntersecting(root, from, to, excluded);
+    }
+
+    /**
+     * Добавление в windowTasks задач, которые выполняются в окне [from, to): начинаются в окне или начались
+     * раньше и еще не завершились к его началу; задачи добавляются в порядке TaskOrder.START_END_ORDER
+     */
+    void collectInWindow(LocalDateTime from, LocalDateTime to, List<Task> windowTasks) {
+        collectInWindow(root, from, to, windowTasks);
+    }
+
+    private static Task findIntersecting(Node node, LocalDateTime from, LocalDateTime to, Task excluded) {
+        if (node == null || !node.maxEnd.isAfter(from)) { //все задачи поддерева завершились к началу интервала
+            return null;
+        }
+        Task intersectingTask = findIntersecting(node.left, from, to, excluded);
+        if (intersectingTask != null) {
+            return intersectingTask;
+        }
+        if (!node.task.getStartTime().isBefore(to)) { //узел и его правое поддерево начинаются не раньше конца
+            return null;
+        }
+        if (node.task != excluded && node.task.getEndTime().isAfter(from)) {
+            return node.task;
+        }
+        return findIntersecting(node.right, from, to, excluded);
+    }
+
+    private static void collectInWindow(Node node, LocalDateTime from, LocalDateTime to, List<Task> windowTasks) {
+        //задача окна завершается не раньше from: начавшиеся в окне задачи - не раньше своего начала
+        if (node == null || node.maxEnd.isBefore(from)) {
+            return;
+        }
+        collectInWindow(node.left, from, to, windowTasks);
+        LocalDateTime startTime = node.task.getStartTime();
+        if (!startTime.isBefore(to)) {
+            return;
+        }
+        if (!startTime.isBefore(from) || node.task.getEndTime().isAfter(from)) {
+            windowTasks.add(node.task);
+        }
+        collectInWindow(node.right, from, to, windowTasks);
+    }
+
+    private static Node build(Task[] sortedTasks, int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return null;
+        }
+        int middle = (fromIndex + toIndex) >>> 1;
+        Node node = new Node(sortedTasks[middle]);
+        node.left = build(sortedTasks, fromIndex, middle);
+        node.right = build(sortedTasks, middle + 1, toIndex);
+        update(node);
+        return node;
+    }
+
+    private Node insert(Node node, Task task) {
+        if (node == null) {
+            changed = true;
+            return new Node(task);
+        }
+        int byOrder = TaskOrder.START_END_ORDER.compare(task, node.task);
+        if (byOrder < 0) {
+            node.left = insert(node.left, task);
+        } else if (byOrder > 0) {
+            node.right = insert(node.right, task);
+        } else {
+            return node;
+        }
+        return rebalance(node);
+    }
+
+    private Node delete(Node node, Task task) {
+        if (node == null) {
+            return null;
+        }
+        int byOrder = TaskOrder.START_END_ORDER.compare(task, node.task);
+        if (byOrder < 0) {
+            node.left = delete(node.left, task);
+        } else if (byOrder > 0) {
+            node.right = delete(node.right, task);
+        } else {
+            changed = true;
+            if (node.left == null || node.right == null) {
+                return node.left == null ? node.right : node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.task = successor.task;
+            node.right = delete(node.right, successor.task);
+        }
+        return rebalance(node);
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node newRoot = node.left;
+        node.left = newRoot.right;
+        newRoot.right = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node newRoot = node.right;
+        node.right = newRoot.left;
+        newRoot.left = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    /**
+     * пересчет высоты и самого позднего завершения узла по его задаче и поддеревьям
+     */
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        LocalDateTime maxEnd = node.task.getEndTime();
+        if (node.left != null) {
+            maxEnd = latest(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = latest(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        return first == null || second.isAfter(first) ? second : first;
+    }
+
+    private static final class Node {
+        private Task task;
+        private Node left;
+        private Node right;
+        private int height;
+        private LocalDateTime maxEnd; //самое позднее завершение задач поддерева
+
+        private Node(Task task) {
+            this.task = task;
+            this.height = 1;
+            this.maxEnd = task.getEndTime();
+        }
+    }
+
+    /**
+     * Обход дерева по порядку со стеком узлов, задачи которых еще не выданы; probe == null - с первой задачи
+     */
+    private final class TaskIterator implements Iterator<Task> {
+        private final Deque<Node> pendingNodes = new ArrayDeque<>();
+
+        private TaskIterator(Task probe) {
+            Node node = root;
+            while (node != null) {
+                if (probe == null || TaskOrder.START_END_ORDER.compare(node.task, probe) >= 0) {
+                    pendingNodes.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pendingNodes.isEmpty();
+        }
+
+        @Override
+        public Task next() {
+            if (pendingNodes.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = pendingNodes.pop();
+            for (Node child = node.right; child != null; child = child.left) {
+                pendingNodes.push(child);
+            }
+            return node.task;
+        }
+    }
+}
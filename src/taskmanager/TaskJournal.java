@@ -0,0 +1,186 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Журнал изменений файлового менеджера: каждая операция дописывается в конец файла одной csv-записью.
+ * В режиме снимка тот же формат используется для журнала просмотров (только записи VIEW)
+ */
+final class TaskJournal {
+    static final String PUT_RECORD = "PUT";
+    static final String DELETE_RECORD = "DEL";
+    static final String CLEAR_RECORD = "CLEAR";
+    static final String VIEW_RECORD = "VIEW";
+
+    private final Path journalPath;
+    private FileChannel journalChannel;
+    private Writer journalWriter;
+    private int recordCount;
+
+    TaskJournal(Path journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * путь к журналу, лежащему рядом с файлом менеджера
+     */
+    static Path journalPathFor(Path taskManagerPath) {
+        return taskManagerPath.resolveSibling(taskManagerPath.getFileName() + ".journal");
+    }
+
+    /**
+     * путь к журналу просмотров, который в режиме снимка хранит историю между перезаписями файла менеджера
+     */
+    static Path historyPathFor(Path taskManagerPath) {
+        return taskManagerPath.resolveSibling(taskManagerPath.getFileName() + ".history");
+    }
+
+    static Path logPathFor(Path taskManagerPath, SaveMode saveMode) {
+        return saveMode == SaveMode.JOURNAL ? journalPathFor(taskManagerPath) : historyPathFor(taskManagerPath);
+    }
+
+    /**
+     * путь, под который журнал переименовывается на время подмены файла менеджера снимком
+     */
+    static Path retiredPathFor(Path journalPath) {
+        return journalPath.resolveSibling(journalPath.getFileName() + ".old");
+    }
+
+    /**
+     * Завершение прерванной подмены файла менеджера снимком. Отложенный журнал остается только после того,
+     * как новый снимок целиком записан во временный файл: этот снимок уже включает записи журнала, поэтому
+     * временный файл (если он еще не переименован) становится файлом менеджера, а отложенный журнал удаляется
+     */
+    static void recoverSnapshotCommit(Path taskManagerPath, Path journalPath) throws IOException {
+        Path retiredPath = retiredPathFor(journalPath);
+        if (!Files.exists(retiredPath)) {
+            return;
+        }
+        Path tempPath = DurableFiles.tempPathFor(taskManagerPath);
+        if (Files.exists(tempPath)) {
+            DurableFiles.replace(tempPath, taskManagerPath);
+        }
+        Files.delete(retiredPath);
+        DurableFiles.syncDirectory(taskManagerPath);
+    }
+
+    boolean isOpened() {
+        return journalWriter != null;
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * открытие журнала для дописывания записей (после загрузки менеджера из файла);
+     * недописанный хвост журнала за validLength байтами отбрасывается
+     */
+    void open(int existingRecordCount, long validLength) throws IOException {
+        close();
+        openChannel(StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (journalChannel.size() > validLength) {
+            journalChannel.truncate(validLength);
+        }
+        journalChannel.position(journalChannel.size());
+        recordCount = existingRecordCount;
+    }
+
+    /**
+     * Откладывание журнала перед подменой файла менеджера снимком, уже записанным во временный файл:
+     * до удаления отложенного журнала загрузка считает подмену состоявшейся и его записи не применяет
+     */
+    void retire(boolean sync) throws IOException {
+        close();
+        if (Files.exists(journalPath)) {
+            DurableFiles.replace(journalPath, retiredPathFor(journalPath));
+            if (sync) {
+                DurableFiles.syncDirectory(journalPath);
+            }
+        }
+    }
+
+    /**
+     * удаление отложенного журнала, записи которого вошли в снимок
+     */
+    void deleteRetired() throws IOException {
+        Files.deleteIfExists(retiredPathFor(journalPath));
+    }
+
+    /**
+     * очистка журнала (после записи полного снимка менеджера)
+     */
+    void reset() throws IOException {
+        close();
+        openChannel(StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        recordCount = 0;
+    }
+
+    private void openChannel(StandardOpenOption... options) throws IOException {
+        journalChannel = FileChannel.open(journalPath, options);
+        journalWriter = new BufferedWriter(Channels.newWriter(journalChannel, StandardCharsets.UTF_8.newEncoder(), -1));
+    }
+
+    void append(String record) throws IOException {
+        journalWriter.write(record);
+        journalWriter.write('\n');
+        journalWriter.flush();
+        recordCount++;
+    }
+
+    /**
+     * сброс дописанных записей на диск
+     */
+    void sync() throws IOException {
+        if (journalChannel != null) {
+            journalChannel.force(false);
+        }
+    }
+
+    void close() throws IOException {
+        if (journalWriter != null) {
+            journalWriter.close();
+            journalWriter = null;
+            journalChannel = null;
+        }
+    }
+
+    /**
+     * чтение журнала целиком; отсутствующий журнал равнозначен пустому
+     */
+    static ByteBuffer read(Path journalPath) throws IOException {
+        if (!Files.exists(journalPath)) {
+            return ByteBuffer.allocate(0);
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(journalPath));
+    }
+
+    static String putRecord(Task task) {
+        StringBuilder record = new StringBuilder(72).append(PUT_RECORD).append(',');
+        FileBackedUtils.appendCsvRow(record, task);
+        return record.toString();
+    }
+
+    static String deleteRecord(int id) {
+        return DELETE_RECORD + "," + id;
+    }
+
+    static String clearRecord(String taskType) {
+        return CLEAR_RECORD + "," + taskType;
+    }
+
+    static String viewRecord(int id) {
+        return VIEW_RECORD + "," + id;
+    }
+}
@@ -1,10 +1,14 @@
 package taskmanager;
 
 import taskmodel.Epic;
+import taskmodel.RecurringTask;
 import taskmodel.Subtask;
 import taskmodel.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public interface TaskManager {
@@ -15,6 +19,8 @@ public interface TaskManager {
 
     ArrayList<Subtask> getSubtasksList();
 
+    ArrayList<RecurringTask> getRecurringTasksList();
+
     void removeAllTasks();
 
     void removeAllEpics();
@@ -27,29 +33,65 @@ public interface TaskManager {
 
     Subtask getSubtaskById(Integer id);
 
+    RecurringTask getRecurringTaskById(Integer id);
+
     Integer addTask(Task newTask);
 
     Integer addEpic(Epic newEpic);
 
     Integer addSubtask(Subtask newSubtask);
 
+    Integer addRecurringTask(RecurringTask newRecurringTask);
+
+    ArrayList<Integer> addAll(Collection<? extends Task> newTasks);
+
     Integer updateTask(Task updTask);
 
     Integer updateEpic(Epic updEpic);
 
     Integer updateSubtask(Subtask updSubtask);
 
+    Integer updateRecurringTask(RecurringTask updRecurringTask);
+
     void deleteTaskById(Integer id);
 
     void deleteEpicById(Integer id);
 
     void deleteSubtaskById(Integer id);
 
+    void deleteRecurringTaskById(Integer id);
+
     ArrayList<Subtask> getSubtasksListByEpic(Epic epic);
 
+    ArrayList<Subtask> getSubtasksListByEpic(Integer epicId, ReadMode readMode);
+
+    ArrayList<Epic> getChildEpicsListByEpic(Integer epicId);
+
     HistoryManager getHistoryManager();
 
     List<Task> getHistory();
 
     ArrayList<Task> getPrioritizedTasks();
+
+    ArrayList<Task> getPrioritizedTasksByAssignee(String assignee);
+
+    ArrayList<Task> getPrioritizedTasks(LocalDateTime from, int limit);
+
+    ArrayList<Task> getPrioritizedTasksAfter(Task cursor, int limit);
+
+    ArrayList<Task> getTasksInWindow(LocalDateTime from, LocalDateTime to);
+
+    ArrayList<Task> getTasksAt(LocalDateTime moment);
+
+    boolean isTimeFree(LocalDateTime from, LocalDateTime to);
+
+    boolean isTimeFree(LocalDateTime from, LocalDateTime to, String assignee);
+
+    ArrayList<OverlapRegion> auditOverlaps();
+
+    LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore);
+
+    LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore, String assignee);
+
+    ArrayList<Task> scheduleUnscheduled(LocalDateTime notBefore);
 }
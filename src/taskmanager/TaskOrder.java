@@ -0,0 +1,48 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Порядки задач по времени начала. Сравниваются закешированные в задаче ключи начала (секунды от эпохи),
+ * наносекунды времени начала - только при равных ключах, а равные по времени задачи различаются по id,
+ * поэтому задачи с одинаковым временем начала не теряются в отсортированных множествах
+ */
+final class TaskOrder {
+    /**
+     * по началу, затем по id; задачи без времени начала - последними
+     */
+    static final Comparator<Task> START_ID_ORDER = (first, second) -> {
+        int byStart = compareStart(first, second);
+        return byStart != 0 ? byStart : Integer.compare(first.getId(), second.getId());
+    };
+
+    /**
+     * По началу, затем по завершению и id (только для задач со временем начала): в расписании без пересечений
+     * завершения упорядочены так же, как начала, потому что задача нулевой продолжительности стоит перед задачей,
+     * начинающейся в тот же момент
+     */
+    static final Comparator<Task> START_END_ORDER = (first, second) -> {
+        int byStart = compareStart(first, second);
+        if (byStart != 0) {
+            return byStart;
+        }
+        //при равном начале завершения различаются только продолжительностью в минутах
+        int byDuration = Long.compare(first.getDuration().toMinutes(), second.getDuration().toMinutes());
+        return byDuration != 0 ? byDuration : Integer.compare(first.getId(), second.getId());
+    };
+
+    private TaskOrder() {
+    }
+
+    private static int compareStart(Task first, Task second) {
+        int byKey = Long.compare(first.getStartKey(), second.getStartKey());
+        if (byKey != 0) {
+            return byKey;
+        }
+        LocalDateTime firstStart = first.getStartTime();
+        return firstStart == null ? 0 : Integer.compare(firstStart.getNano(), second.getStartTime().getNano());
+    }
+}
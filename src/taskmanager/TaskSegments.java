@@ -0,0 +1,186 @@
+package taskmanager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сегменты файлового менеджера: задачи хранятся в отдельных файлах по диапазонам id,
+ * поэтому изменение одной задачи перезаписывает только ее сегмент.
+ * Изменение нескольких сегментов фиксируется целиком: новые сегменты пишутся рядом с прежними (.new),
+ * затем атомарно записывается список изменений (файл commit) - точка фиксации, и только после этого
+ * новые сегменты подменяют прежние. При загрузке незавершенная подмена доводится до конца по списку,
+ * а новые сегменты без списка (сбой до точки фиксации) отбрасываются
+ */
+final class TaskSegments {
+    /**
+     * число id в одном сегменте
+     */
+    static final int SEGMENT_SIZE = 256;
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String NEW_SEGMENT_SUFFIX = ".new";
+    private static final String COMMIT_FILE = "commit";
+    private static final char WRITTEN_SEGMENT = '+';
+    private static final char DELETED_SEGMENT = '-';
+
+    private final Path directory;
+    private final Set<Integer> storedSegments = ConcurrentHashMap.newKeySet(); //сегменты, файлы которых есть на диске
+
+    TaskSegments(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * путь к каталогу сегментов, лежащему рядом с файлом менеджера
+     */
+    static Path directoryFor(Path taskManagerPath) {
+        return taskManagerPath.resolveSibling(taskManagerPath.getFileName() + ".segments");
+    }
+
+    static int segmentOf(int id) {
+        return id / SEGMENT_SIZE;
+    }
+
+    static int firstIdOf(int segment) {
+        return segment * SEGMENT_SIZE;
+    }
+
+    Set<Integer> getStoredSegments() {
+        return storedSegments;
+    }
+
+    /**
+     * чтение всех сегментов в порядке номеров после завершения прерванной записи
+     */
+    TreeMap<Integer, ByteBuffer> readAll() throws IOException {
+        TreeMap<Integer, ByteBuffer> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        recover();
+        try (DirectoryStream<Path> segmentFiles = Files.newDirectoryStream(directory, SEGMENT_FILE_PREFIX + "*")) {
+            for (Path segmentFile : segmentFiles) {
+                String fileName = segmentFile.getFileName().toString();
+                int segment;
+                try {
+                    segment = Integer.parseInt(fileName.substring(SEGMENT_FILE_PREFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue; //временный или новый, но не зафиксированный файл сегмента
+                }
+                segments.put(segment, ByteBuffer.wrap(Files.readAllBytes(segmentFile)));
+                storedSegments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Запись и удаление (содержимое null) сегментов одной фиксацией: после сбоя на диске остаются
+     * либо все прежние, либо все новые сегменты. Изменение одного сегмента атомарно само по себе
+     * и пишется сразу на место
+     */
+    void commit(Map<Integer, byte[]> segmentContents, boolean sync) throws IOException {
+        Files.createDirectories(directory);
+        if (segmentContents.size() == 1) {
+            Map.Entry<Integer, byte[]> segmentContent = segmentContents.entrySet().iterator().next();
+            if (segmentContent.getValue() == null) {
+                delete(segmentContent.getKey());
+            } else {
+                DurableFiles.writeAtomically(pathFor(segmentContent.getKey()), segmentContent.getValue(), sync);
+                storedSegments.add(segmentContent.getKey());
+            }
+            return;
+        }
+        StringBuilder commitRecord = new StringBuilder();
+        for (Map.Entry<Integer, byte[]> segmentContent : segmentContents.entrySet()) {
+            if (segmentContent.getValue() == null) {
+                commitRecord.append(DELETED_SEGMENT);
+            } else {
+                DurableFiles.writeAtomically(newPathFor(segmentContent.getKey()), segmentContent.getValue(), sync);
+                commitRecord.append(WRITTEN_SEGMENT);
+            }
+            commitRecord.append(segmentContent.getKey()).append('\n');
+        }
+        Path commitPath = directory.resolve(COMMIT_FILE);
+        DurableFiles.writeAtomically(commitPath, commitRecord.toString().getBytes(StandardCharsets.UTF_8), sync);
+        applyCommit(commitRecord.toString());
+        if (sync) {
+            DurableFiles.syncDirectory(commitPath); //подмены сегментов должны пережить сбой раньше удаления списка
+        }
+        Files.delete(commitPath);
+    }
+
+    private void delete(int segment) throws IOException {
+        Files.deleteIfExists(pathFor(segment));
+        storedSegments.remove(segment);
+    }
+
+    /**
+     * Доведение до конца записи, прерванной после точки фиксации, и удаление новых сегментов
+     * записи, прерванной до нее
+     */
+    private void recover() throws IOException {
+        Path commitPath = directory.resolve(COMMIT_FILE);
+        if (Files.exists(commitPath)) {
+            applyCommit(new String(Files.readAllBytes(commitPath), StandardCharsets.UTF_8));
+            DurableFiles.syncDirectory(commitPath);
+            Files.delete(commitPath);
+        }
+        try (DirectoryStream<Path> newSegmentFiles =
+                     Files.newDirectoryStream(directory, SEGMENT_FILE_PREFIX + "*" + NEW_SEGMENT_SUFFIX)) {
+            for (Path newSegmentFile : newSegmentFiles) {
+                Files.delete(newSegmentFile);
+            }
+        }
+    }
+
+    /**
+     * подмена прежних сегментов новыми по списку изменений; подмены, выполненные до сбоя, пропускаются
+     */
+    private void applyCommit(String commitRecord) throws IOException {
+        for (String line : commitRecord.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int segment;
+            try {
+                segment = Integer.parseInt(line.substring(1));
+            } catch (NumberFormatException e) {
+                throw new ManagerSaveException("Список изменений сегментов менеджера поврежден");
+            }
+            if (line.charAt(0) == DELETED_SEGMENT) {
+                delete(segment);
+            } else if (Files.exists(newPathFor(segment))) {
+                DurableFiles.replace(newPathFor(segment), pathFor(segment));
+                storedSegments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * сброс на диск записанных сегментов и каталога (в нем фиксируются и удаления сегментов)
+     */
+    void sync(Set<Integer> writtenSegments) throws IOException {
+        for (Integer segment : writtenSegments) {
+            if (storedSegments.contains(segment)) {
+                DurableFiles.syncFile(pathFor(segment));
+            }
+        }
+        DurableFiles.syncDirectory(pathFor(0));
+    }
+
+    private Path pathFor(int segment) {
+        return directory.resolve(SEGMENT_FILE_PREFIX + segment);
+    }
+
+    private Path newPathFor(int segment) {
+        return directory.resolve(SEGMENT_FILE_PREFIX + segment + NEW_SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,37 @@
+package taskmanager;
+
+import taskmodel.Task;
+
+import java.util.List;
+
+/**
+ * Снимок менеджера: задачи всех типов (эпики раньше своих подзадач) и id задач в порядке истории просмотров.
+ * Если часть снимка повреждена, в нем перечислены пропущенные блоки
+ */
+final class TaskSnapshot {
+    private final List<Task> tasks;
+    private final List<Integer> historyIds;
+    private final List<CorruptSnapshotBlock> corruptBlocks;
+
+    TaskSnapshot(List<Task> tasks, List<Integer> historyIds) {
+        this(tasks, historyIds, List.of());
+    }
+
+    TaskSnapshot(List<Task> tasks, List<Integer> historyIds, List<CorruptSnapshotBlock> corruptBlocks) {
+        this.tasks = tasks;
+        this.historyIds = historyIds;
+        this.corruptBlocks = corruptBlocks;
+    }
+
+    List<Task> getTasks() {
+        return tasks;
+    }
+
+    List<Integer> getHistoryIds() {
+        return historyIds;
+    }
+
+    List<CorruptSnapshotBlock> getCorruptBlocks() {
+        return corruptBlocks;
+    }
+}
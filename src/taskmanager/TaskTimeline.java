@@ -0,0 +1,158 @@
+package taskmanager;
+
+import taskmodel.Task;
+import taskmodel.TaskStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Расписание одного исполнителя: его задачи и подзадачи со временем начала в дереве интервалов.
+ * Задачи, добавленные через менеджер, не пересекаются между собой, но загруженные из файла без проверки могут
+ * пересекаться, поэтому поиск опирается на самое позднее завершение в поддеревьях, а не на соседние задачи.
+ * Расписания разных исполнителей независимы: проверка пересечений затрагивает только расписание исполнителя
+ * задачи, и расписания разных исполнителей можно проверять параллельно
+ */
+final class TaskTimeline {
+    private TaskIntervalTree tasks = new TaskIntervalTree();
+    private SlotCalendar slotCalendar; //календарь занятости по 15-минутным слотам, если он включен
+
+    boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+
+    /**
+     * задачи расписания в порядке TaskOrder.START_END_ORDER
+     */
+    Collection<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * самое позднее завершение задач расписания; null - расписание пусто
+     */
+    LocalDateTime getMaxEnd() {
+        return tasks.getMaxEnd();
+    }
+
+    /**
+     * включение календаря занятости с отметкой уже добавленных задач
+     */
+    void enableSlotCalendar() {
+        if (slotCalendar == null) {
+            slotCalendar = new SlotCalendar();
+            for (Task task : tasks) {
+                slotCalendar.occupy(task.getStartTime(), task.getEndTime());
+            }
+        }
+    }
+
+    void add(Task task) {
+        if (tasks.add(task) && slotCalendar != null) {
+            slotCalendar.occupy(task.getStartTime(), task.getEndTime());
+        }
+    }
+
+    /**
+     * добавление задач, отсортированных по TaskOrder.START_END_ORDER (после массовой загрузки); в пустое расписание
+     * задачи добавляются за линейное время
+     */
+    void addAllSorted(List<Task> sortedTasks) {
+        if (tasks.isEmpty()) {
+            tasks = new TaskIntervalTree(sortedTasks.toArray(new Task[0]));
+            if (slotCalendar != null) {
+                for (Task task : tasks) {
+                    slotCalendar.occupy(task.getStartTime(), task.getEndTime());
+                }
+            }
+        } else {
+            for (Task task : sortedTasks) {
+                add(task);
+            }
+        }
+    }
+
+    /**
+     * удаление задачи; слоты календаря, которые задача делила с другими задачами, отмечаются заново
+     */
+    void remove(Task task) {
+        if (!tasks.remove(task) || slotCalendar == null) {
+            return;
+        }
+        slotCalendar.release(task.getStartTime(), task.getEndTime());
+        //слоты задачи могут делить только задачи, выполняющиеся в пределах слота до и после нее
+        Duration slot = Duration.ofSeconds(SlotCalendar.SLOT_SECONDS);
+        List<Task> slotSharingTasks = new ArrayList<>();
+        tasks.collectInWindow(task.getStartTime().minus(slot), task.getEndTime().plus(slot), slotSharingTasks);
+        for (Task slotSharingTask : slotSharingTasks) {
+            slotCalendar.occupy(slotSharingTask.getStartTime(), slotSharingTask.getEndTime());
+        }
+    }
+
+    /**
+     * Проверка пересечений задачи с расписанием за O(log n); прежняя версия задачи replacedTask при проверке
+     * пропускается. Если интервал свободен по календарю занятости, задачи не просматриваются
+     */
+    boolean hasNoIntersections(Task validatedTask, Task replacedTask) {
+        if (slotCalendar != null && slotCalendar.isFree(validatedTask.getStartTime(), validatedTask.getEndTime())) {
+            return true;
+        }
+        return tasks.findIntersecting(validatedTask.getStartTime(), validatedTask.getEndTime(), replacedTask) == null;
+    }
+
+    /**
+     * интервал [from, to) не занят ни одной задачей расписания; по дереву интервалов - за O(log n)
+     */
+    boolean isFree(LocalDateTime from, LocalDateTime to) {
+        if (slotCalendar != null && slotCalendar.isFree(from, to)) {
+            return true;
+        }
+        return tasks.findIntersecting(from, to, null) == null;
+    }
+
+    /**
+     * добавление в windowTasks задач, которые выполняются в окне [from, to)
+     */
+    void collectTasksInWindow(LocalDateTime from, LocalDateTime to, List<Task> windowTasks) {
+        tasks.collectInWindow(from, to, windowTasks);
+    }
+
+    /**
+     * добавление в momentTasks задач, которые выполняются в момент moment
+     * (задача продолжительностью 0 выполняется в момент своего начала)
+     */
+    void collectTasksAt(LocalDateTime moment, List<Task> momentTasks) {
+        //LocalDateTime хранит время с точностью до наносекунды: окно захватывает задачи, начинающиеся в moment
+        tasks.collectInWindow(moment, moment.plusNanos(1), momentTasks);
+    }
+
+    /**
+     * время, не раньше moment, когда завершаются все задачи, выполняемые в момент moment: самое позднее
+     * завершение задач, начавшихся раньше moment, за O(log n)
+     */
+    LocalDateTime skipRunningTasks(LocalDateTime moment) {
+        LocalDateTime maxEnd = tasks.getMaxEndBefore(moment);
+        return maxEnd != null && maxEnd.isAfter(moment) ? maxEnd : moment;
+    }
+
+    /**
+     * задачи, начинающиеся не раньше moment
+     */
+    Iterator<Task> tasksFrom(LocalDateTime moment) {
+        return tasks.iteratorFrom(timeProbe(moment));
+    }
+
+    /**
+     * Задача-образец для поиска по времени: нулевой продолжительности и с наименьшим id,
+     * поэтому стоит перед всеми задачами, начинающимися в момент startTime
+     */
+    static Task timeProbe(LocalDateTime startTime) {
+        Task probe = new Task(null, null, TaskStatus.NEW, Duration.ZERO, startTime);
+        probe.setId(Integer.MIN_VALUE);
+        return probe;
+    }
+}
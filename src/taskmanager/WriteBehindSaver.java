@@ -0,0 +1,102 @@
+package taskmanager;
+
+import java.time.Duration;
+
+/**
+ * Фоновое сохранение менеджера: изменения накапливаются и сбрасываются отдельным потоком
+ * одной записью по истечении интервала или по достижении размера пачки
+ */
+final class WriteBehindSaver implements Runnable {
+    private final Runnable flushAction;
+    private final long flushIntervalMillis;
+    private final int flushBatchSize;
+    private final Thread flusherThread;
+
+    private int pendingChanges; //число изменений с момента последнего сброса
+    private long firstPendingChangeMillis; //время первого несброшенного изменения
+    private boolean closed;
+    private volatile ManagerSaveException failure; //ошибка последнего фонового сброса
+
+    WriteBehindSaver(Runnable flushAction, Duration flushInterval, int flushBatchSize) {
+        if (flushInterval.isNegative() || flushInterval.isZero() || flushBatchSize <= 0) {
+            throw new IllegalArgumentException("Интервал и размер пачки фонового сохранения должны быть положительными");
+        }
+        this.flushAction = flushAction;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        this.flushBatchSize = flushBatchSize;
+        flusherThread = new Thread(this, "task-manager-flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    /**
+     * отметка о новых несохраненных изменениях
+     */
+    synchronized void changed(int changesCount) {
+        if (pendingChanges == 0) {
+            firstPendingChangeMillis = System.currentTimeMillis();
+        }
+        pendingChanges += changesCount;
+        if (pendingChanges >= flushBatchSize) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * получение и сброс ошибки фонового сохранения
+     */
+    ManagerSaveException takeFailure() {
+        ManagerSaveException lastFailure = failure;
+        failure = null;
+        return lastFailure;
+    }
+
+    /**
+     * остановка потока сохранения; несброшенные изменения сбрасывает вызывающая сторона
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusherThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (awaitFlush()) {
+            try {
+                flushAction.run();
+            } catch (ManagerSaveException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * ожидание момента сброса: пачка набрана или истек интервал с первого несброшенного изменения
+     */
+    private synchronized boolean awaitFlush() {
+        try {
+            while (!closed) {
+                if (pendingChanges > 0) {
+                    long waitMillis = firstPendingChangeMillis + flushIntervalMillis - System.currentTimeMillis();
+                    if (pendingChanges >= flushBatchSize || waitMillis <= 0) {
+                        pendingChanges = 0;
+                        return true;
+                    }
+                    wait(waitMillis);
+                } else {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
@@ -3,21 +3,39 @@ package taskmodel;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
 
 public class Epic extends Task {
-    private ArrayList<Integer> subtaskIdList;
+    private final IntOrderedSet subtaskIds = new IntOrderedSet(); //id подзадач эпика в порядке добавления
+    private Integer idParentEpic; //эпик, в который вложен эпик; null - эпик верхнего уровня
+    private final IntOrderedSet childEpicIds = new IntOrderedSet(); //id вложенных эпиков в порядке добавления
+    //Сводные значения ниже учитывают подзадачи всего поддерева эпика: его собственные и подзадачи вложенных эпиков.
+    //Вложенный эпик учитывается одной записью со своими итогами, самым ранним началом и самым поздним завершением,
+    //поэтому память эпика - O(число собственных подзадач + число вложенных эпиков)
     private LocalDateTime endTime;
+    //число подзадач эпика в каждом статусе (по порядковому номеру статуса), по нему статус эпика определяется за O(1)
+    private final int[] subtaskStatusCounts = new int[TaskStatus.values().length];
+    private Duration subtaskDuration = Duration.ZERO; //сумма продолжительностей учтенных подзадач
+    //времена начала и завершения собственных подзадач и вложенных эпиков со счетчиком повторов: самое раннее начало
+    //и самое позднее завершение получаются за O(log k) после добавления или удаления подзадачи или вложенного эпика
+    private final TreeMap<LocalDateTime, Integer> subtaskStartTimes = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> subtaskEndTimes = new TreeMap<>();
+    //сводные значения вложенных эпиков в том виде, в каком они учтены в эпике, по id вложенного эпика
+    private final HashMap<Integer, ChildRollup> childRollups = new HashMap<>();
 
     /**конструктор для эпика, уже заведенного в менеджер (обновление, удаление) #1*/
     public Epic(Integer id, String name, String description, Duration duration, ArrayList<Integer> subtaskIdList) {
         super(id, name, description, duration);
-        this.subtaskIdList = new ArrayList<>(subtaskIdList);
+        for (Integer idSubtask : subtaskIdList) {
+            subtaskIds.add(idSubtask);
+        }
     }
 
     /**конструктор для эпика при восстановлении #2*/
     public Epic(String name, String description, Duration duration) {
         super(name, description, duration);
-        subtaskIdList = new ArrayList<>();
     }
 
     /**конструктор для нового эпика #3*/
@@ -29,13 +47,14 @@ public class Epic extends Task {
     //#1
     public Epic(Integer id, String name, String description, Duration duration, LocalDateTime startTime, ArrayList<Integer> subtaskIdList) {
         super(id, name, description, duration, startTime);
-        this.subtaskIdList = new ArrayList<>(subtaskIdList);
+        for (Integer idSubtask : subtaskIdList) {
+            subtaskIds.add(idSubtask);
+        }
     }
 
     //#2
     public Epic(String name, String description, Duration duration, LocalDateTime startTime) {
         super(name, description, duration, startTime);
-        subtaskIdList = new ArrayList<>();
     }
 
     @Override
@@ -47,20 +66,178 @@ public class Epic extends Task {
         this.endTime = endTime;
     }
 
+    /**копия списка id подзадач; для перебора без упаковки и копирования - getSubtaskIds()*/
     public ArrayList<Integer> getSubtaskIdList() {
+        ArrayList<Integer> subtaskIdList = new ArrayList<>(subtaskIds.size());
+        subtaskIds.forEach(subtaskIdList::add);
         return subtaskIdList;
     }
 
+    /**id подзадач эпика в порядке добавления, только для чтения*/
+    public IntIterable getSubtaskIds() {
+        return subtaskIds;
+    }
+
+    public Integer getIdParentEpic() {
+        return idParentEpic;
+    }
+
+    public void setIdParentEpic(Integer idParentEpic) {
+        this.idParentEpic = idParentEpic;
+    }
+
+    /**id вложенных эпиков в порядке добавления, только для чтения*/
+    public IntIterable getChildEpicIds() {
+        return childEpicIds;
+    }
+
+    public void addIdChildEpic(int idChildEpic) {
+        childEpicIds.add(idChildEpic);
+    }
+
+    public void deleteIdChildEpic(int idChildEpic) {
+        childEpicIds.remove(idChildEpic);
+    }
+
+    public void clearChildEpicIds() {
+        childEpicIds.clear();
+    }
+
     public void clearSubtaskIdList() {
-        subtaskIdList.clear();
+        subtaskIds.clear();
+        clearSubtaskStatuses();
+        clearSubtaskTimes();
+    }
+
+    public void addIdSubtask(int idSubtask) {
+        subtaskIds.add(idSubtask);
     }
 
-    public void addIdSubtask(Integer idSubtask) {
-        subtaskIdList.add(idSubtask);
+    public void deleteIdSubtask(int idSubtask) {
+        subtaskIds.remove(idSubtask);
     }
 
-    public void deleteIdSubtask(Integer idSubtask) {
-        subtaskIdList.remove(idSubtask);
+    /**учет статуса подзадачи, добавленной в эпик*/
+    public void addSubtaskStatus(TaskStatus status) {
+        subtaskStatusCounts[status.ordinal()]++;
+        updateStatusBySubtasks();
+    }
+
+    /**исключение статуса подзадачи, удаленной из эпика*/
+    public void removeSubtaskStatus(TaskStatus status) {
+        subtaskStatusCounts[status.ordinal()]--;
+        updateStatusBySubtasks();
+    }
+
+    /**сброс учтенных статусов подзадач, в том числе учтенных с вложенными эпиками: эпик без подзадач - новый*/
+    public void clearSubtaskStatuses() {
+        Arrays.fill(subtaskStatusCounts, 0);
+        childRollups.values().forEach(rollup -> Arrays.fill(rollup.statusCounts, 0));
+        updateStatusBySubtasks();
+    }
+
+    /**учет продолжительности, начала и завершения подзадачи, добавленной в эпик*/
+    public void addSubtaskTime(Subtask subtask) {
+        subtaskDuration = subtaskDuration.plus(subtask.getDuration());
+        if (subtask.getStartTime() != null) {
+            subtaskStartTimes.merge(subtask.getStartTime(), 1, Integer::sum);
+            subtaskEndTimes.merge(subtask.getEndTime(), 1, Integer::sum);
+        }
+        updateTimeBySubtasks();
+    }
+
+    /**исключение продолжительности, начала и завершения подзадачи, удаленной из эпика*/
+    public void removeSubtaskTime(Subtask subtask) {
+        subtaskDuration = subtaskDuration.minus(subtask.getDuration());
+        if (subtask.getStartTime() != null) {
+            removeTime(subtaskStartTimes, subtask.getStartTime());
+            removeTime(subtaskEndTimes, subtask.getEndTime());
+        }
+        updateTimeBySubtasks();
+    }
+
+    /**сброс учтенных продолжительностей и времени подзадач, в том числе учтенных с вложенными эпиками*/
+    public void clearSubtaskTimes() {
+        subtaskDuration = Duration.ZERO;
+        subtaskStartTimes.clear();
+        subtaskEndTimes.clear();
+        childRollups.values().forEach(ChildRollup::clearTimes);
+        updateTimeBySubtasks();
+    }
+
+    private static void removeTime(TreeMap<LocalDateTime, Integer> times, LocalDateTime time) {
+        times.computeIfPresent(time, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * продолжительность эпика - сумма продолжительностей подзадач, начало - самое раннее начало подзадачи,
+     * завершение - самое позднее завершение подзадачи
+     */
+    private void updateTimeBySubtasks() {
+        setDuration(subtaskDuration);
+        setStartTime(subtaskStartTimes.isEmpty() ? null : subtaskStartTimes.firstKey());
+        endTime = subtaskEndTimes.isEmpty() ? null : subtaskEndTimes.lastKey();
+    }
+
+    /**
+     * Учет сводных значений вложенного эпика с заменой учтенных ранее: итоги поддерева вложенного эпика
+     * и одна запись его начала и завершения, за O(log c), где c - число подзадач и вложенных эпиков этого эпика
+     */
+    public void putChildRollup(Epic childEpic) {
+        ChildRollup rollup = childRollups.computeIfAbsent(childEpic.getId(), idChildEpic -> new ChildRollup());
+        subtractRollup(rollup);
+        System.arraycopy(childEpic.subtaskStatusCounts, 0, rollup.statusCounts, 0, subtaskStatusCounts.length);
+        rollup.duration = childEpic.subtaskDuration;
+        rollup.startTime = childEpic.subtaskStartTimes.isEmpty() ? null : childEpic.subtaskStartTimes.firstKey();
+        rollup.endTime = childEpic.subtaskEndTimes.isEmpty() ? null : childEpic.subtaskEndTimes.lastKey();
+        for (int i = 0; i < subtaskStatusCounts.length; i++) {
+            subtaskStatusCounts[i] += rollup.statusCounts[i];
+        }
+        subtaskDuration = subtaskDuration.plus(rollup.duration);
+        if (rollup.startTime != null) {
+            subtaskStartTimes.merge(rollup.startTime, 1, Integer::sum);
+            subtaskEndTimes.merge(rollup.endTime, 1, Integer::sum);
+        }
+        updateStatusBySubtasks();
+        updateTimeBySubtasks();
+    }
+
+    /**исключение учтенных сводных значений вложенного эпика, выведенного из эпика, за O(log c)*/
+    public void removeChildRollup(int idChildEpic) {
+        ChildRollup rollup = childRollups.remove(idChildEpic);
+        if (rollup != null) {
+            subtractRollup(rollup);
+            updateStatusBySubtasks();
+            updateTimeBySubtasks();
+        }
+    }
+
+    private void subtractRollup(ChildRollup rollup) {
+        for (int i = 0; i < subtaskStatusCounts.length; i++) {
+            subtaskStatusCounts[i] -= rollup.statusCounts[i];
+        }
+        subtaskDuration = subtaskDuration.minus(rollup.duration);
+        if (rollup.startTime != null) {
+            removeTime(subtaskStartTimes, rollup.startTime);
+            removeTime(subtaskEndTimes, rollup.endTime);
+        }
+    }
+
+    /**
+     * статус эпика по числу подзадач в каждом статусе:
+     * нет подзадач или все новые - новый, все выполнены - выполнен, иначе - в работе
+     */
+    private void updateStatusBySubtasks() {
+        int newCount = subtaskStatusCounts[TaskStatus.NEW.ordinal()];
+        int doneCount = subtaskStatusCounts[TaskStatus.DONE.ordinal()];
+        int subtaskCount = newCount + doneCount + subtaskStatusCounts[TaskStatus.IN_PROGRESS.ordinal()];
+        if (newCount == subtaskCount) {
+            setStatus(TaskStatus.NEW);
+        } else if (doneCount == subtaskCount) {
+            setStatus(TaskStatus.DONE);
+        } else {
+            setStatus(TaskStatus.IN_PROGRESS);
+        }
     }
 
     @Override
@@ -72,7 +249,26 @@ public class Epic extends Task {
                 ", status=" + getStatus() +
                 ", duration=" + getDuration() +
                 ", startTime=" + getStartTime() +
-                ", subtaskIdList=" + subtaskIdList.toString() +
+                ", subtaskIdList=" + subtaskIds +
+                ", idParentEpic=" + idParentEpic +
+                ", childEpicIds=" + childEpicIds +
                 '}';
     }
+
+    /**
+     * сводные значения вложенного эпика, учтенные в эпике: число подзадач в каждом статусе и сумма
+     * продолжительностей его поддерева, самое раннее начало и самое позднее завершение (null - нет времени)
+     */
+    private static final class ChildRollup {
+        private final int[] statusCounts = new int[TaskStatus.values().length];
+        private Duration duration = Duration.ZERO;
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+
+        private void clearTimes() {
+            duration = Duration.ZERO;
+            startTime = null;
+            endTime = null;
+        }
+    }
 }
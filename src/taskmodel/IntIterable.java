@@ -0,0 +1,30 @@
+package taskmodel;
+
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Набор int-значений только для чтения: перебор и проверка наличия без упаковки в Integer
+ */
+public interface IntIterable {
+    int size();
+
+    boolean isEmpty();
+
+    boolean contains(int value);
+
+    /**
+     * перебор значений в порядке добавления
+     */
+    PrimitiveIterator.OfInt iterator();
+
+    /**
+     * выполнение action для каждого значения в порядке добавления
+     */
+    void forEach(IntConsumer action);
+
+    /**
+     * копия значений в порядке добавления
+     */
+    int[] toArray();
+}
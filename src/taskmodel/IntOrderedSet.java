@@ -0,0 +1,215 @@
+package taskmodel;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Множество int-значений с порядком добавления. Значения хранятся в плотном массиве, а их позиции -
+ * в хеш-таблице с открытой адресацией, поэтому добавление, удаление и проверка наличия выполняются за O(1),
+ * а перебор идет по массиву без упаковки. Удаленное значение только отмечается в массиве; когда отмеченных
+ * становится больше, чем значений, массив уплотняется.
+ * Изменять множество может только эпик, остальным оно доступно через IntIterable
+ */
+public final class IntOrderedSet implements IntIterable {
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] values; //значения в порядке добавления, включая отмеченные удаленными
+    private boolean[] removed; //отметки удаленных значений
+    private int end; //число занятых позиций values
+    private int size; //число значений без удаленных
+    private int[] table; //позиция значения в values + 1, 0 - пустая ячейка; заполнена не больше чем наполовину
+    private int mask;
+
+    IntOrderedSet() {
+        this(MIN_CAPACITY);
+    }
+
+    IntOrderedSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return table[findSlot(value)] != 0;
+    }
+
+    /**
+     * добавление значения в конец порядка; false - значение уже есть
+     */
+    boolean add(int value) {
+        int slot = findSlot(value);
+        if (table[slot] != 0) {
+            return false;
+        }
+        if (end == values.length) {
+            rebuild(capacityFor(size + 1));
+            slot = findSlot(value);
+        }
+        values[end] = value;
+        removed[end] = false;
+        end++;
+        size++;
+        table[slot] = end;
+        return true;
+    }
+
+    /**
+     * удаление значения; false - значения нет
+     */
+    boolean remove(int value) {
+        int slot = findSlot(value);
+        if (table[slot] == 0) {
+            return false;
+        }
+        removed[table[slot] - 1] = true;
+        size--;
+        deleteSlot(slot);
+        while (end > 0 && removed[end - 1]) { //удаленные значения в конце массива сразу освобождают место
+            end--;
+        }
+        if (end - size > size && end > MIN_CAPACITY) {
+            rebuild(values.length);
+        }
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        end = 0;
+        size = 0;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int position = skipRemoved(0);
+
+            @Override
+            public boolean hasNext() {
+                return position < end;
+            }
+
+            @Override
+            public int nextInt() {
+                if (position >= end) {
+                    throw new NoSuchElementException();
+                }
+                int value = values[position];
+                position = skipRemoved(position + 1);
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        for (int position = 0; position < end; position++) {
+            if (!removed[position]) {
+                action.accept(values[position]);
+            }
+        }
+    }
+
+    @Override
+    public int[] toArray() {
+        int[] array = new int[size];
+        int index = 0;
+        for (int position = 0; position < end; position++) {
+            if (!removed[position]) {
+                array[index++] = values[position];
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private int skipRemoved(int position) {
+        while (position < end && removed[position]) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * ячейка таблицы со значением value или пустая ячейка, в которую его можно поместить
+     */
+    private int findSlot(int value) {
+        int slot = hash(value) & mask;
+        while (table[slot] != 0 && values[table[slot] - 1] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Освобождение ячейки со сдвигом назад следующих за ней значений цепочки, которые можно найти
+     * и из освободившейся ячейки: таблица остается без отметок удаления
+     */
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        for (int next = (slot + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = hash(values[table[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    /**
+     * перенос значений без удаленных в массивы емкостью capacity с сохранением порядка
+     */
+    private void rebuild(int capacity) {
+        int[] oldValues = values;
+        boolean[] oldRemoved = removed;
+        int oldEnd = end;
+        allocate(capacity);
+        for (int position = 0; position < oldEnd; position++) {
+            if (!oldRemoved[position]) {
+                values[end] = oldValues[position];
+                end++;
+                table[findSlot(oldValues[position])] = end;
+            }
+        }
+        size = end;
+    }
+
+    private void allocate(int capacity) {
+        values = new int[capacity];
+        removed = new boolean[capacity];
+        table = new int[capacity * 2];
+        mask = table.length - 1;
+        end = 0;
+        size = 0;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
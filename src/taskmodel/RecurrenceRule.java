@@ -0,0 +1,187 @@
+package taskmodel;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Правило повторения задачи: каждые interval дней (DAILY) или недель (WEEKLY) по выбранным дням недели,
+ * до даты until включительно (null - без окончания). Записывается строкой в духе RRULE из iCalendar:
+ * FREQ=WEEKLY;INTERVAL=2;BYDAY=MONDAY,THURSDAY;UNTIL=2024-12-31
+ */
+public final class RecurrenceRule {
+    public enum Frequency {
+        DAILY,
+        WEEKLY
+    }
+
+    private final Frequency frequency; //единица периода повторения
+    private final int interval; //число дней или недель в периоде
+    private final EnumSet<DayOfWeek> daysOfWeek; //дни недели повторения (WEEKLY); пусто - день первого повторения
+    private final LocalDate until; //дата последнего возможного повторения, null - без окончания
+
+    public RecurrenceRule(Frequency frequency, int interval) {
+        this(frequency, interval, EnumSet.noneOf(DayOfWeek.class), null);
+    }
+
+    public RecurrenceRule(Frequency frequency, int interval, Set<DayOfWeek> daysOfWeek, LocalDate until) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Интервал повторения должен быть положительным");
+        }
+        if (frequency == Frequency.DAILY && !daysOfWeek.isEmpty()) {
+            throw new IllegalArgumentException("Дни недели задаются только для еженедельного повторения");
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+        this.daysOfWeek.addAll(daysOfWeek);
+        this.until = until;
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public Set<DayOfWeek> getDaysOfWeek() {
+        return EnumSet.copyOf(daysOfWeek);
+    }
+
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    /**
+     * продолжительность периода, через который повторения повторяются в том же порядке, в днях
+     */
+    public int getPeriodDays() {
+        return frequency == Frequency.DAILY ? interval : interval * 7;
+    }
+
+    /**
+     * Времена начала повторений, попадающие в [from, to), для задачи с первым повторением в firstStart.
+     * Просматриваются только периоды, пересекающие интервал, поэтому стоимость зависит от длины интервала,
+     * а не от числа повторений до него
+     */
+    public List<LocalDateTime> getStartsBetween(LocalDateTime firstStart, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> starts = new ArrayList<>();
+        if (from.isBefore(firstStart)) {
+            from = firstStart;
+        }
+        LocalDateTime endBound = until == null ? to : min(to, until.plusDays(1).atStartOfDay());
+        if (!from.isBefore(endBound)) {
+            return starts;
+        }
+        if (frequency == Frequency.DAILY) {
+            long skippedPeriods = ChronoUnit.DAYS.between(firstStart, from) / interval;
+            LocalDateTime start = firstStart.plusDays(skippedPeriods * interval);
+            for (; start.isBefore(endBound); start = start.plusDays(interval)) {
+                if (!start.isBefore(from)) {
+                    starts.add(start);
+                }
+            }
+            return starts;
+        }
+        Set<DayOfWeek> days = daysOfWeek.isEmpty() ? EnumSet.of(firstStart.getDayOfWeek()) : daysOfWeek;
+        LocalDate firstWeek = firstStart.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        long skippedPeriods = ChronoUnit.WEEKS.between(firstWeek, from.toLocalDate()) / interval;
+        for (LocalDate week = firstWeek.plusWeeks(skippedPeriods * interval); week.atStartOfDay().isBefore(endBound);
+             week = week.plusWeeks(interval)) {
+            for (DayOfWeek day : days) { //EnumSet перебирает дни с понедельника
+                LocalDateTime start = week.plusDays(day.ordinal()).atTime(firstStart.toLocalTime());
+                if (!start.isBefore(from) && start.isBefore(endBound)) {
+                    starts.add(start);
+                }
+            }
+        }
+        return starts;
+    }
+
+    private static LocalDateTime min(LocalDateTime first, LocalDateTime second) {
+        return first.isBefore(second) ? first : second;
+    }
+
+    /**
+     * разбор правила из строки формата toString()
+     */
+    public static RecurrenceRule parse(String value) {
+        Frequency frequency = null;
+        int interval = 1;
+        Set<DayOfWeek> daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+        LocalDate until = null;
+        try {
+            for (String part : value.split(";")) {
+                int separator = part.indexOf('=');
+                String partValue = part.substring(separator + 1);
+                switch (part.substring(0, Math.max(separator, 0))) {
+                    case "FREQ":
+                        frequency = Frequency.valueOf(partValue);
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(partValue);
+                        break;
+                    case "BYDAY":
+                        for (String day : partValue.split(",")) {
+                            daysOfWeek.add(DayOfWeek.valueOf(day));
+                        }
+                        break;
+                    case "UNTIL":
+                        until = LocalDate.parse(partValue);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Неизвестная часть правила повторения: " + part);
+                }
+            }
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Ошибка разбора правила повторения: " + value);
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("В правиле повторения не указана частота: " + value);
+        }
+        return new RecurrenceRule(frequency, interval, daysOfWeek, until);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecurrenceRule rule = (RecurrenceRule) o;
+        return interval == rule.interval && frequency == rule.frequency && daysOfWeek.equals(rule.daysOfWeek)
+                && Objects.equals(until, rule.until);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(frequency, interval, daysOfWeek, until);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency.name());
+        if (interval != 1) {
+            rule.append(";INTERVAL=").append(interval);
+        }
+        if (!daysOfWeek.isEmpty()) {
+            rule.append(";BYDAY=");
+            for (DayOfWeek day : daysOfWeek) {
+                rule.append(day.name()).append(',');
+            }
+            rule.setLength(rule.length() - 1);
+        }
+        if (until != null) {
+            rule.append(";UNTIL=").append(until);
+        }
+        return rule.toString();
+    }
+}
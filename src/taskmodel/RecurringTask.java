@@ -0,0 +1,95 @@
+package taskmodel;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Повторяющаяся задача: хранится одним объектом с временем первого повторения и правилом повторения,
+ * а сами повторения строятся по запросу только внутри запрошенного интервала
+ */
+public class RecurringTask extends Task {
+    private RecurrenceRule rule; //правило повторения
+
+    /**
+     * конструктор для повторяющейся задачи, уже заведенной в менеджер (обновление, удаление) #1
+     */
+    public RecurringTask(Integer id, String name, String description, TaskStatus status, Duration duration,
+                         LocalDateTime startTime, RecurrenceRule rule) {
+        super(id, name, description, status, duration, startTime);
+        this.rule = rule;
+    }
+
+    /**
+     * конструктор для новой повторяющейся задачи #2
+     */
+    public RecurringTask(String name, String description, Duration duration, LocalDateTime startTime,
+                         RecurrenceRule rule) {
+        super(name, description, duration, startTime);
+        this.rule = rule;
+    }
+
+    public RecurrenceRule getRule() {
+        return rule;
+    }
+
+    public void setRule(RecurrenceRule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * повторения, начинающиеся в [from, to)
+     */
+    public List<Task> getOccurrencesStartingBetween(LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> starts = rule.getStartsBetween(getStartTime(), from, to);
+        List<Task> occurrences = new ArrayList<>(starts.size());
+        for (LocalDateTime start : starts) {
+            occurrences.add(occurrenceAt(start));
+        }
+        return occurrences;
+    }
+
+    /**
+     * повторения, которые выполняются в окне [from, to): начинаются в окне или начались раньше
+     * и еще не завершились к его началу
+     */
+    public List<Task> getOccurrences(LocalDateTime from, LocalDateTime to) {
+        List<Task> occurrences = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return occurrences;
+        }
+        for (Task occurrence : getOccurrencesStartingBetween(from.minus(getDuration()), to)) {
+            if (!occurrence.getStartTime().isBefore(from) || occurrence.getEndTime().isAfter(from)) {
+                occurrences.add(occurrence);
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * повторение, начинающееся в момент startTime: обычная задача с id повторяющейся задачи
+     */
+    public Task occurrenceAt(LocalDateTime startTime) {
+        Task occurrence = new Task(getName(), getDescription(), getStatus(), getDuration(), startTime);
+        if (hasId()) {
+            occurrence.setId(getId());
+        }
+        occurrence.setAssignee(getAssignee());
+        return occurrence;
+    }
+
+    @Override
+    public String toString() {
+        return "RecurringTask{" +
+                "name='" + getName() + '\'' +
+                ", description='" + getDescription() + '\'' +
+                ", id=" + getId() +
+                ", status=" + getStatus() +
+                ", duration=" + getDuration() +
+                ", startTime=" + getStartTime() +
+                ", assignee=" + getAssignee() +
+                ", rule=" + rule +
+                '}';
+    }
+}
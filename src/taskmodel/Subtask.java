@@ -64,6 +64,7 @@ public class Subtask extends Task {
                 ", status=" + getStatus() +
                 ", duration=" + getDuration() +
                 ", startTime=" + getStartTime() +
+                ", assignee=" + getAssignee() +
                 ", idEpic=" + idEpic +
                 '}';
     }
@@ -2,9 +2,12 @@ package taskmodel;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Objects;
 
 public class Task {
+    public static final long NO_START_KEY = Long.MAX_VALUE; //ключ задачи без времени начала, такие задачи идут последними
+
     private Integer id; //Уникальный идентификационный номер задачи, по которому её можно будет найти.
 
     private String name; //Название, кратко описывающее суть задачи (например, «Переезд»).
@@ -12,6 +15,8 @@ public class Task {
     private TaskStatus status; //Статус
     private Duration duration; //Продолжительность задачи
     private LocalDateTime startTime; //дата и время планируемого начала задачи
+    private long startKey = NO_START_KEY; //время начала в секундах от эпохи (UTC) для сортировки без сравнения дат
+    private String assignee; //исполнитель, задачи которого не пересекаются по времени; null - не назначен
 
     //конструктор для использования в классе-наследнике (Epic) #1
     protected Task(Integer id, String name, String description, Duration duration) {
@@ -42,25 +47,25 @@ public class Task {
     //#1
     protected Task(Integer id, String name, String description, Duration duration, LocalDateTime startTime) {
         this(id, name, description, duration);
-        this.startTime = startTime;
+        assignStartTime(startTime);
     }
 
     //#2
     public Task(Integer id, String name, String description, TaskStatus status, Duration duration, LocalDateTime startTime) {
         this(id, name, description, status, duration);
-        this.startTime = startTime;
+        assignStartTime(startTime);
     }
 
     //#3
     public Task(String name, String description, TaskStatus status, Duration duration, LocalDateTime startTime) {
         this(name, description, status, duration);
-        this.startTime = startTime;
+        assignStartTime(startTime);
     }
 
     //#4
     public Task(String name, String description, Duration duration, LocalDateTime startTime) {
         this(name, description, duration);
-        this.startTime = startTime;
+        assignStartTime(startTime);
     }
 
     public String getName() {
@@ -87,6 +92,11 @@ public class Task {
         return id;
     }
 
+    //задача уже заведена в менеджер
+    boolean hasId() {
+        return id != null;
+    }
+
     public TaskStatus getStatus() {
         return status;
     }
@@ -108,7 +118,26 @@ public class Task {
     }
 
     public void setStartTime(LocalDateTime startTime) {
+        assignStartTime(startTime);
+    }
+
+    private void assignStartTime(LocalDateTime startTime) {
         this.startTime = startTime;
+        startKey = startTime == null ? NO_START_KEY : startTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    //Ключ сортировки по времени начала: секунды от эпохи (UTC), NO_START_KEY - время не задано.
+    //Задачи с равным ключом различаются только наносекундами времени начала
+    public long getStartKey() {
+        return startKey;
+    }
+
+    public String getAssignee() {
+        return assignee;
+    }
+
+    public void setAssignee(String assignee) {
+        this.assignee = assignee;
     }
 
     public LocalDateTime getEndTime() {
@@ -138,6 +167,7 @@ public class Task {
                 ", status=" + status +
                 ", duration=" + duration +
                 ", startTime=" + startTime +
+                ", assignee=" + assignee +
                 '}';
     }
 
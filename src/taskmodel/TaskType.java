@@ -3,5 +3,6 @@ package taskmodel;
 public enum TaskType {
     TASK,
     EPIC,
-    SUBTASK
+    SUBTASK,
+    RECURRING
 }
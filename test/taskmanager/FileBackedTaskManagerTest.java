@@ -3,21 +3,53 @@ package taskmanager;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import taskmodel.Epic;
+import taskmodel.RecurrenceRule;
+import taskmodel.RecurringTask;
 import taskmodel.Subtask;
 import taskmodel.Task;
 import taskmodel.TaskStatus;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
 class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     private Path testTaskManagerPath;
 
+    /**
+     * запись файла менеджера с эпиком, задачами и подзадачами через одну (переводы строк \r\n) и историей 1,3,2
+     */
+    private void writeLargeCsvFile(int taskCount) throws IOException {
+        StringBuilder csv = new StringBuilder(CsvSnapshotCodec.TASK_CSV_HEADER).append("\r\n");
+        csv.append("1,EPIC,Эпик,NEW,Большой эпик,0,null,\r\n");
+        for (int id = 2; id <= taskCount; id++) {
+            LocalDateTime startTime = LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(20L * id);
+            if (id % 2 == 0) {
+                csv.append(String.format("%d,TASK,Задача %d,IN_PROGRESS,Описание,15,%s,\r\n", id, id, startTime));
+            } else {
+                csv.append(String.format("%d,SUBTASK,Подзадача %d,DONE,Описание,10,%s,1\r\n", id, id,
+                        startTime.withSecond(30).withNano(500_000_000)));
+            }
+        }
+        csv.append("\r\n").append("1,3,2");
+        Files.write(testTaskManagerPath, csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
     @Override
     protected FileBackedTaskManager createTaskManager() {
         try {
@@ -69,9 +101,910 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
                 "Отсортированный список задач должен корректно восстанавливаться из файла");
     }
 
+    /**
+     * просмотр задач не должен перезаписывать файл менеджера, а история должна восстанавливаться из журнала просмотров
+     */
+    @Test
+    void shouldNotRewriteFileOnReadButRestoreHistory() throws IOException {
+        Integer idTask = taskManager.addTask(new Task("Задача", "Просматриваемая задача", Duration.ofMinutes(30)));
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Просматриваемый эпик"));
+        String snapshotBeforeViews = Files.readString(testTaskManagerPath, StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 100; i++) {
+            taskManager.getTaskById(idTask);
+            taskManager.getEpicById(idEpic);
+        }
+
+        Assertions.assertEquals(snapshotBeforeViews, Files.readString(testTaskManagerPath, StandardCharsets.UTF_8),
+                "Просмотр задач не должен перезаписывать файл менеджера");
+        Assertions.assertEquals(taskManager.getHistory(),
+                FileBackedTaskManager.loadFromFile(testTaskManagerPath).getHistory(),
+                "История просмотров должна восстанавливаться из журнала просмотров");
+    }
+
+    @Test
+    void shouldNotRewriteFileOnEpicSubtasksRead() throws IOException {
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Открываемый эпик"));
+        for (int i = 0; i < 10; i++) {
+            taskManager.addSubtask(new Subtask("Подзадача " + i, "Подзадача эпика", Duration.ofMinutes(15), idEpic));
+        }
+        String snapshotBeforeRead = Files.readString(testTaskManagerPath, StandardCharsets.UTF_8);
+
+        Assertions.assertEquals(10, taskManager.getSubtasksListByEpic(idEpic, ReadMode.VIEW_EPIC).size());
+        Assertions.assertEquals(snapshotBeforeRead, Files.readString(testTaskManagerPath, StandardCharsets.UTF_8),
+                "Чтение подзадач эпика не должно перезаписывать файл менеджера");
+        Assertions.assertEquals(List.of(idEpic), FileBackedTaskManager.loadFromFile(testTaskManagerPath).getHistory()
+                        .stream().map(Task::getId).collect(Collectors.toList()),
+                "Просмотр эпика должен восстанавливаться из журнала просмотров");
+    }
+
+    /**
+     * проверка загрузки большого csv-файла через отображение в память (в том числе с переводами строк \r\n)
+     */
+    @Test
+    void shouldCorrectlyLoadLargeCsvFileThroughMapping() throws IOException {
+        int taskCount = 2000;
+        writeLargeCsvFile(taskCount);
+        Assertions.assertTrue(Files.size(testTaskManagerPath) >= FileBackedTaskManager.MAPPED_LOAD_MIN_BYTES,
+                "Файл должен быть достаточно большим для отображения в память");
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(taskCount / 2, loadedTaskManager.getTasksList().size(),
+                "Все задачи должны загружаться");
+        Assertions.assertEquals(taskCount / 2 - 1, loadedTaskManager.getSubtasksList().size(),
+                "Все подзадачи должны загружаться");
+        Assertions.assertEquals(taskCount / 2 - 1, loadedTaskManager.getEpicsList().get(0).getSubtaskIdList().size(),
+                "Подзадачи должны быть привязаны к эпику");
+        Assertions.assertEquals("Задача 2", loadedTaskManager.getTaskById(2).getName(),
+                "Перевод строки \\r\\n не должен попадать в поля");
+        Assertions.assertEquals(LocalDateTime.of(2024, 1, 1, 1, 0, 30, 500_000_000),
+                loadedTaskManager.getSubtaskById(3).getStartTime(), "Время начала с долями секунд должно разбираться");
+        Assertions.assertEquals(TaskStatus.DONE, loadedTaskManager.getEpicsList().get(0).getStatus(),
+                "Статус эпика должен рассчитываться по подзадачам");
+        Assertions.assertEquals(taskCount - 1, loadedTaskManager.getPrioritizedTasks().size(),
+                "Все задачи со временем начала должны попадать в отсортированный список");
+    }
+
+    /**
+     * проверка загрузки снимка, который разбирается по кускам параллельно: порядок задач и история сохраняются
+     */
+    @Test
+    void shouldCorrectlyLoadCsvFileParsedInParallel() throws IOException {
+        int taskCount = 20000;
+        writeLargeCsvFile(taskCount);
+        Assertions.assertTrue(Files.size(testTaskManagerPath) >= CsvSnapshotCodec.PARALLEL_PARSE_MIN_BYTES,
+                "Файл должен быть достаточно большим для параллельного разбора");
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(taskCount / 2, loadedTaskManager.getTasksList().size(),
+                "Все задачи должны загружаться");
+        Assertions.assertEquals(taskCount / 2 - 1, loadedTaskManager.getSubtasksList().size(),
+                "Все подзадачи должны загружаться");
+        Assertions.assertEquals(taskCount - 1, loadedTaskManager.getPrioritizedTasks().size(),
+                "Все задачи со временем начала должны попадать в отсортированный список");
+        for (int i = 0; i < loadedTaskManager.getPrioritizedTasks().size(); i++) {
+            Assertions.assertEquals(i + 2, loadedTaskManager.getPrioritizedTasks().get(i).getId(),
+                    "Отсортированный список должен упорядочиваться по времени начала");
+        }
+        Assertions.assertEquals(List.of(1, 3, 2), loadedTaskManager.getHistory().stream().map(Task::getId)
+                .collect(Collectors.toList()), "История должна загружаться после всех задач");
+        Assertions.assertEquals(taskCount + 1, loadedTaskManager.addTask(new Task("Новая задача", "Описание",
+                Duration.ofMinutes(5))), "Счетчик задач должен продолжаться после наибольшего id");
+    }
+
+    /**
+     * проверка сохранения и загрузки двоичного снимка, а также экспорта в csv
+     */
+    @Test
+    void shouldCorrectlySaveAndLoadBinarySnapshot() throws IOException {
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        Integer idTask = taskManager.addTask(new Task("Двоичная задача", "Двоичная задача", Duration.ofMinutes(45),
+                LocalDateTime.of(2024, 4, 1, 9, 30, 15, 123_456_789)));
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Двоичный эпик"));
+        Integer idSubtask = taskManager.addSubtask(new Subtask("Подзадача", "Двоичная подзадача", TaskStatus.DONE,
+                Duration.ofMinutes(15), LocalDateTime.of(1969, 12, 31, 23, 59, 0), idEpic));
+        taskManager.getSubtaskById(idSubtask);
+        taskManager.getTaskById(idTask);
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(SnapshotFormat.BINARY, loadedTaskManager.getSnapshotFormat(),
+                "Формат снимка должен определяться по файлу");
+        Task loadedTask = loadedTaskManager.getTasksList().get(0);
+        Assertions.assertEquals("Двоичная задача", loadedTask.getName(), "Название задачи должно восстанавливаться");
+        Assertions.assertEquals(taskManager.getTasksList().get(0).getStartTime(), loadedTask.getStartTime(),
+                "Время начала должно восстанавливаться без потери точности");
+        Assertions.assertEquals(taskManager.getSubtasksList(), loadedTaskManager.getSubtasksList(),
+                "Подзадачи должны восстанавливаться из двоичного снимка");
+        Assertions.assertEquals(TaskStatus.DONE, loadedTaskManager.getEpicsList().get(0).getStatus(),
+                "Статус эпика должен восстанавливаться из двоичного снимка");
+        Assertions.assertEquals(taskManager.getHistory(), loadedTaskManager.getHistory(),
+                "История должна восстанавливаться из двоичного снимка");
+        Assertions.assertEquals(taskManager.getPrioritizedTasks(), loadedTaskManager.getPrioritizedTasks(),
+                "Отсортированный список задач должен восстанавливаться из двоичного снимка");
+
+        Path csvExportPath = File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()),
+                ".csv").toPath();
+        taskManager.exportSnapshot(csvExportPath, SnapshotFormat.CSV);
+        FileBackedTaskManager importedTaskManager = FileBackedTaskManager.loadFromFile(csvExportPath);
+        Assertions.assertEquals(SnapshotFormat.CSV, importedTaskManager.getSnapshotFormat(),
+                "Экспорт должен выполняться в csv");
+        Assertions.assertEquals(taskManager.getSubtasksList(), importedTaskManager.getSubtasksList(),
+                "Экспортированный csv должен загружаться обратно");
+    }
+
+    /**
+     * проверка сохранения названий и описаний с запятыми, кавычками и переводами строк в снимке и журнале
+     */
+    @Test
+    void shouldKeepQuotedFieldsInSnapshotAndJournal() throws IOException {
+        String name = "Купить \"молоко\", хлеб";
+        String description = "Первая строка,\nвторая строка\r\n\nпосле пустой строки";
+        Integer idTask = taskManager.addTask(new Task(name, description, Duration.ofMinutes(30),
+                LocalDateTime.of(2024, 5, 1, 8, 0, 0)));
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик, с запятой", "\""));
+        taskManager.addSubtask(new Subtask(",", "", Duration.ofMinutes(10),
+                LocalDateTime.of(2024, 5, 1, 9, 0, 0), idEpic));
+        taskManager.getTaskById(idTask);
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Task loadedTask = loadedTaskManager.getTaskById(idTask);
+        Assertions.assertEquals(name, loadedTask.getName(), "Название с кавычками и запятой должно сохраняться");
+        Assertions.assertEquals(description, loadedTask.getDescription(),
+                "Описание с переводами строк должно сохраняться");
+        Assertions.assertEquals("Эпик, с запятой", loadedTaskManager.getEpicById(idEpic).getName(),
+                "Название эпика с запятой должно сохраняться");
+        Assertions.assertEquals("\"", loadedTaskManager.getEpicById(idEpic).getDescription(),
+                "Описание из одной кавычки должно сохраняться");
+        Assertions.assertEquals(",", loadedTaskManager.getSubtasksList().get(0).getName(),
+                "Название из одной запятой должно сохраняться");
+        Assertions.assertEquals("", loadedTaskManager.getSubtasksList().get(0).getDescription(),
+                "Пустое описание должно сохраняться");
+
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        journalTaskManager.addTask(new Task("Первая задача", "Задача из снимка", Duration.ofMinutes(10)));
+        Integer idJournalTask = journalTaskManager.addTask(new Task(name, description, Duration.ofMinutes(30)));
+        Assertions.assertEquals(description,
+                FileBackedTaskManager.loadFromFile(journalTaskManagerPath).getTaskById(idJournalTask).getDescription(),
+                "Описание с переводами строк должно восстанавливаться из журнала");
+    }
+
+    /**
+     * проверка отбрасывания недописанной последней записи журнала
+     */
+    @Test
+    void shouldDropTornLastJournalRecord() throws IOException {
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        journalTaskManager.addTask(new Task("Первая задача", "Задача из снимка", Duration.ofMinutes(10)));
+        Integer idTask = journalTaskManager.addTask(new Task("Вторая задача", "Задача из журнала",
+                Duration.ofMinutes(10)));
+        journalTaskManager.close();
+        Files.write(TaskJournal.journalPathFor(journalTaskManagerPath),
+                "PUT,9,TASK,\"Недописанная".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertEquals(2, loadedTaskManager.getTasksList().size(),
+                "Недописанная запись журнала должна пропускаться");
+        Integer idNewTask = loadedTaskManager.addTask(new Task("Третья задача", "Задача после сбоя",
+                Duration.ofMinutes(10)));
+        Assertions.assertTrue(idNewTask > idTask, "Id новых задач не должны совпадать с восстановленными");
+        Assertions.assertEquals(3, FileBackedTaskManager.loadFromFile(journalTaskManagerPath).getTasksList().size(),
+                "Запись после недописанной должна восстанавливаться из журнала");
+    }
+
+    /**
+     * проверка сбоя при подмене файла менеджера снимком: журнал, уже вошедший в снимок, не применяется повторно
+     */
+    @Test
+    void shouldNotReplayJournalCompactedIntoSnapshotAfterCrash() throws IOException {
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        Integer idTask = journalTaskManager.addTask(new Task("Задача", "Остается после сжатия",
+                Duration.ofMinutes(10)));
+        Integer idEpic = journalTaskManager.addEpic(new Epic("Эпик", "Удаляется до сжатия"));
+        journalTaskManager.addSubtask(new Subtask("Подзадача", "Удаляется вместе с эпиком", Duration.ofMinutes(15),
+                idEpic));
+        journalTaskManager.deleteEpicById(idEpic);
+        Path journalPath = TaskJournal.journalPathFor(journalTaskManagerPath);
+        byte[] oldSnapshot = Files.readAllBytes(journalTaskManagerPath);
+        byte[] oldJournal = Files.readAllBytes(journalPath);
+        journalTaskManager.compact();
+        journalTaskManager.close();
+        byte[] newSnapshot = Files.readAllBytes(journalTaskManagerPath);
+
+        //сбой после подмены файла менеджера, но до очистки журнала
+        Files.delete(journalPath);
+        Files.write(TaskJournal.retiredPathFor(journalPath), oldJournal);
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertEquals(List.of(idTask), loadedTaskManager.getTasksList().stream()
+                        .map(Task::getId).collect(Collectors.toList()),
+                "Снимок должен загружаться без вошедшего в него журнала");
+        Assertions.assertTrue(loadedTaskManager.getEpicsList().isEmpty());
+        Assertions.assertFalse(Files.exists(TaskJournal.retiredPathFor(journalPath)));
+
+        //сбой после откладывания журнала, но до подмены файла менеджера снимком из временного файла
+        Files.write(journalTaskManagerPath, oldSnapshot);
+        Files.delete(journalPath);
+        Files.write(TaskJournal.retiredPathFor(journalPath), oldJournal);
+        Files.write(DurableFiles.tempPathFor(journalTaskManagerPath), newSnapshot);
+        loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertArrayEquals(newSnapshot, Files.readAllBytes(journalTaskManagerPath),
+                "Подмена файла менеджера должна завершаться при загрузке");
+        Assertions.assertEquals(List.of(idTask), loadedTaskManager.getTasksList().stream()
+                .map(Task::getId).collect(Collectors.toList()));
+        Assertions.assertTrue(loadedTaskManager.getSubtasksList().isEmpty());
+    }
+
+    /**
+     * проверка восстановления менеджера из снимка и журнала изменений
+     */
+    @Test
+    void shouldCorrectlyRestoreTaskManagerFromJournal() throws IOException {
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        Integer idTask1 = journalTaskManager.addTask(new Task("Первая задача", "Задача из журнала",
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 3, 1, 10, 0, 0)));
+        Integer idTask2 = journalTaskManager.addTask(new Task("Вторая задача", "Удаляемая задача",
+                Duration.ofMinutes(30)));
+        Integer idEpic = journalTaskManager.addEpic(new Epic("Эпик", "Эпик из журнала"));
+        Integer idSubtask = journalTaskManager.addSubtask(new Subtask("Подзадача", "Подзадача из журнала",
+                Duration.ofMinutes(15), LocalDateTime.of(2024, 3, 2, 10, 0, 0), idEpic));
+        String snapshotAfterFirstChange = Files.readString(journalTaskManagerPath, StandardCharsets.UTF_8);
+
+        journalTaskManager.updateSubtask(new Subtask(idSubtask, "Подзадача", "Выполненная подзадача",
+                TaskStatus.DONE, Duration.ofMinutes(15), LocalDateTime.of(2024, 3, 3, 10, 0, 0), idEpic));
+        journalTaskManager.deleteTaskById(idTask2);
+        journalTaskManager.getSubtaskById(idSubtask);
+        journalTaskManager.getTaskById(idTask1);
+
+        Assertions.assertEquals(snapshotAfterFirstChange, Files.readString(journalTaskManagerPath, StandardCharsets.UTF_8),
+                "В режиме журнала изменения не должны перезаписывать файл менеджера");
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertEquals(journalTaskManager.getTasksList(), loadedTaskManager.getTasksList(),
+                "Задачи должны восстанавливаться из журнала");
+        Assertions.assertEquals(journalTaskManager.getSubtasksList(), loadedTaskManager.getSubtasksList(),
+                "Подзадачи должны восстанавливаться из журнала");
+        Assertions.assertEquals(TaskStatus.DONE, loadedTaskManager.getEpicsList().get(0).getStatus(),
+                "Статус эпика должен восстанавливаться из журнала");
+        Assertions.assertEquals(journalTaskManager.getHistory(), loadedTaskManager.getHistory(),
+                "История просмотров должна восстанавливаться из журнала");
+        Assertions.assertEquals(journalTaskManager.getPrioritizedTasks(), loadedTaskManager.getPrioritizedTasks(),
+                "Отсортированный список задач должен восстанавливаться из журнала");
+
+        Integer idTask3 = loadedTaskManager.addTask(new Task("Третья задача", "Задача после загрузки",
+                Duration.ofMinutes(10)));
+        Assertions.assertTrue(idTask3 > idSubtask, "Id новых задач не должны совпадать с восстановленными");
+        Assertions.assertEquals(loadedTaskManager.getTasksList(),
+                FileBackedTaskManager.loadFromFile(journalTaskManagerPath).getTasksList(),
+                "Загруженный менеджер должен продолжать вести тот же журнал");
+    }
+
+    /**
+     * проверка фонового сохранения: изменения копятся в памяти и сбрасываются в файл одной записью
+     */
+    @Test
+    void shouldSaveChangesOnFlushWhenWriteBehindEnabled() throws IOException {
+        taskManager.enableWriteBehind(Duration.ofHours(1), 100_000);
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Эпик для пакетного импорта"));
+        for (int i = 0; i < 500; i++) {
+            taskManager.addSubtask(new Subtask("Подзадача " + i, "Импортированная подзадача",
+                    Duration.ofMinutes(15), idEpic));
+        }
+        Assertions.assertEquals(0, Files.size(testTaskManagerPath),
+                "До сброса фоновое сохранение не должно записывать файл на каждое изменение");
+
+        taskManager.flush();
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(500, loadedTaskManager.getSubtasksList().size(),
+                "После сброса в файле должны быть все накопленные изменения");
+
+        taskManager.deleteEpicById(idEpic);
+        taskManager.close();
+        Assertions.assertTrue(FileBackedTaskManager.loadFromFile(testTaskManagerPath).getSubtasksList().isEmpty(),
+                "Закрытие менеджера должно сбрасывать накопленные изменения");
+    }
+
     /**
      * проверка перехвата исключения ManagerSaveException
      */
+    /**
+     * проверка атомарной записи снимка во всех режимах надежности: временный файл не остается,
+     * а брошенный при сбое временный файл не мешает загрузке и следующей записи
+     */
+    @Test
+    void shouldWriteSnapshotAtomicallyInEveryDurabilityMode() throws IOException {
+        Path tempPath = DurableFiles.tempPathFor(testTaskManagerPath);
+        Files.write(tempPath, "недописанный снимок".getBytes(StandardCharsets.UTF_8));
+        for (DurabilityMode durabilityMode : DurabilityMode.values()) {
+            taskManager.setDurabilityMode(durabilityMode, Duration.ofMillis(50));
+            Assertions.assertEquals(durabilityMode, taskManager.getDurabilityMode(),
+                    "Режим надежности должен устанавливаться");
+            Integer idTask = taskManager.addTask(new Task(durabilityMode.name(), "Задача режима надежности",
+                    Duration.ofMinutes(10)));
+            taskManager.getTaskById(idTask);
+            taskManager.flush();
+
+            Assertions.assertFalse(Files.exists(tempPath), "Временный файл должен подменять файл менеджера");
+            FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+            Assertions.assertEquals(taskManager.getTasksList().size(), loadedTaskManager.getTasksList().size(),
+                    "Все задачи должны сохраняться в режиме " + durabilityMode);
+            Assertions.assertEquals(taskManager.getHistory(), loadedTaskManager.getHistory(),
+                    "История должна сохраняться в режиме " + durabilityMode);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> taskManager.setDurabilityMode(DurabilityMode.SYNC_INTERVAL, Duration.ZERO),
+                "Интервал сброса на диск должен быть положительным");
+    }
+
+    /**
+     * проверка сброса на диск по таймеру: последняя запись сбрасывается, даже если после нее записей нет
+     */
+    @Test
+    void shouldSyncLastWriteByTimerInSyncIntervalMode() throws InterruptedException {
+        taskManager.setDurabilityMode(DurabilityMode.SYNC_INTERVAL, Duration.ofMillis(200));
+        taskManager.addTask(new Task("Задача", "Последняя запись", Duration.ofMinutes(10)));
+        long deadlineMillis = System.currentTimeMillis() + 5_000;
+        while (taskManager.hasUnsyncedWrites() && System.currentTimeMillis() < deadlineMillis) {
+            Thread.sleep(20);
+        }
+        Assertions.assertFalse(taskManager.hasUnsyncedWrites(), "Запись должна сбрасываться на диск по таймеру");
+        taskManager.close();
+    }
+
+    /**
+     * проверка сегментированного хранения: изменение задачи перезаписывает только ее сегмент,
+     * удаления и очистки сохраняются, а файл менеджера в другом режиме переводится в сегменты
+     */
+    @Test
+    void shouldRewriteOnlyChangedSegments() throws IOException {
+        Path segmentedTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager segmentedTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), segmentedTaskManagerPath, SaveMode.SEGMENTED);
+        Integer idEpic = segmentedTaskManager.addEpic(new Epic("Эпик", "Эпик в первом сегменте"));
+        Integer idSubtask = segmentedTaskManager.addSubtask(new Subtask("Подзадача", "Подзадача эпика",
+                TaskStatus.DONE, Duration.ofMinutes(15), LocalDateTime.of(2024, 6, 1, 10, 0), idEpic));
+        int taskCount = 2 * TaskSegments.SEGMENT_SIZE;
+        Integer idLastTask = null;
+        for (int i = 0; i < taskCount; i++) {
+            idLastTask = segmentedTaskManager.addTask(new Task("Задача " + i, "Задача сегмента",
+                    Duration.ofMinutes(10)));
+        }
+        segmentedTaskManager.getTaskById(idLastTask);
+        Path segmentsDirectory = TaskSegments.directoryFor(segmentedTaskManagerPath);
+        Path firstSegmentPath = segmentsDirectory.resolve("segment-0");
+        Path lastSegmentPath = segmentsDirectory.resolve("segment-" + TaskSegments.segmentOf(idLastTask));
+        byte[] firstSegment = Files.readAllBytes(firstSegmentPath);
+        byte[] lastSegment = Files.readAllBytes(lastSegmentPath);
+
+        segmentedTaskManager.updateTask(new Task(idLastTask, "Последняя задача", "Измененная задача",
+                TaskStatus.IN_PROGRESS, Duration.ofMinutes(10)));
+        Assertions.assertArrayEquals(firstSegment, Files.readAllBytes(firstSegmentPath),
+                "Сегмент без изменений не должен перезаписываться");
+        Assertions.assertFalse(Arrays.equals(lastSegment, Files.readAllBytes(lastSegmentPath)),
+                "Сегмент измененной задачи должен перезаписываться");
+        Assertions.assertEquals(0, Files.size(segmentedTaskManagerPath),
+                "В режиме сегментов задачи не должны записываться в файл менеджера");
+
+        segmentedTaskManager.deleteEpicById(idEpic);
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(segmentedTaskManagerPath);
+        Assertions.assertEquals(taskCount, loadedTaskManager.getTasksList().size(),
+                "Задачи должны восстанавливаться из сегментов");
+        Assertions.assertEquals("Последняя задача", loadedTaskManager.getTasksList().get(taskCount - 1).getName(),
+                "Измененная задача должна восстанавливаться из сегмента");
+        Assertions.assertTrue(loadedTaskManager.getEpicsList().isEmpty(), "Удаленный эпик не должен восстанавливаться");
+        Assertions.assertTrue(loadedTaskManager.getSubtasksList().isEmpty(),
+                "Подзадачи удаленного эпика не должны восстанавливаться");
+        Assertions.assertEquals(segmentedTaskManager.getHistory(), loadedTaskManager.getHistory(),
+                "История должна восстанавливаться из журнала просмотров");
+
+        loadedTaskManager.removeAllTasks();
+        Assertions.assertTrue(FileBackedTaskManager.loadFromFile(segmentedTaskManagerPath).getTasksList().isEmpty(),
+                "Удаление всех задач должно сохраняться в сегментах");
+
+        Integer idTask = taskManager.addTask(new Task("Задача из снимка", "Задача для перевода в сегменты",
+                Duration.ofMinutes(10)));
+        taskManager.getTaskById(idTask);
+        FileBackedTaskManager migratedTaskManager =
+                FileBackedTaskManager.loadFromFile(testTaskManagerPath, SaveMode.SEGMENTED);
+        Assertions.assertEquals(0, Files.size(testTaskManagerPath), "Задачи должны переноситься в сегменты");
+        Assertions.assertEquals(List.of(idTask), FileBackedTaskManager.loadFromFile(testTaskManagerPath)
+                .getTasksList().stream().map(Task::getId).collect(Collectors.toList()),
+                "Режим сегментов должен определяться при загрузке");
+        Assertions.assertEquals(migratedTaskManager.getHistory(),
+                FileBackedTaskManager.loadFromFile(testTaskManagerPath).getHistory(),
+                "История должна переноситься в журнал просмотров");
+    }
+
+    /**
+     * проверка фиксации изменения нескольких сегментов: запись, прерванная после записи списка изменений,
+     * доводится до конца при загрузке, а прерванная до нее - отбрасывается целиком
+     */
+    @Test
+    void shouldLoadOnlyWholeMultiSegmentCommits() throws IOException {
+        Path segmentedTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager segmentedTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), segmentedTaskManagerPath, SaveMode.SEGMENTED);
+        Integer idEpic = segmentedTaskManager.addEpic(new Epic("Эпик", "Эпик в первом сегменте"));
+        for (int i = 0; i < TaskSegments.SEGMENT_SIZE; i++) {
+            segmentedTaskManager.addTask(new Task("Задача " + i, "Заполняет сегменты", Duration.ofMinutes(10)));
+        }
+        Integer idSubtask = segmentedTaskManager.addSubtask(new Subtask("Подзадача", "Во втором сегменте",
+                TaskStatus.NEW, Duration.ofMinutes(10), idEpic));
+        Path segmentsDirectory = TaskSegments.directoryFor(segmentedTaskManagerPath);
+        Path firstSegmentPath = segmentsDirectory.resolve("segment-" + TaskSegments.segmentOf(idEpic));
+        Path secondSegmentPath = segmentsDirectory.resolve("segment-" + TaskSegments.segmentOf(idSubtask));
+        Assertions.assertNotEquals(firstSegmentPath, secondSegmentPath);
+        byte[] firstSegmentBefore = Files.readAllBytes(firstSegmentPath);
+        byte[] secondSegmentBefore = Files.readAllBytes(secondSegmentPath);
+        segmentedTaskManager.deleteEpicById(idEpic); //эпик и его подзадача удаляются из двух сегментов одной записью
+        byte[] firstSegmentAfter = Files.readAllBytes(firstSegmentPath);
+        byte[] secondSegmentAfter = Files.readAllBytes(secondSegmentPath);
+        Assertions.assertFalse(Files.exists(segmentsDirectory.resolve("commit")),
+                "Список изменений удаляется после подмены сегментов");
+
+        //сбой после точки фиксации: второй сегмент уже подменен, первый - еще нет
+        Files.write(firstSegmentPath, firstSegmentBefore);
+        Files.write(segmentsDirectory.resolve(firstSegmentPath.getFileName() + ".new"), firstSegmentAfter);
+        Files.write(segmentsDirectory.resolve("commit"), String.format("+%d\n+%d\n",
+                TaskSegments.segmentOf(idEpic), TaskSegments.segmentOf(idSubtask)).getBytes(StandardCharsets.UTF_8));
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(segmentedTaskManagerPath);
+        Assertions.assertTrue(loadedTaskManager.getEpicsList().isEmpty(),
+                "Зафиксированная запись должна доводиться до конца");
+        Assertions.assertTrue(loadedTaskManager.getSubtasksList().isEmpty());
+        Assertions.assertFalse(Files.exists(segmentsDirectory.resolve("commit")));
+
+        //сбой до точки фиксации: новые сегменты без списка изменений отбрасываются
+        Files.write(firstSegmentPath, firstSegmentBefore);
+        Files.write(secondSegmentPath, secondSegmentBefore);
+        Files.write(segmentsDirectory.resolve(firstSegmentPath.getFileName() + ".new"), firstSegmentAfter);
+        Files.write(segmentsDirectory.resolve(secondSegmentPath.getFileName() + ".new"), secondSegmentAfter);
+        loadedTaskManager = FileBackedTaskManager.loadFromFile(segmentedTaskManagerPath);
+        Assertions.assertEquals(List.of(idSubtask), loadedTaskManager.getSubtasksListByEpic(idEpic, ReadMode.SILENT)
+                        .stream().map(Task::getId).collect(Collectors.toList()),
+                "Незафиксированная запись не должна применяться");
+        Assertions.assertFalse(Files.exists(segmentsDirectory.resolve(secondSegmentPath.getFileName() + ".new")),
+                "Новые сегменты незафиксированной записи удаляются");
+    }
+
+    /**
+     * проверка сжатого снимка: файл меньше csv, а повреждение одного блока теряет только задачи этого блока
+     */
+    @Test
+    void shouldSkipOnlyCorruptBlockOfCompressedSnapshot() throws IOException {
+        int taskCount = 3000;
+        writeLargeCsvFile(taskCount);
+        long csvSize = Files.size(testTaskManagerPath);
+        FileBackedTaskManager csvTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        csvTaskManager.setSnapshotFormat(SnapshotFormat.COMPRESSED);
+        Assertions.assertTrue(Files.size(testTaskManagerPath) * 4 < csvSize, "Сжатый снимок должен быть меньше csv");
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(SnapshotFormat.COMPRESSED, loadedTaskManager.getSnapshotFormat(),
+                "Формат снимка должен определяться по файлу");
+        Assertions.assertTrue(loadedTaskManager.getCorruptBlocks().isEmpty(), "Целый снимок не должен иметь ошибок");
+        Assertions.assertEquals(csvTaskManager.getTasksList(), loadedTaskManager.getTasksList(),
+                "Задачи должны восстанавливаться из сжатого снимка");
+        Assertions.assertEquals(csvTaskManager.getSubtasksList(), loadedTaskManager.getSubtasksList(),
+                "Подзадачи должны восстанавливаться из сжатого снимка");
+        Assertions.assertEquals(csvTaskManager.getHistory(), loadedTaskManager.getHistory(),
+                "История должна восстанавливаться из сжатого снимка");
+
+        //первый блок - первые 1024 задачи типа TASK; портится байт в его середине
+        byte[] compressed = Files.readAllBytes(testTaskManagerPath);
+        ByteBuffer table = ByteBuffer.wrap(compressed);
+        int blockCount = table.getInt(5);
+        int firstBlockOffset = 5 + Integer.BYTES + blockCount * 3 * Integer.BYTES + Integer.BYTES;
+        compressed[firstBlockOffset + table.getInt(9) / 2] ^= 0x5A;
+        Files.write(testTaskManagerPath, compressed);
+
+        FileBackedTaskManager damagedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(1, damagedTaskManager.getCorruptBlocks().size(),
+                "Должен сообщаться только поврежденный блок");
+        Assertions.assertEquals(0, damagedTaskManager.getCorruptBlocks().get(0).getBlockIndex(),
+                "Должен сообщаться номер поврежденного блока");
+        Assertions.assertEquals(firstBlockOffset, damagedTaskManager.getCorruptBlocks().get(0).getOffset(),
+                "Должно сообщаться смещение поврежденного блока");
+        Assertions.assertEquals(taskCount / 2 - CompressedSnapshotCodec.TASKS_PER_BLOCK,
+                damagedTaskManager.getTasksList().size(), "Задачи из целых блоков должны загружаться");
+        Assertions.assertEquals(csvTaskManager.getSubtasksList(), damagedTaskManager.getSubtasksList(),
+                "Подзадачи из целых блоков должны загружаться");
+        Assertions.assertEquals(List.of(1, 3), damagedTaskManager.getHistory().stream().map(Task::getId)
+                .collect(Collectors.toList()), "Просмотры потерянных задач должны отбрасываться");
+        Assertions.assertArrayEquals(compressed,
+                Files.readAllBytes(FileBackedTaskManager.corruptCopyPathFor(testTaskManagerPath)),
+                "Поврежденный файл должен сохраняться рядом");
+    }
+
+    /**
+     * проверка загрузки сжатого снимка с поврежденным блоком и журналом: записи журнала, ссылающиеся
+     * на потерянные задачи, пропускаются и сообщаются, остальные применяются
+     */
+    @Test
+    void shouldSkipJournalRecordsOfTasksLostWithCorruptBlock() throws IOException {
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        Integer idEpic = journalTaskManager.addEpic(new Epic("Эпик", "Эпик из снимка"));
+        Integer idSubtask = journalTaskManager.addSubtask(new Subtask("Подзадача", "Подзадача из снимка",
+                TaskStatus.NEW, Duration.ofMinutes(15), idEpic));
+        journalTaskManager.setSnapshotFormat(SnapshotFormat.COMPRESSED); //снимок из одного блока, журнал пуст
+        journalTaskManager.updateSubtask(new Subtask(idSubtask, "Подзадача", "Подзадача из журнала",
+                TaskStatus.DONE, Duration.ofMinutes(15), idEpic)); //в журнале подзадача записана раньше эпика
+        Integer idTask = journalTaskManager.addTask(new Task("Задача", "Задача из журнала", Duration.ofMinutes(10)));
+
+        byte[] compressed = Files.readAllBytes(journalTaskManagerPath);
+        ByteBuffer table = ByteBuffer.wrap(compressed);
+        int blockCount = table.getInt(5);
+        int firstBlockOffset = 5 + Integer.BYTES + blockCount * 3 * Integer.BYTES + Integer.BYTES;
+        compressed[firstBlockOffset + table.getInt(9) / 2] ^= 0x5A;
+        Files.write(journalTaskManagerPath, compressed);
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertEquals(1, loadedTaskManager.getCorruptBlocks().size(),
+                "Должен сообщаться поврежденный блок");
+        Assertions.assertEquals(List.of(idSubtask), loadedTaskManager.getOrphanedTaskIds(),
+                "Должна сообщаться подзадача журнала, эпик которой потерян");
+        Assertions.assertTrue(loadedTaskManager.getSubtasksList().isEmpty());
+        Assertions.assertNotNull(loadedTaskManager.getEpicById(idEpic), "Эпик из журнала должен восстанавливаться");
+        Assertions.assertNotNull(loadedTaskManager.getTaskById(idTask), "Задача из журнала должна восстанавливаться");
+    }
+
+    /**
+     * проверка сохранения запланированных задач и пересчитанного времени эпика
+     */
+    @Test
+    void shouldSaveScheduledTasks() {
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Эпик с подзадачей без времени"));
+        taskManager.addSubtask(new Subtask("Подзадача", "Подзадача без времени", Duration.ofMinutes(30), idEpic));
+        taskManager.addTask(new Task("Задача", "Задача без времени", Duration.ofMinutes(45)));
+        taskManager.scheduleUnscheduled(LocalDateTime.of(2024, 3, 4, 9, 0));
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(taskManager.getPrioritizedTasks(), loadedTaskManager.getPrioritizedTasks(),
+                "Запланированные задачи должны сохраняться");
+        Assertions.assertEquals(taskManager.getEpicById(idEpic).getStartTime(),
+                loadedTaskManager.getEpicById(idEpic).getStartTime(), "Время эпика должно восстанавливаться");
+    }
+
+    /**
+     * проверка сохранения пачки задач в режиме журнала
+     */
+    @Test
+    void shouldSaveAddedBatchInJournal() throws IOException {
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        Integer idEpic = journalTaskManager.addEpic(new Epic("Эпик", "Эпик пачки"));
+        journalTaskManager.addAll(List.of(
+                new Task("Задача", "Задача пачки", TaskStatus.NEW, Duration.ofMinutes(30),
+                        LocalDateTime.of(2024, 3, 6, 9, 0)),
+                new Subtask("Подзадача", "Подзадача пачки", TaskStatus.IN_PROGRESS, Duration.ofMinutes(15),
+                        LocalDateTime.of(2024, 3, 6, 10, 0), idEpic)));
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertEquals(journalTaskManager.getPrioritizedTasks(), loadedTaskManager.getPrioritizedTasks(),
+                "Задачи пачки должны восстанавливаться из журнала");
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, loadedTaskManager.getEpicById(idEpic).getStatus(),
+                "Статус эпика должен восстанавливаться");
+    }
+
+    /**
+     * проверка поиска пересечений в загруженном без проверки файле: пары пересечений по областям времени
+     */
+    @Test
+    void shouldAuditOverlapsOfLoadedTasks() throws IOException {
+        String csv = CsvSnapshotCodec.TASK_CSV_HEADER + "\n"
+                + "1,EPIC,Эпик,NEW,Эпик,0,null,\n"
+                + "2,TASK,Задача 2,NEW,С 9:00 до 10:00,60,2024-03-07T09:00,\n"
+                + "3,TASK,Задача 3,NEW,С 9:30 до 10:30,60,2024-03-07T09:30,\n"
+                + "4,SUBTASK,Подзадача 4,NEW,С 10:00 до 10:30,30,2024-03-07T10:00,1\n"
+                + "5,TASK,Задача 5,NEW,С 12:00 до 12:30,30,2024-03-07T12:00,\n"
+                + "6,TASK,Задача 6,NEW,С 12:00 до 12:15,15,2024-03-07T12:00,\n"
+                + "7,TASK,Задача 7,NEW,С 12:30 до 13:00,30,2024-03-07T12:30,\n"
+                + "\n";
+        Files.write(testTaskManagerPath, csv.getBytes(StandardCharsets.UTF_8));
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+
+        List<OverlapRegion> regions = loadedTaskManager.auditOverlaps();
+        Assertions.assertEquals(2, regions.size(), "Пересечения должны группироваться по областям времени");
+        OverlapRegion morningRegion = regions.get(0);
+        Assertions.assertEquals(LocalDateTime.of(2024, 3, 7, 9, 0), morningRegion.getStartTime(),
+                "Область должна начинаться с самой ранней задачи");
+        Assertions.assertEquals(LocalDateTime.of(2024, 3, 7, 10, 30), morningRegion.getEndTime(),
+                "Область должна завершаться с самой поздней задачей");
+        Assertions.assertEquals(List.of("2-3", "3-4"), morningRegion.getConflictingPairs().stream()
+                        .map(pair -> pair.getKey().getId() + "-" + pair.getValue().getId()).collect(Collectors.toList()),
+                "Соприкасающиеся задачи не должны считаться пересекающимися");
+        Assertions.assertEquals(List.of("6-5"), regions.get(1).getConflictingPairs().stream()
+                        .map(pair -> pair.getKey().getId() + "-" + pair.getValue().getId()).collect(Collectors.toList()),
+                "Задачи с одинаковым временем начала должны считаться пересекающимися");
+
+        loadedTaskManager.deleteTaskById(3);
+        loadedTaskManager.deleteTaskById(6);
+        Assertions.assertTrue(loadedTaskManager.auditOverlaps().isEmpty(),
+                "После удаления пересекающихся задач пересечений быть не должно");
+    }
+
+    /**
+     * проверка пересечений с загруженными без проверки пересекающимися задачами: задача, которая еще выполняется,
+     * учитывается, даже если после нее начинается и завершается другая задача
+     */
+    @Test
+    void shouldValidateAgainstOverlappingLoadedTasks() throws IOException {
+        FileBackedTaskManager loadedTaskManager = loadOverlappingTasks();
+
+        Assertions.assertEquals(0, loadedTaskManager.addTask(new Task("Задача C", "Во время задачи A",
+                        TaskStatus.NEW, Duration.ofMinutes(30), LocalDateTime.of(2024, 3, 7, 10, 0))),
+                "Задача не должна добавляться на время уже выполняющейся задачи");
+        Assertions.assertNotEquals(0, loadedTaskManager.addTask(new Task("Задача D", "После задачи A",
+                TaskStatus.NEW, Duration.ofMinutes(30), LocalDateTime.of(2024, 3, 7, 12, 0))));
+    }
+
+    /**
+     * проверка окна и момента по загруженным пересекающимся задачам: задача A выполняется после завершения задачи B
+     */
+    @Test
+    void shouldFindRunningTaskAmongOverlappingLoadedTasks() throws IOException {
+        FileBackedTaskManager loadedTaskManager = loadOverlappingTasks();
+
+        Assertions.assertEquals(List.of(1), loadedTaskManager.getTasksInWindow(LocalDateTime.of(2024, 3, 7, 10, 0),
+                        LocalDateTime.of(2024, 3, 7, 11, 0)).stream().map(Task::getId).collect(Collectors.toList()),
+                "В окно должна попадать задача, начавшаяся раньше другой задачи и еще не завершившаяся");
+        Assertions.assertEquals(List.of(1), loadedTaskManager.getTasksAt(LocalDateTime.of(2024, 3, 7, 10, 0))
+                .stream().map(Task::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(List.of(1, 2), loadedTaskManager.getTasksAt(LocalDateTime.of(2024, 3, 7, 9, 0))
+                .stream().map(Task::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * проверка свободного времени по загруженным пересекающимся задачам с календарем занятости и без него
+     */
+    @Test
+    void shouldNotReportTimeOfOverlappingLoadedTaskAsFree() throws IOException {
+        FileBackedTaskManager loadedTaskManager = loadOverlappingTasks();
+        LocalDateTime tenOClock = LocalDateTime.of(2024, 3, 7, 10, 0);
+
+        Assertions.assertFalse(loadedTaskManager.isTimeFree(tenOClock, tenOClock.plusHours(1)),
+                "Время выполняющейся задачи не должно быть свободным");
+        Assertions.assertFalse(loadedTaskManager.isTimeFree(tenOClock, tenOClock.plusHours(1), null));
+        Assertions.assertTrue(loadedTaskManager.isTimeFree(tenOClock.plusHours(2), tenOClock.plusHours(3)));
+
+        loadedTaskManager.enableSlotCalendar();
+        loadedTaskManager.deleteTaskById(2);
+        Assertions.assertFalse(loadedTaskManager.isTimeFree(tenOClock.minusHours(1), tenOClock.minusMinutes(30)),
+                "Слоты удаленной задачи, занятые другой задачей, должны оставаться занятыми");
+        Assertions.assertEquals(0, loadedTaskManager.addTask(new Task("Задача C", "Во время задачи A",
+                TaskStatus.NEW, Duration.ofMinutes(30), tenOClock.minusHours(1))));
+    }
+
+    /**
+     * проверка поиска свободного времени по загруженным пересекающимся задачам: занятое время сливается
+     * по самому позднему завершению, в том числе с задачами, начавшимися во время выполняющейся задачи
+     */
+    @Test
+    void shouldFindFreeSlotAfterOverlappingLoadedTasks() throws IOException {
+        String csv = CsvSnapshotCodec.TASK_CSV_HEADER + "\n"
+                + "1,TASK,Задача A,NEW,С 8:00 до 12:00,240,2024-03-07T08:00,\n"
+                + "2,TASK,Задача B,NEW,С 9:00 до 9:30,30,2024-03-07T09:00,\n"
+                + "3,TASK,Задача C,NEW,С 11:00 до 13:00,120,2024-03-07T11:00,\n"
+                + "4,TASK,Задача D,NEW,Без времени,30,null,\n"
+                + "\n";
+        Files.write(testTaskManagerPath, csv.getBytes(StandardCharsets.UTF_8));
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+
+        Assertions.assertEquals(LocalDateTime.of(2024, 3, 7, 13, 0),
+                loadedTaskManager.findNextFreeSlot(Duration.ofMinutes(15), LocalDateTime.of(2024, 3, 7, 9, 45)),
+                "Свободное время должно начинаться после всех выполняющихся и начавшихся во время них задач");
+        Assertions.assertEquals(LocalDateTime.of(2024, 3, 7, 7, 45),
+                loadedTaskManager.findNextFreeSlot(Duration.ofMinutes(15), LocalDateTime.of(2024, 3, 7, 7, 45)));
+        Assertions.assertEquals(List.of(LocalDateTime.of(2024, 3, 7, 13, 0)),
+                loadedTaskManager.scheduleUnscheduled(LocalDateTime.of(2024, 3, 7, 9, 45)).stream()
+                        .map(Task::getStartTime).collect(Collectors.toList()),
+                "Задача без времени должна планироваться после слитого занятого времени");
+    }
+
+    /**
+     * загрузка файла без проверки пересечений: задача A с 8:00 до 12:00 и задача B с 9:00 до 9:30
+     */
+    private FileBackedTaskManager loadOverlappingTasks() throws IOException {
+        String csv = CsvSnapshotCodec.TASK_CSV_HEADER + "\n"
+                + "1,TASK,Задача A,NEW,С 8:00 до 12:00,240,2024-03-07T08:00,\n"
+                + "2,TASK,Задача B,NEW,С 9:00 до 9:30,30,2024-03-07T09:00,\n"
+                + "\n";
+        Files.write(testTaskManagerPath, csv.getBytes(StandardCharsets.UTF_8));
+        return FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+    }
+
+    /**
+     * проверка сохранения исполнителей в csv, двоичном снимке и журнале; файлы без поля исполнителя читаются
+     */
+    @Test
+    void shouldSaveAndLoadAssignees() throws IOException {
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Эпик с подзадачей исполнителя"));
+        Subtask subtask = new Subtask("Подзадача", "Подзадача Алисы", TaskStatus.NEW, Duration.ofMinutes(30),
+                LocalDateTime.of(2024, 3, 12, 9, 0), idEpic);
+        subtask.setAssignee("Алиса");
+        Integer idSubtask = taskManager.addSubtask(subtask);
+        Task task = new Task("Задача", "Задача Боба в то же время", TaskStatus.NEW, Duration.ofMinutes(30),
+                LocalDateTime.of(2024, 3, 12, 9, 0));
+        task.setAssignee("Боб, \"Отдел\"");
+        Integer idTask = taskManager.addTask(task);
+        Integer idUnassignedTask = taskManager.addTask(new Task("Задача без исполнителя", "Без времени",
+                Duration.ofMinutes(15)));
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals("Алиса", loadedTaskManager.getSubtaskById(idSubtask).getAssignee(),
+                "Исполнитель подзадачи должен восстанавливаться из csv");
+        Assertions.assertEquals("Боб, \"Отдел\"", loadedTaskManager.getTaskById(idTask).getAssignee(),
+                "Исполнитель с запятой и кавычками должен восстанавливаться из csv");
+        Assertions.assertNull(loadedTaskManager.getTaskById(idUnassignedTask).getAssignee(),
+                "Задача без исполнителя должна оставаться без исполнителя");
+        Assertions.assertEquals(2, loadedTaskManager.getPrioritizedTasks().size(),
+                "Пересекающиеся задачи разных исполнителей должны восстанавливаться");
+
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals("Алиса", loadedTaskManager.getSubtaskById(idSubtask).getAssignee(),
+                "Исполнитель должен восстанавливаться из двоичного снимка");
+        Assertions.assertNull(loadedTaskManager.getTaskById(idUnassignedTask).getAssignee(),
+                "Задача без исполнителя должна оставаться без исполнителя в двоичном снимке");
+
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        Task journalTask = new Task("Задача журнала", "Задача Карла", TaskStatus.NEW, Duration.ofMinutes(30),
+                LocalDateTime.of(2024, 3, 12, 9, 0));
+        journalTask.setAssignee("Карл");
+        Integer idJournalTask = journalTaskManager.addTask(journalTask);
+        Assertions.assertEquals("Карл",
+                FileBackedTaskManager.loadFromFile(journalTaskManagerPath).getTaskById(idJournalTask).getAssignee(),
+                "Исполнитель должен восстанавливаться из журнала");
+    }
+
+    @Test
+    void shouldSaveAndLoadRecurringTasks() throws IOException {
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 2,
+                EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.THURSDAY), LocalDate.of(2024, 12, 31));
+        RecurringTask review = new RecurringTask("Ревью", "Раз в две недели", Duration.ofHours(1),
+                LocalDateTime.of(2024, 3, 4, 14, 0), rule);
+        review.setAssignee("Алиса");
+        Integer idReview = taskManager.addRecurringTask(review);
+        Integer idStandup = taskManager.addRecurringTask(new RecurringTask("Планерка", "Каждый день",
+                Duration.ofMinutes(15), LocalDateTime.of(2024, 3, 4, 9, 0),
+                new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 1)));
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        RecurringTask loadedReview = loadedTaskManager.getRecurringTaskById(idReview);
+        Assertions.assertEquals(rule, loadedReview.getRule(), "Правило повторения должно восстанавливаться из csv");
+        Assertions.assertEquals("Алиса", loadedReview.getAssignee());
+        Assertions.assertNull(loadedTaskManager.getRecurringTaskById(idStandup).getAssignee(),
+                "Повторяющаяся задача без исполнителя должна оставаться без исполнителя");
+        Assertions.assertTrue(loadedTaskManager.getPrioritizedTasks().isEmpty(),
+                "Повторяющиеся задачи не должны попадать в отсортированный список");
+
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(rule, loadedTaskManager.getRecurringTaskById(idReview).getRule(),
+                "Правило повторения должно восстанавливаться из двоичного снимка");
+        Assertions.assertEquals(2, loadedTaskManager.getRecurringTasksList().size());
+
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        Integer idJournalReview = journalTaskManager.addRecurringTask(new RecurringTask("Ревью", "Из журнала",
+                Duration.ofHours(1), LocalDateTime.of(2024, 3, 4, 14, 0), rule));
+        Integer idDeletedTask = journalTaskManager.addRecurringTask(new RecurringTask("Удаленная", "Из журнала",
+                Duration.ofHours(1), LocalDateTime.of(2024, 3, 4, 9, 0), rule));
+        journalTaskManager.deleteRecurringTaskById(idDeletedTask);
+        loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertEquals(rule, loadedTaskManager.getRecurringTaskById(idJournalReview).getRule(),
+                "Повторяющаяся задача должна восстанавливаться из журнала");
+        Assertions.assertNull(loadedTaskManager.getRecurringTaskById(idDeletedTask),
+                "Удаление повторяющейся задачи должно восстанавливаться из журнала");
+    }
+
+    @Test
+    void shouldSaveAndLoadNestedEpics() throws IOException {
+        Integer idInitiative = taskManager.addEpic(new Epic("Инициатива", "Верхний уровень"));
+        Epic story = new Epic("История", "Вложена в инициативу");
+        story.setIdParentEpic(idInitiative);
+        Integer idStory = taskManager.addEpic(story);
+        taskManager.addSubtask(new Subtask("Подзадача", "В работе", TaskStatus.IN_PROGRESS, Duration.ofMinutes(45),
+                LocalDateTime.of(2024, 6, 3, 9, 0), idStory));
+
+        FileBackedTaskManager loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(idInitiative, loadedTaskManager.getEpicById(idStory).getIdParentEpic(),
+                "Вложенность эпика должна восстанавливаться из csv");
+        Assertions.assertEquals(Duration.ofMinutes(45), loadedTaskManager.getEpicById(idInitiative).getDuration(),
+                "Сводные значения эпика верхнего уровня пересчитываются после загрузки");
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, loadedTaskManager.getEpicById(idInitiative).getStatus());
+
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        loadedTaskManager = FileBackedTaskManager.loadFromFile(testTaskManagerPath);
+        Assertions.assertEquals(List.of(idStory), loadedTaskManager.getChildEpicsListByEpic(idInitiative).stream()
+                .map(Task::getId).collect(Collectors.toList()),
+                "Вложенность эпика должна восстанавливаться из двоичного снимка");
+        Assertions.assertEquals(LocalDateTime.of(2024, 6, 3, 9, 45),
+                loadedTaskManager.getEpicById(idInitiative).getEndTime());
+
+        Path journalTaskManagerPath =
+                File.createTempFile(String.format("FileBackedTaskManager_%s", UUID.randomUUID()), ".csv").toPath();
+        FileBackedTaskManager journalTaskManager =
+                new FileBackedTaskManager(Managers.getDefaultHistory(), journalTaskManagerPath, SaveMode.JOURNAL);
+        Integer idJournalInitiative = journalTaskManager.addEpic(new Epic("Инициатива", "Из журнала"));
+        Epic journalEpic = new Epic("Эпик", "Удаляется вместе с историей");
+        journalEpic.setIdParentEpic(idJournalInitiative);
+        Integer idJournalEpic = journalTaskManager.addEpic(journalEpic);
+        Epic journalStory = new Epic("История", "Вложена в эпик");
+        journalStory.setIdParentEpic(idJournalEpic);
+        Integer idJournalStory = journalTaskManager.addEpic(journalStory);
+        journalTaskManager.addSubtask(new Subtask("Подзадача", "Новая", TaskStatus.NEW, Duration.ofMinutes(15),
+                idJournalStory));
+        journalTaskManager.deleteEpicById(idJournalEpic);
+        loadedTaskManager = FileBackedTaskManager.loadFromFile(journalTaskManagerPath);
+        Assertions.assertEquals(List.of(idJournalInitiative), loadedTaskManager.getEpicsList().stream()
+                .map(Task::getId).collect(Collectors.toList()),
+                "Удаление поддерева эпика должно восстанавливаться из журнала");
+        Assertions.assertTrue(loadedTaskManager.getSubtasksList().isEmpty());
+    }
+
+    /**
+     * проверка чтения во время изменений и фонового сохранения: читатель не видит списки в середине изменения
+     */
+    @Test
+    void shouldReadConsistentlyWhileOtherThreadWrites() throws InterruptedException {
+        taskManager.enableWriteBehind(Duration.ofMillis(5), 50);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2_000; i++) {
+                    Integer id = taskManager.addTask(new Task("Задача " + i, "Пишется параллельно", TaskStatus.NEW,
+                            Duration.ofMinutes(10), start.plusMinutes(20L * i)));
+                    if (i % 3 == 0) {
+                        taskManager.deleteTaskById(id);
+                    }
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                List<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
+                for (int i = 1; i < prioritizedTasks.size(); i++) {
+                    Assertions.assertTrue(prioritizedTasks.get(i - 1).getStartTime()
+                                    .isBefore(prioritizedTasks.get(i).getStartTime()),
+                            "Список должен оставаться упорядоченным");
+                }
+                taskManager.getTasksInWindow(start, start.plusDays(30));
+            }
+        } finally {
+            writer.join();
+        }
+        Assertions.assertTrue(failures.isEmpty(), "Изменения не должны прерываться чтением: " + failures);
+        taskManager.close();
+        Assertions.assertEquals(taskManager.getTasksList(),
+                FileBackedTaskManager.loadFromFile(testTaskManagerPath).getTasksList());
+    }
+
     @Test
     void shouldCorrectlyInterceptManagerSaveException() {
         Assertions.assertThrows(ManagerSaveException.class, () -> {
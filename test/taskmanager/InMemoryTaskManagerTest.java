@@ -1,9 +1,59 @@
 package taskmanager;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import taskmodel.Task;
+import taskmodel.TaskStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
 class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     @Override
     protected InMemoryTaskManager createTaskManager() {
         return (InMemoryTaskManager) Managers.getDefault();
     }
 
-}
\ No newline at end of file
+    /**
+     * проверка пересечений с календарем занятости: задачи, делящие 15-минутный слот, проверяются точно,
+     * освобождение задачи не освобождает слот соседней задачи
+     */
+    @Test
+    void shouldValidateIntersectionsWithSlotCalendar() {
+        LocalDateTime morning = LocalDateTime.of(2024, 1, 3, 9, 0);
+        taskManager.addTask(new Task("Часовая задача", "С 9:00 до 10:00", TaskStatus.NEW, Duration.ofHours(1),
+                morning));
+        taskManager.enableSlotCalendar();
+        Integer idShortTask = taskManager.addTask(new Task("Короткая задача", "С 10:05 до 10:10", TaskStatus.NEW,
+                Duration.ofMinutes(5), morning.plusMinutes(65)));
+        Integer idNeighbourTask = taskManager.addTask(new Task("Соседняя задача", "С 10:00 до 10:05",
+                TaskStatus.NEW, Duration.ofMinutes(5), morning.plusMinutes(60)));
+        Assertions.assertNotEquals(0, idNeighbourTask, "Задача в свободной части занятого слота должна добавляться");
+        Assertions.assertEquals(0, taskManager.addTask(new Task("Пересекающая задача", "С 10:02 до 10:07",
+                TaskStatus.NEW, Duration.ofMinutes(5), morning.plusMinutes(62))),
+                "Пересекающая задача не должна добавляться");
+        Assertions.assertTrue(taskManager.isTimeFree(morning.plusMinutes(70), morning.plusMinutes(75)),
+                "Свободная часть занятого слота должна быть свободной");
+        Assertions.assertTrue(taskManager.isTimeFree(morning.plusHours(2), morning.plusHours(3)),
+                "Время без задач должно быть свободным");
+
+        taskManager.deleteTaskById(idNeighbourTask);
+        Assertions.assertFalse(taskManager.isTimeFree(morning.plusMinutes(66), morning.plusMinutes(67)),
+                "Удаление задачи не должно освобождать время соседней задачи в том же слоте");
+        taskManager.deleteTaskById(idShortTask);
+        Assertions.assertNotEquals(0, taskManager.addTask(new Task("Задача на освободившееся время",
+                "С 10:00 до 10:15", TaskStatus.NEW, Duration.ofMinutes(15), morning.plusMinutes(60))),
+                "Освободившееся время должно быть доступно");
+
+        //задача через границу недельных страниц календаря (полночь с среды на четверг)
+        LocalDateTime pageBoundary = LocalDateTime.of(2024, 1, 4, 0, 0);
+        taskManager.addTask(new Task("Ночная задача", "Через полночь", TaskStatus.NEW, Duration.ofHours(2),
+                pageBoundary.minusHours(1)));
+        Assertions.assertEquals(0, taskManager.addTask(new Task("Задача после полуночи", "Пересекает ночную",
+                TaskStatus.NEW, Duration.ofMinutes(15), pageBoundary.plusMinutes(30))),
+                "Пересечение должно находиться на следующей странице календаря");
+        Assertions.assertTrue(taskManager.isTimeFree(pageBoundary.plusHours(1), pageBoundary.plusHours(2)),
+                "Время после ночной задачи должно быть свободным");
+    }
+
+}
@@ -0,0 +1,42 @@
+package taskmanager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import taskmodel.Task;
+import taskmodel.TaskStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+class SortedTaskArrayTest {
+
+    @Test
+    void shouldBehaveAsSortedSetOfDistinctTasks() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new Task(i + 1, "Задача " + i, "Задача массива", TaskStatus.NEW, Duration.ofMinutes(30),
+                    start.plusHours(i)));
+        }
+        Task[] sortedTasks = {tasks.get(0), tasks.get(1), tasks.get(1), tasks.get(2), tasks.get(3), tasks.get(4)};
+        SortedTaskArray array = new SortedTaskArray(sortedTasks, TaskOrder.START_ID_ORDER);
+
+        Assertions.assertEquals(tasks, new ArrayList<>(array), "Повторы по ключу сортировки отбрасываются");
+        Assertions.assertTrue(array.contains(tasks.get(3)));
+        Assertions.assertEquals(tasks, new ArrayList<>(new TreeSet<>(array)), "Из массива строится TreeSet");
+        Assertions.assertEquals(tasks.subList(1, 3), new ArrayList<>(array.subSet(tasks.get(1), tasks.get(3))));
+        Assertions.assertEquals(tasks.subList(0, 2), new ArrayList<>(array.headSet(tasks.get(2))));
+        SortedSet<Task> tailSet = array.tailSet(TaskTimeline.timeProbe(start.plusMinutes(150)));
+        Assertions.assertEquals(tasks.subList(3, 5), new ArrayList<>(tailSet), "Диапазон ищется по ключу сортировки");
+        Assertions.assertEquals(tasks.get(3), tailSet.first());
+        Assertions.assertFalse(tailSet.contains(tasks.get(2)), "Задачи вне диапазона в него не входят");
+        Assertions.assertEquals(tasks.subList(3, 4), new ArrayList<>(tailSet.headSet(tasks.get(4))));
+        Assertions.assertThrows(NoSuchElementException.class, () -> array.headSet(tasks.get(0)).first());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> array.subSet(tasks.get(3), tasks.get(1)));
+    }
+}
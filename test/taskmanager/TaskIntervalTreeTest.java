@@ -0,0 +1,71 @@
+package taskmanager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import taskmodel.Task;
+import taskmodel.TaskStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+class TaskIntervalTreeTest {
+
+    /**
+     * проверка дерева на пересекающихся задачах сравнением с полным перебором
+     */
+    @Test
+    void shouldFindIntersectingTasksAmongOverlappingTasks() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        Random random = new Random(42);
+        List<Task> tasks = new ArrayList<>();
+        TaskIntervalTree tree = new TaskIntervalTree();
+        for (int i = 0; i < 300; i++) {
+            Task task = new Task(i + 1, "Задача " + i, "Может пересекаться с другими", TaskStatus.NEW,
+                    Duration.ofMinutes(random.nextInt(6) == 0 ? 0 : 15 * random.nextInt(40)),
+                    start.plusMinutes(15L * random.nextInt(400)));
+            tasks.add(task);
+            Assertions.assertTrue(tree.add(task));
+        }
+        for (int i = 0; i < tasks.size(); i += 3) {
+            Assertions.assertTrue(tree.remove(tasks.get(i)));
+            Assertions.assertFalse(tree.contains(tasks.get(i)));
+        }
+        List<Task> keptTasks = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (i % 3 != 0) {
+                keptTasks.add(tasks.get(i));
+            }
+        }
+        keptTasks.sort(TaskOrder.START_END_ORDER);
+        Assertions.assertEquals(keptTasks, new ArrayList<>(tree), "Задачи должны обходиться по порядку");
+        Assertions.assertEquals(keptTasks, new ArrayList<>(new TaskIntervalTree(keptTasks.toArray(new Task[0]))),
+                "Дерево должно строиться из отсортированного массива");
+
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime from = start.plusMinutes(15L * random.nextInt(420));
+            LocalDateTime to = from.plusMinutes(15L * random.nextInt(8));
+            Task excluded = keptTasks.get(random.nextInt(keptTasks.size()));
+            Task probe = new Task("Проверяемая", "Интервал запроса", TaskStatus.NEW,
+                    Duration.between(from, to), from);
+            boolean expectedIntersecting = keptTasks.stream()
+                    .anyMatch(task -> task != excluded && CommonTaskManagerUtils.isIntersecting(probe, task));
+            Task intersectingTask = tree.findIntersecting(from, to, excluded);
+            Assertions.assertEquals(expectedIntersecting, intersectingTask != null,
+                    "Пересечение должно находиться независимо от соседних задач");
+            if (intersectingTask != null) {
+                Assertions.assertTrue(CommonTaskManagerUtils.isIntersecting(probe, intersectingTask));
+            }
+
+            List<Task> windowTasks = new ArrayList<>();
+            tree.collectInWindow(from, to, windowTasks);
+            Assertions.assertEquals(keptTasks.stream()
+                    .filter(task -> task.getStartTime().isBefore(to) && (!task.getStartTime().isBefore(from)
+                            || task.getEndTime().isAfter(from)))
+                    .collect(Collectors.toList()), windowTasks, "Окно должно включать все выполняющиеся в нем задачи");
+        }
+    }
+}
@@ -4,6 +4,8 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import taskmodel.Epic;
+import taskmodel.RecurrenceRule;
+import taskmodel.RecurringTask;
 import taskmodel.Subtask;
 import taskmodel.Task;
 import taskmodel.TaskStatus;
@@ -12,6 +14,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -789,4 +792,573 @@ abstract class TaskManagerTest<T extends TaskManager> {
         Integer idAddedTask = taskManager.addTask(task2);
         Assertions.assertTrue(1 == taskManager.getTasksList().size() && idAddedTask == 0, "Если интервалы задач пересекаются, то задача не должна добавиться");
     }
+
+    /**
+     * проверка пересечений только с соседними задачами: задача между двумя другими, задача внутри длинной задачи,
+     * перенос задачи внутри собственного интервала
+     */
+    @Test
+    void shouldValidateIntersectionWithNeighboursOnly() {
+        LocalDateTime dayStart = LocalDateTime.of(2024, 3, 1, 9, 0);
+        Integer idLongTask = taskManager.addTask(new Task("Длинная задача", "Задача на 3 часа", TaskStatus.NEW,
+                Duration.ofHours(3), dayStart));
+        Integer idLateTask = taskManager.addTask(new Task("Поздняя задача", "Задача после длинной", TaskStatus.NEW,
+                Duration.ofHours(1), dayStart.plusHours(5)));
+        Assertions.assertEquals(0, taskManager.addTask(new Task("Вложенная задача", "Внутри длинной задачи",
+                TaskStatus.NEW, Duration.ofMinutes(15), dayStart.plusHours(2))),
+                "Задача внутри интервала предыдущей задачи не должна добавляться");
+        Assertions.assertEquals(0, taskManager.addTask(new Task("Накрывающая задача", "Накрывает позднюю задачу",
+                TaskStatus.NEW, Duration.ofHours(4), dayStart.plusHours(3))),
+                "Задача, накрывающая следующую задачу, не должна добавляться");
+        Assertions.assertNotEquals(0, taskManager.addTask(new Task("Промежуточная задача", "Между задачами",
+                TaskStatus.NEW, Duration.ofHours(2), dayStart.plusHours(3))),
+                "Задача в промежутке между задачами должна добавляться");
+
+        Assertions.assertEquals(idLongTask, taskManager.updateTask(new Task(idLongTask, "Длинная задача",
+                "Сдвинута на час", TaskStatus.NEW, Duration.ofHours(2), dayStart.plusHours(1))),
+                "Перенос задачи внутри собственного интервала не должен считаться пересечением");
+        Assertions.assertEquals(0, taskManager.updateTask(new Task(idLateTask, "Поздняя задача", "Сдвинута раньше",
+                TaskStatus.NEW, Duration.ofHours(1), dayStart.plusHours(4))),
+                "Перенос задачи на занятое время не должен выполняться");
+        Assertions.assertEquals(3, taskManager.getPrioritizedTasks().size(),
+                "В отсортированном списке должны остаться только добавленные задачи");
+    }
+
+    /**
+     * выборка задач и подзадач по окну времени и по моменту
+     */
+    @Test
+    void shouldReturnTasksInWindowAndAtMoment() {
+        LocalDateTime tuesday = LocalDateTime.of(2024, 3, 5, 0, 0);
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Эпик для выборки"));
+        Integer idEarlyTask = taskManager.addTask(new Task("Утренняя задача", "С 8:00 до 10:00", TaskStatus.NEW,
+                Duration.ofHours(2), tuesday.plusHours(8)));
+        Integer idSubtask = taskManager.addSubtask(new Subtask("Подзадача", "С 11:00 до 12:00", TaskStatus.NEW,
+                Duration.ofHours(1), tuesday.plusHours(11), idEpic));
+        Integer idLateTask = taskManager.addTask(new Task("Дневная задача", "С 13:00 до 14:00", TaskStatus.NEW,
+                Duration.ofHours(1), tuesday.plusHours(13)));
+        taskManager.addTask(new Task("Задача без времени", "Не попадает в выборку", Duration.ofHours(1)));
+
+        Assertions.assertEquals(List.of(idEarlyTask, idSubtask),
+                taskManager.getTasksInWindow(tuesday.plusHours(9), tuesday.plusHours(13)).stream()
+                        .map(Task::getId).collect(Collectors.toList()),
+                "В окно должны попадать начатые до окна и начинающиеся в окне задачи");
+        Assertions.assertEquals(List.of(idSubtask, idLateTask),
+                taskManager.getTasksInWindow(tuesday.plusHours(10), tuesday.plusDays(1)).stream()
+                        .map(Task::getId).collect(Collectors.toList()),
+                "Задача, завершившаяся к началу окна, не должна попадать в окно");
+        Assertions.assertTrue(taskManager.getTasksInWindow(tuesday.plusHours(12), tuesday.plusHours(12)).isEmpty(),
+                "Пустое окно не должно содержать задач");
+
+        Assertions.assertEquals(List.of(idSubtask), taskManager.getTasksAt(tuesday.plusHours(11).plusMinutes(30))
+                .stream().map(Task::getId).collect(Collectors.toList()), "Должна возвращаться выполняемая задача");
+        Assertions.assertTrue(taskManager.getTasksAt(tuesday.plusHours(12)).isEmpty(),
+                "В момент завершения задача уже не выполняется");
+        Assertions.assertTrue(taskManager.getTasksAt(tuesday.plusHours(7)).isEmpty(),
+                "До начала первой задачи выполняемых задач нет");
+    }
+
+    /**
+     * поиск свободного времени и планирование задач без времени начала в промежутки между задачами
+     */
+    @Test
+    void shouldFindFreeSlotAndScheduleUnscheduledTasks() {
+        LocalDateTime dayStart = LocalDateTime.of(2024, 3, 4, 9, 0);
+        taskManager.addTask(new Task("Задача 1", "С 9:00 до 10:00", TaskStatus.NEW, Duration.ofHours(1), dayStart));
+        taskManager.addTask(new Task("Задача 2", "С 10:30 до 11:00", TaskStatus.NEW, Duration.ofMinutes(30),
+                dayStart.plusMinutes(90)));
+        Assertions.assertEquals(dayStart.plusHours(1), taskManager.findNextFreeSlot(Duration.ofMinutes(30),
+                dayStart.plusMinutes(15)), "Свободное время должно начинаться после выполняемой задачи");
+        Assertions.assertEquals(dayStart.plusHours(2), taskManager.findNextFreeSlot(Duration.ofMinutes(45),
+                dayStart), "Непомещающаяся задача должна ставиться после следующей задачи");
+        Assertions.assertEquals(dayStart.minusHours(1), taskManager.findNextFreeSlot(Duration.ofHours(1),
+                dayStart.minusHours(1)), "Время перед первой задачей должно быть свободным");
+
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Эпик с незапланированной подзадачей"));
+        Integer idLongTask = taskManager.addTask(new Task("Длинная", "Не помещается в промежуток",
+                Duration.ofMinutes(40)));
+        Integer idShortTask = taskManager.addTask(new Task("Короткая", "Помещается в промежуток",
+                Duration.ofMinutes(20)));
+        Integer idSubtask = taskManager.addSubtask(new Subtask("Подзадача", "Заполняет остаток промежутка",
+                TaskStatus.NEW, Duration.ofMinutes(10), idEpic));
+        taskManager.addTask(new Task("Веха", "Задача нулевой продолжительности", Duration.ZERO));
+        taskManager.getTaskById(idShortTask);
+
+        List<Task> scheduledTasks = taskManager.scheduleUnscheduled(dayStart);
+        Assertions.assertEquals(3, scheduledTasks.size(), "Должны планироваться задачи ненулевой продолжительности");
+        Assertions.assertNull(taskManager.getHistory().get(0).getStartTime(),
+                "В истории должна остаться прежняя версия задачи");
+        Assertions.assertEquals(dayStart.plusHours(1), taskManager.getTaskById(idShortTask).getStartTime(),
+                "Самая длинная помещающаяся задача должна ставиться в начало промежутка");
+        Assertions.assertEquals(dayStart.plusMinutes(80), taskManager.getSubtaskById(idSubtask).getStartTime(),
+                "Подзадача должна заполнять остаток промежутка");
+        Assertions.assertEquals(dayStart.plusHours(2), taskManager.getTaskById(idLongTask).getStartTime(),
+                "Непомещающаяся задача должна ставиться после последней задачи");
+        Assertions.assertEquals(dayStart.plusMinutes(80), taskManager.getEpicById(idEpic).getStartTime(),
+                "Время эпика должно пересчитываться по запланированной подзадаче");
+        Assertions.assertEquals(5, taskManager.getPrioritizedTasks().size(),
+                "Запланированные задачи должны попадать в отсортированный список");
+        Assertions.assertTrue(taskManager.isTimeFree(dayStart.plusMinutes(160), dayStart.plusHours(4)),
+                "После запланированных задач время должно быть свободным");
+    }
+
+    /**
+     * пакетное добавление: пересечения с существующими задачами и внутри пачки, id в порядке пачки,
+     * пересчет эпика по добавленным подзадачам
+     */
+    @Test
+    void shouldAddAllWithConflictsResolvedByStartTime() {
+        LocalDateTime dayStart = LocalDateTime.of(2024, 3, 6, 9, 0);
+        taskManager.addTask(new Task("Существующая", "С 9:00 до 10:00", TaskStatus.NEW, Duration.ofHours(1),
+                dayStart));
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Эпик пачки"));
+
+        List<Task> batch = List.of(
+                new Task("Поздняя", "С 11:30 до 12:30, пересекает раннюю из пачки", TaskStatus.NEW,
+                        Duration.ofHours(1), dayStart.plusMinutes(150)),
+                new Subtask("Подзадача", "С 10:00 до 10:30", TaskStatus.DONE, Duration.ofMinutes(30),
+                        dayStart.plusHours(1), idEpic),
+                new Task("Пересекающая", "С 9:30 до 10:00, пересекает существующую", TaskStatus.NEW,
+                        Duration.ofMinutes(30), dayStart.plusMinutes(30)),
+                new Task("Ранняя", "С 11:00 до 12:00", TaskStatus.NEW, Duration.ofHours(1), dayStart.plusHours(2)),
+                new Subtask("Подзадача без времени", "Без времени", TaskStatus.DONE, Duration.ofMinutes(15),
+                        idEpic),
+                new Subtask("Подзадача без эпика", "Несуществующий эпик", Duration.ofMinutes(15), -1),
+                new Epic("Новый эпик", "Эпик из пачки"));
+        List<Integer> ids = taskManager.addAll(batch);
+
+        Assertions.assertEquals(batch.size(), ids.size(), "Результат должен возвращаться для каждой задачи пачки");
+        Assertions.assertEquals(0, ids.get(0), "Задача, пересекающая более раннюю задачу пачки, не добавляется");
+        Assertions.assertEquals(0, ids.get(2), "Задача, пересекающая существующую задачу, не добавляется");
+        Assertions.assertEquals(0, ids.get(5), "Подзадача несуществующего эпика не добавляется");
+        Assertions.assertTrue(ids.get(1) != 0 && ids.get(3) != 0 && ids.get(4) != 0 && ids.get(6) != 0,
+                "Задачи без пересечений добавляются");
+        Assertions.assertTrue(ids.get(1) < ids.get(3) && ids.get(3) < ids.get(4) && ids.get(4) < ids.get(6),
+                "id должны выдаваться в порядке пачки");
+        Assertions.assertEquals("Ранняя", taskManager.getTaskById(ids.get(3)).getName(),
+                "Добавленная задача должна находиться по id");
+        Assertions.assertEquals(3, taskManager.getPrioritizedTasks().size(),
+                "Задачи со временем должны попадать в отсортированный список");
+
+        Epic epic = taskManager.getEpicById(idEpic);
+        Assertions.assertEquals(List.of(ids.get(1), ids.get(4)), epic.getSubtaskIdList(),
+                "Подзадачи пачки должны привязываться к эпику");
+        Assertions.assertEquals(TaskStatus.DONE, epic.getStatus(), "Статус эпика должен пересчитываться");
+        Assertions.assertEquals(Duration.ofMinutes(45), epic.getDuration(),
+                "Продолжительность эпика должна пересчитываться");
+        Assertions.assertEquals(dayStart.plusHours(1), epic.getStartTime(), "Начало эпика должно пересчитываться");
+        Assertions.assertNotNull(taskManager.getEpicById(ids.get(6)), "Эпик из пачки должен добавляться");
+    }
+
+    /**
+     * постраничное получение отсортированного списка: страница по времени и следующая страница по курсору
+     */
+    @Test
+    void shouldReturnPrioritizedTasksByPages() {
+        LocalDateTime dayStart = LocalDateTime.of(2024, 3, 8, 9, 0);
+        for (int i = 0; i < 7; i++) {
+            taskManager.addTask(new Task("Задача " + i, "Задача страницы", TaskStatus.NEW, Duration.ofMinutes(30),
+                    dayStart.plusHours(i)));
+        }
+        List<Task> allTasks = taskManager.getPrioritizedTasks();
+
+        List<Task> firstPage = taskManager.getPrioritizedTasks(dayStart.plusMinutes(30), 3);
+        Assertions.assertEquals(allTasks.subList(1, 4), firstPage, "Страница должна начинаться с указанного времени");
+        List<Task> secondPage = taskManager.getPrioritizedTasksAfter(firstPage.get(firstPage.size() - 1), 3);
+        Assertions.assertEquals(allTasks.subList(4, 7), secondPage, "Следующая страница должна идти за курсором");
+        Assertions.assertTrue(taskManager.getPrioritizedTasksAfter(secondPage.get(2), 3).isEmpty(),
+                "За последней задачей страниц быть не должно");
+        Assertions.assertEquals(allTasks, taskManager.getPrioritizedTasks(dayStart.minusDays(1), 100),
+                "Неполная страница должна содержать все оставшиеся задачи");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> taskManager.getPrioritizedTasks(dayStart, 0),
+                "Размер страницы должен быть положительным");
+    }
+
+    /**
+     * расписания исполнителей: задачи разных исполнителей могут пересекаться, задачи одного исполнителя - нет
+     */
+    @Test
+    void shouldValidateIntersectionsWithinAssigneeTimelineOnly() {
+        LocalDateTime meetingStart = LocalDateTime.of(2024, 3, 11, 10, 0);
+        Task aliceMeeting = new Task("Встреча Алисы", "С 10:00 до 11:00", TaskStatus.NEW, Duration.ofHours(1),
+                meetingStart);
+        aliceMeeting.setAssignee("Алиса");
+        Integer idAliceMeeting = taskManager.addTask(aliceMeeting);
+        Task bobMeeting = new Task("Встреча Боба", "С 10:00 до 11:00", TaskStatus.NEW, Duration.ofHours(1),
+                meetingStart);
+        bobMeeting.setAssignee("Боб");
+        Integer idBobMeeting = taskManager.addTask(bobMeeting);
+        Assertions.assertNotEquals(0, idBobMeeting, "Задачи разных исполнителей могут пересекаться");
+        Integer idUnassignedTask = taskManager.addTask(new Task("Задача без исполнителя", "С 10:30 до 11:30",
+                TaskStatus.NEW, Duration.ofHours(1), meetingStart.plusMinutes(30)));
+        Assertions.assertNotEquals(0, idUnassignedTask, "Задача без исполнителя проверяется по своему расписанию");
+        Task aliceCall = new Task("Звонок Алисы", "С 10:30 до 10:45", TaskStatus.NEW, Duration.ofMinutes(15),
+                meetingStart.plusMinutes(30));
+        aliceCall.setAssignee("Алиса");
+        Assertions.assertEquals(0, taskManager.addTask(aliceCall), "Задачи одного исполнителя не пересекаются");
+
+        Assertions.assertEquals(3, taskManager.getPrioritizedTasks().size(),
+                "Задачи с одинаковым временем начала должны оставаться в отсортированном списке");
+        Assertions.assertEquals(List.of(idAliceMeeting, idBobMeeting), taskManager.getTasksAt(meetingStart).stream()
+                        .map(Task::getId).collect(Collectors.toList()),
+                "В один момент могут выполняться задачи разных исполнителей");
+        Assertions.assertEquals(List.of(idAliceMeeting), taskManager.getPrioritizedTasksByAssignee("Алиса").stream()
+                .map(Task::getId).collect(Collectors.toList()), "Расписание исполнителя содержит только его задачи");
+        Assertions.assertFalse(taskManager.isTimeFree(meetingStart, meetingStart.plusHours(1)),
+                "Время занято, если занят хотя бы один исполнитель");
+        Assertions.assertTrue(taskManager.isTimeFree(meetingStart, meetingStart.plusHours(1), "Карл"),
+                "Время исполнителя без задач свободно");
+        Assertions.assertEquals(meetingStart.plusHours(1),
+                taskManager.findNextFreeSlot(Duration.ofMinutes(15), meetingStart, "Боб"),
+                "Свободное время ищется в расписании исполнителя");
+
+        Task bobMovedMeeting = new Task(idBobMeeting, "Встреча Боба", "Передана Алисе", TaskStatus.NEW,
+                Duration.ofHours(1), meetingStart.plusMinutes(30));
+        bobMovedMeeting.setAssignee("Алиса");
+        Assertions.assertEquals(0, taskManager.updateTask(bobMovedMeeting),
+                "Задача, переданная исполнителю, проверяется по его расписанию");
+        bobMovedMeeting.setStartTime(meetingStart.plusHours(1));
+        Assertions.assertEquals(idBobMeeting, taskManager.updateTask(bobMovedMeeting),
+                "Задача без пересечений передается исполнителю");
+        Assertions.assertTrue(taskManager.getPrioritizedTasksByAssignee("Боб").isEmpty(),
+                "Переданная задача удаляется из расписания прежнего исполнителя");
+        Assertions.assertEquals(2, taskManager.getPrioritizedTasksByAssignee("Алиса").size(),
+                "Переданная задача добавляется в расписание нового исполнителя");
+    }
+
+    /**
+     * проверка смены исполнителя у задачи, измененной на месте: задача удаляется из расписания прежнего исполнителя
+     */
+    @Test
+    void shouldMoveTaskWithAssigneeChangedInPlace() {
+        LocalDateTime nineOClock = LocalDateTime.of(2024, 3, 11, 9, 0);
+        Task aliceMeeting = new Task("Встреча", "Встреча Алисы", TaskStatus.NEW, Duration.ofMinutes(60), nineOClock);
+        aliceMeeting.setAssignee("Алиса");
+        Integer idAliceMeeting = taskManager.addTask(aliceMeeting);
+        Task carolReview = new Task("Ревью", "Ревью Кэрол", TaskStatus.NEW, Duration.ofMinutes(30),
+                nineOClock.plusHours(5));
+        carolReview.setAssignee("Кэрол");
+        Integer idCarolReview = taskManager.addTask(carolReview);
+
+        Task meeting = taskManager.getTaskById(idAliceMeeting);
+        meeting.setAssignee("Боб");
+        Assertions.assertEquals(idAliceMeeting, taskManager.updateTask(meeting),
+                "Задача с исполнителем без расписания должна обновляться");
+        Assertions.assertTrue(taskManager.getPrioritizedTasksByAssignee("Алиса").isEmpty(),
+                "Задача должна удаляться из расписания прежнего исполнителя");
+        Assertions.assertEquals(List.of(idAliceMeeting), taskManager.getPrioritizedTasksByAssignee("Боб").stream()
+                .map(Task::getId).collect(Collectors.toList()));
+        Task aliceCall = new Task("Звонок", "Звонок Алисы", TaskStatus.NEW, Duration.ofMinutes(30), nineOClock);
+        aliceCall.setAssignee("Алиса");
+        Assertions.assertNotEquals(0, taskManager.addTask(aliceCall),
+                "Время, освобожденное у прежнего исполнителя, должно быть свободным");
+
+        meeting.setAssignee("Кэрол");
+        taskManager.updateTask(meeting);
+        Assertions.assertTrue(taskManager.getPrioritizedTasksByAssignee("Боб").isEmpty(),
+                "Задача должна удаляться из расписания прежнего исполнителя, даже если у нового оно уже есть");
+        Assertions.assertEquals(List.of(idAliceMeeting, idCarolReview), taskManager
+                .getPrioritizedTasksByAssignee("Кэрол").stream().map(Task::getId).collect(Collectors.toList()));
+        taskManager.deleteTaskById(idAliceMeeting);
+        Assertions.assertEquals(List.of(idCarolReview), taskManager.getPrioritizedTasksByAssignee("Кэрол").stream()
+                .map(Task::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * проверка повторяющейся задачи: повторения учитываются в окнах, проверке пересечений и поиске свободного времени
+     */
+    @Test
+    void shouldCheckTasksAgainstRecurringTaskOccurrences() {
+        LocalDateTime firstStandup = LocalDateTime.of(2024, 3, 4, 10, 0);
+        Integer idStandup = taskManager.addRecurringTask(new RecurringTask("Планерка", "Каждый день в 10:00",
+                Duration.ofMinutes(30), firstStandup, new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 1)));
+        Assertions.assertNotEquals(0, idStandup, "Повторяющаяся задача должна добавляться");
+        Assertions.assertTrue(taskManager.getPrioritizedTasks().isEmpty(),
+                "Повторения не хранятся в отсортированном списке");
+
+        LocalDateTime farStandup = firstStandup.plusYears(3);
+        Assertions.assertEquals(0, taskManager.addTask(new Task("Звонок", "Во время планерки", TaskStatus.NEW,
+                Duration.ofMinutes(15), farStandup.plusMinutes(15))), "Задача не должна пересекаться с повторением");
+        Integer idCall = taskManager.addTask(new Task("Звонок", "После планерки", TaskStatus.NEW,
+                Duration.ofMinutes(15), farStandup.plusMinutes(30)));
+        Assertions.assertNotEquals(0, idCall, "Задача между повторениями должна добавляться");
+
+        Assertions.assertEquals(List.of(idStandup, idCall),
+                taskManager.getTasksInWindow(farStandup.minusHours(1), farStandup.plusHours(1)).stream()
+                        .map(Task::getId).collect(Collectors.toList()),
+                "В окно попадают повторения и задачи в порядке начала");
+        Assertions.assertEquals(List.of(idStandup), taskManager.getTasksAt(farStandup.plusMinutes(10)).stream()
+                .map(Task::getId).collect(Collectors.toList()), "В момент выполняется повторение");
+        Assertions.assertFalse(taskManager.isTimeFree(farStandup.plusMinutes(20), farStandup.plusMinutes(25)),
+                "Время повторения занято");
+        Assertions.assertEquals(farStandup.plusMinutes(45),
+                taskManager.findNextFreeSlot(Duration.ofMinutes(30), farStandup.minusMinutes(10)),
+                "Поиск свободного времени пропускает повторения и задачи");
+
+        Assertions.assertEquals(0, taskManager.addRecurringTask(new RecurringTask("Ревью", "По понедельникам",
+                        Duration.ofHours(1), firstStandup.minusMinutes(30),
+                        new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1))),
+                "Повторяющиеся задачи одного исполнителя не должны пересекаться");
+        RecurringTask review = new RecurringTask("Ревью", "По понедельникам до звонка", Duration.ofHours(1),
+                firstStandup.plusHours(1), new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1));
+        Integer idReview = taskManager.addRecurringTask(review);
+        Assertions.assertNotEquals(0, idReview, "Повторяющиеся задачи без пересечений должны добавляться");
+        Assertions.assertEquals(2, taskManager.getRecurringTasksList().size());
+
+        taskManager.deleteRecurringTaskById(idStandup);
+        Assertions.assertTrue(taskManager.isTimeFree(farStandup, farStandup.plusMinutes(30)),
+                "Время удаленной повторяющейся задачи свободно");
+        Assertions.assertNull(taskManager.getRecurringTaskById(idStandup));
+        Assertions.assertEquals(review, taskManager.getRecurringTaskById(idReview));
+    }
+
+    /**
+     * проверка отсортированного списка: задачи с равным временем начала не теряются,
+     * а различие в долях секунды учитывается
+     */
+    @Test
+    void shouldKeepTasksWithEqualStartTimeInPrioritizedTasks() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 11, 9, 0);
+        Integer idFirstMilestone = taskManager.addTask(new Task("Веха 1", "Нулевой продолжительности",
+                TaskStatus.NEW, Duration.ZERO, start));
+        Integer idSecondMilestone = taskManager.addTask(new Task("Веха 2", "Нулевой продолжительности",
+                TaskStatus.NEW, Duration.ZERO, start));
+        Integer idLaterTask = taskManager.addTask(new Task("Задача", "На полсекунды позже", TaskStatus.NEW,
+                Duration.ofMinutes(15), start.plusNanos(500_000_000)));
+        Integer idUnscheduledTask = taskManager.addTask(new Task("Задача без времени", "В конце списка",
+                Duration.ofMinutes(15)));
+
+        Assertions.assertEquals(List.of(idFirstMilestone, idSecondMilestone, idLaterTask),
+                taskManager.getPrioritizedTasks().stream().map(Task::getId).collect(Collectors.toList()),
+                "Задачи с равным временем начала упорядочены по id, доли секунды учитываются");
+
+        Task movedTask = new Task(idUnscheduledTask, "Задача без времени", "Перенесена раньше вех", TaskStatus.NEW,
+                Duration.ZERO);
+        movedTask.setStartTime(start.minusSeconds(1));
+        taskManager.updateTask(movedTask);
+        Assertions.assertEquals(List.of(idUnscheduledTask, idFirstMilestone, idSecondMilestone, idLaterTask),
+                taskManager.getPrioritizedTasks().stream().map(Task::getId).collect(Collectors.toList()),
+                "Ключ сортировки должен обновляться при изменении времени начала");
+    }
+
+    /**
+     * проверка статуса эпика по счетчикам статусов подзадач, в том числе при переходе подзадачи в другой эпик
+     */
+    @Test
+    void shouldKeepEpicStatusesWhenSubtaskMovesBetweenEpics() {
+        Integer idFirstEpic = taskManager.addEpic(new Epic("Эпик 1", "Исходный эпик"));
+        Integer idSecondEpic = taskManager.addEpic(new Epic("Эпик 2", "Эпик, в который переходит подзадача"));
+        Integer idDoneSubtask = taskManager.addSubtask(new Subtask("Подзадача 1", "Выполнена", TaskStatus.DONE,
+                Duration.ofMinutes(15), idFirstEpic));
+        Integer idMovedSubtask = taskManager.addSubtask(new Subtask("Подзадача 2", "Новая", TaskStatus.NEW,
+                Duration.ofMinutes(30), idFirstEpic));
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, taskManager.getEpicById(idFirstEpic).getStatus());
+
+        taskManager.updateSubtask(new Subtask(idMovedSubtask, "Подзадача 2", "Перешла во второй эпик",
+                TaskStatus.NEW, Duration.ofMinutes(30), idSecondEpic));
+        Epic firstEpic = taskManager.getEpicById(idFirstEpic);
+        Epic secondEpic = taskManager.getEpicById(idSecondEpic);
+        Assertions.assertEquals(TaskStatus.DONE, firstEpic.getStatus(), "В исходном эпике остались выполненные подзадачи");
+        Assertions.assertEquals(List.of(idDoneSubtask), firstEpic.getSubtaskIdList());
+        Assertions.assertEquals(Duration.ofMinutes(15), firstEpic.getDuration());
+        Assertions.assertEquals(TaskStatus.NEW, secondEpic.getStatus(), "Эпик получает статус перешедшей подзадачи");
+        Assertions.assertEquals(List.of(idMovedSubtask), secondEpic.getSubtaskIdList());
+
+        taskManager.updateSubtask(new Subtask(idMovedSubtask, "Подзадача 2", "Выполнена", TaskStatus.DONE,
+                Duration.ofMinutes(30), idSecondEpic));
+        Assertions.assertEquals(TaskStatus.DONE, taskManager.getEpicById(idSecondEpic).getStatus());
+        taskManager.deleteSubtaskById(idDoneSubtask);
+        Assertions.assertEquals(TaskStatus.NEW, taskManager.getEpicById(idFirstEpic).getStatus(),
+                "Эпик без подзадач - новый");
+    }
+
+    /**
+     * проверка чтения подзадач эпика без записи подзадач в историю просмотров
+     */
+    @Test
+    void shouldReadEpicSubtasksWithoutRecordingSubtaskViews() {
+        Integer idEpic = taskManager.addEpic(new Epic("Эпик", "Эпик с подзадачами"));
+        Integer idFirstSubtask = taskManager.addSubtask(new Subtask("Подзадача 1", "Первая", TaskStatus.NEW,
+                Duration.ofMinutes(15), idEpic));
+        Integer idSecondSubtask = taskManager.addSubtask(new Subtask("Подзадача 2", "Вторая", TaskStatus.DONE,
+                Duration.ofMinutes(15), idEpic));
+
+        Assertions.assertEquals(List.of(idFirstSubtask, idSecondSubtask),
+                taskManager.getSubtasksListByEpic(idEpic, ReadMode.SILENT).stream()
+                        .map(Task::getId).collect(Collectors.toList()), "Подзадачи возвращаются в порядке эпика");
+        Assertions.assertTrue(taskManager.getHistory().isEmpty(), "Чтение без просмотра не меняет историю");
+
+        taskManager.getSubtasksListByEpic(idEpic, ReadMode.VIEW_EPIC);
+        Assertions.assertEquals(List.of(idEpic), taskManager.getHistory().stream()
+                .map(Task::getId).collect(Collectors.toList()), "В историю записывается только просмотр эпика");
+        Assertions.assertTrue(taskManager.getSubtasksListByEpic(-1, ReadMode.VIEW_EPIC).isEmpty(),
+                "У несуществующего эпика нет подзадач");
+    }
+
+    /**
+     * проверка добавления повторяющейся задачи через addTask и addAll: она хранится правилом, а не одной задачей
+     */
+    @Test
+    void shouldAddRecurringTaskPassedAsTask() {
+        LocalDateTime firstStandup = LocalDateTime.of(2024, 3, 4, 10, 0);
+        Integer idStandup = taskManager.addTask(new RecurringTask("Планерка", "Каждый день в 10:00",
+                Duration.ofMinutes(30), firstStandup, new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 1)));
+        Assertions.assertNotEquals(0, idStandup);
+        Assertions.assertNotNull(taskManager.getRecurringTaskById(idStandup),
+                "Повторяющаяся задача из addTask должна храниться среди повторяющихся");
+        Assertions.assertTrue(taskManager.getTasksList().isEmpty());
+        Assertions.assertTrue(taskManager.getPrioritizedTasks().isEmpty());
+
+        LocalDateTime laterStandup = firstStandup.plusWeeks(1);
+        ArrayList<Integer> ids = taskManager.addAll(List.of(
+                new Task("Звонок", "После планерки", TaskStatus.NEW, Duration.ofMinutes(30),
+                        laterStandup.plusHours(1)),
+                new RecurringTask("Ревью", "Пересекается со звонком", Duration.ofMinutes(30),
+                        firstStandup.plusMinutes(70), new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1)),
+                new RecurringTask("Обед", "Каждый день в 13:00", Duration.ofHours(1), firstStandup.plusHours(3),
+                        new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 1)),
+                new Task("Встреча", "Во время планерки", TaskStatus.NEW, Duration.ofMinutes(15),
+                        laterStandup.plusMinutes(10))));
+        Assertions.assertNotEquals(0, ids.get(0));
+        Assertions.assertEquals(0, ids.get(1), "Повторяющаяся задача пачки проверяется на пересечения с задачами пачки");
+        Assertions.assertNotNull(taskManager.getRecurringTaskById(ids.get(2)),
+                "Повторяющаяся задача из addAll должна храниться среди повторяющихся");
+        Assertions.assertEquals(0, ids.get(3), "Задача пачки не должна пересекаться с повторением");
+        Assertions.assertEquals(List.of(ids.get(0)), taskManager.getTasksList().stream()
+                .map(Task::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(2, taskManager.getRecurringTasksList().size());
+    }
+
+    /**
+     * проверка вложенных эпиков: статус, продолжительность, начало и завершение подзадач учитываются во всех эпиках
+     * выше при добавлении, обновлении, удалении подзадачи и при переносе эпика
+     */
+    @Test
+    void shouldRollUpSubtasksThroughNestedEpics() {
+        Integer idInitiative = taskManager.addEpic(new Epic("Инициатива", "Верхний уровень"));
+        Epic epic = new Epic("Эпик", "Вложен в инициативу");
+        epic.setIdParentEpic(idInitiative);
+        Integer idEpic = taskManager.addEpic(epic);
+        Epic story = new Epic("История", "Вложена в эпик");
+        story.setIdParentEpic(idEpic);
+        Integer idStory = taskManager.addEpic(story);
+        Integer idStorySubtask = taskManager.addSubtask(new Subtask("Подзадача истории", "Выполнена", TaskStatus.DONE,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 5, 1, 10, 0), idStory));
+        Integer idEpicSubtask = taskManager.addSubtask(new Subtask("Подзадача эпика", "Новая", TaskStatus.NEW,
+                Duration.ofMinutes(60), LocalDateTime.of(2024, 5, 2, 10, 0), idEpic));
+
+        Epic initiative = taskManager.getEpicById(idInitiative);
+        Assertions.assertEquals(List.of(idEpic), taskManager.getChildEpicsListByEpic(idInitiative).stream()
+                .map(Task::getId).collect(Collectors.toList()), "Эпик должен быть вложен в инициативу");
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, initiative.getStatus());
+        Assertions.assertEquals(Duration.ofMinutes(90), initiative.getDuration(),
+                "Продолжительность инициативы - сумма подзадач всех уровней");
+        Assertions.assertEquals(LocalDateTime.of(2024, 5, 1, 10, 0), initiative.getStartTime());
+        Assertions.assertEquals(LocalDateTime.of(2024, 5, 2, 11, 0), initiative.getEndTime());
+
+        taskManager.updateSubtask(new Subtask(idEpicSubtask, "Подзадача эпика", "Выполнена", TaskStatus.DONE,
+                Duration.ofMinutes(60), LocalDateTime.of(2024, 5, 2, 10, 0), idEpic));
+        Assertions.assertEquals(TaskStatus.DONE, taskManager.getEpicById(idInitiative).getStatus(),
+                "Обновление подзадачи должно дойти до верхнего уровня");
+        taskManager.deleteSubtaskById(idEpicSubtask);
+        Assertions.assertEquals(Duration.ofMinutes(30), taskManager.getEpicById(idInitiative).getDuration());
+        Assertions.assertEquals(LocalDateTime.of(2024, 5, 1, 10, 30), taskManager.getEpicById(idEpic).getEndTime());
+
+        Epic cycle = new Epic(idInitiative, "Инициатива", "Вложена в свою историю", Duration.ZERO, new ArrayList<>());
+        cycle.setIdParentEpic(idStory);
+        Assertions.assertEquals(0, taskManager.updateEpic(cycle), "Эпик нельзя вложить в его же поддерево");
+        Epic movedStory = new Epic(idStory, "История", "Стала эпиком верхнего уровня", Duration.ZERO,
+                new ArrayList<>(List.of(idStorySubtask)));
+        taskManager.updateEpic(movedStory);
+        Assertions.assertEquals(Duration.ZERO, taskManager.getEpicById(idInitiative).getDuration(),
+                "Перенесенная история не должна учитываться в инициативе");
+        Assertions.assertNull(taskManager.getEpicById(idEpic).getStartTime());
+        Assertions.assertEquals(Duration.ofMinutes(30), taskManager.getEpicById(idStory).getDuration());
+
+        movedStory.setIdParentEpic(idEpic);
+        taskManager.updateEpic(movedStory);
+        taskManager.deleteEpicById(idEpic);
+        Assertions.assertEquals(List.of(idInitiative), taskManager.getEpicsList().stream()
+                .map(Task::getId).collect(Collectors.toList()), "Вложенные эпики удаляются вместе с эпиком");
+        Assertions.assertTrue(taskManager.getSubtasksList().isEmpty());
+        Assertions.assertEquals(TaskStatus.NEW, taskManager.getEpicById(idInitiative).getStatus());
+        Assertions.assertTrue(taskManager.getChildEpicsListByEpic(idInitiative).isEmpty());
+    }
+
+    /**
+     * проверка переноса эпика, измененного на месте: до updateEpic сводные значения учитываются в прежнем эпике выше
+     */
+    @Test
+    void shouldKeepRollupsInLinkedParentUntilEpicIsUpdated() {
+        Integer idInitiative = taskManager.addEpic(new Epic("Инициатива", "Прежний эпик выше"));
+        Integer idRelease = taskManager.addEpic(new Epic("Релиз", "Новый эпик выше"));
+        Epic story = new Epic("История", "Переносится на месте");
+        story.setIdParentEpic(idInitiative);
+        Integer idStory = taskManager.addEpic(story);
+
+        story.setIdParentEpic(idRelease);
+        taskManager.addSubtask(new Subtask("Подзадача истории", "Добавлена до переноса", TaskStatus.NEW,
+                Duration.ofMinutes(45), LocalDateTime.of(2024, 6, 3, 9, 0), idStory));
+        Assertions.assertEquals(Duration.ofMinutes(45), taskManager.getEpicById(idInitiative).getDuration(),
+                "До обновления эпик остается вложен в прежний эпик");
+        Assertions.assertEquals(Duration.ZERO, taskManager.getEpicById(idRelease).getDuration());
+
+        taskManager.updateEpic(story);
+        Assertions.assertEquals(Duration.ZERO, taskManager.getEpicById(idInitiative).getDuration(),
+                "После обновления сводные значения исключаются из прежнего эпика");
+        Assertions.assertTrue(taskManager.getChildEpicsListByEpic(idInitiative).isEmpty());
+        Assertions.assertEquals(Duration.ofMinutes(45), taskManager.getEpicById(idRelease).getDuration());
+        Assertions.assertEquals(List.of(idStory), taskManager.getChildEpicsListByEpic(idRelease).stream()
+                .map(Task::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldKeepEarliestStartAndLatestEndOfChildEpics() {
+        Integer idInitiative = taskManager.addEpic(new Epic("Инициатива", "Верхний уровень"));
+        Epic firstEpic = new Epic("Первый эпик", "Вложен в инициативу");
+        firstEpic.setIdParentEpic(idInitiative);
+        Integer idFirstEpic = taskManager.addEpic(firstEpic);
+        Epic story = new Epic("История", "Вложена в первый эпик");
+        story.setIdParentEpic(idFirstEpic);
+        Integer idStory = taskManager.addEpic(story);
+        Epic secondEpic = new Epic("Второй эпик", "Вложен в инициативу");
+        secondEpic.setIdParentEpic(idInitiative);
+        Integer idSecondEpic = taskManager.addEpic(secondEpic);
+        Integer idEarlySubtask = taskManager.addSubtask(new Subtask("Ранняя подзадача", "Истории", TaskStatus.NEW,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 7, 1, 9, 0), idStory));
+        taskManager.addSubtask(new Subtask("Поздняя подзадача", "Истории", TaskStatus.NEW,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 7, 3, 9, 0), idStory));
+        taskManager.addSubtask(new Subtask("Подзадача", "Второго эпика", TaskStatus.DONE,
+                Duration.ofMinutes(60), LocalDateTime.of(2024, 7, 2, 9, 0), idSecondEpic));
+
+        Epic initiative = taskManager.getEpicById(idInitiative);
+        Assertions.assertEquals(LocalDateTime.of(2024, 7, 1, 9, 0), initiative.getStartTime());
+        Assertions.assertEquals(LocalDateTime.of(2024, 7, 3, 9, 30), initiative.getEndTime());
+        Assertions.assertEquals(Duration.ofMinutes(120), initiative.getDuration());
+
+        taskManager.deleteSubtaskById(idEarlySubtask);
+        Assertions.assertEquals(LocalDateTime.of(2024, 7, 2, 9, 0),
+                taskManager.getEpicById(idInitiative).getStartTime(),
+                "Начало инициативы - самое раннее начало вложенных эпиков после удаления подзадачи истории");
+
+        Epic movedStory = new Epic(idStory, "История", "Вложена во второй эпик", Duration.ZERO,
+                taskManager.getEpicById(idStory).getSubtaskIdList());
+        movedStory.setIdParentEpic(idSecondEpic);
+        taskManager.updateEpic(movedStory);
+        Assertions.assertNull(taskManager.getEpicById(idFirstEpic).getStartTime(),
+                "Перенесенная история не должна учитываться в прежнем эпике");
+        Epic updatedSecondEpic = taskManager.getEpicById(idSecondEpic);
+        Assertions.assertEquals(LocalDateTime.of(2024, 7, 2, 9, 0), updatedSecondEpic.getStartTime());
+        Assertions.assertEquals(LocalDateTime.of(2024, 7, 3, 9, 30), updatedSecondEpic.getEndTime());
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, updatedSecondEpic.getStatus());
+        Epic updatedInitiative = taskManager.getEpicById(idInitiative);
+        Assertions.assertEquals(LocalDateTime.of(2024, 7, 3, 9, 30), updatedInitiative.getEndTime());
+        Assertions.assertEquals(Duration.ofMinutes(90), updatedInitiative.getDuration());
+
+        taskManager.deleteEpicById(idSecondEpic);
+        Epic emptyInitiative = taskManager.getEpicById(idInitiative);
+        Assertions.assertNull(emptyInitiative.getStartTime());
+        Assertions.assertNull(emptyInitiative.getEndTime());
+        Assertions.assertEquals(TaskStatus.NEW, emptyInitiative.getStatus());
+    }
 }
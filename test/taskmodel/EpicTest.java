@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 
 public class EpicTest {
@@ -23,4 +24,42 @@ public class EpicTest {
         Assertions.assertNotEquals(epicOneWithId1, epicThreeWithId2, "Экземпляры Epic с разным id не должны быть равны");
     }
 
+    @Test
+    public void shouldDeriveStatusFromSubtaskStatusCounts() {
+        Epic epic = new Epic("Epic Status Test", "Description Status Test");
+        epic.addSubtaskStatus(TaskStatus.NEW);
+        epic.addSubtaskStatus(TaskStatus.DONE);
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus(), "Эпик с разными статусами подзадач - в работе");
+        epic.removeSubtaskStatus(TaskStatus.NEW);
+        Assertions.assertEquals(TaskStatus.DONE, epic.getStatus(), "Эпик с выполненными подзадачами - выполнен");
+        epic.addSubtaskStatus(TaskStatus.IN_PROGRESS);
+        epic.removeSubtaskStatus(TaskStatus.DONE);
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
+        epic.clearSubtaskStatuses();
+        Assertions.assertEquals(TaskStatus.NEW, epic.getStatus(), "Эпик без подзадач - новый");
+    }
+
+    @Test
+    public void shouldKeepEarliestStartAndLatestEndOfSubtasks() {
+        Epic epic = new Epic("Epic Time Test", "Description Time Test");
+        LocalDateTime start = LocalDateTime.of(2024, 3, 11, 9, 0);
+        Subtask firstSubtask = new Subtask("Subtask 1", "Description 1", TaskStatus.NEW, Duration.ofMinutes(30), start, 1);
+        Subtask sameStartSubtask = new Subtask("Subtask 2", "Description 2", TaskStatus.NEW, Duration.ofMinutes(60),
+                start, 1);
+        Subtask unscheduledSubtask = new Subtask("Subtask 3", "Description 3", TaskStatus.NEW, Duration.ofMinutes(15), 1);
+        epic.addSubtaskTime(firstSubtask);
+        epic.addSubtaskTime(sameStartSubtask);
+        epic.addSubtaskTime(unscheduledSubtask);
+        Assertions.assertEquals(Duration.ofMinutes(105), epic.getDuration(), "Продолжительность - сумма всех подзадач");
+        Assertions.assertEquals(start, epic.getStartTime());
+        Assertions.assertEquals(start.plusHours(1), epic.getEndTime());
+
+        epic.removeSubtaskTime(sameStartSubtask);
+        Assertions.assertEquals(start, epic.getStartTime(), "Равное начало другой подзадачи должно сохраняться");
+        Assertions.assertEquals(start.plusMinutes(30), epic.getEndTime());
+        epic.removeSubtaskTime(firstSubtask);
+        Assertions.assertNull(epic.getStartTime(), "Без подзадач со временем у эпика нет начала");
+        Assertions.assertNull(epic.getEndTime());
+        Assertions.assertEquals(Duration.ofMinutes(15), epic.getDuration());
+    }
 }
@@ -0,0 +1,57 @@
+package taskmodel;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+public class IntOrderedSetTest {
+
+    @Test
+    public void shouldKeepInsertionOrderAfterRemovals() {
+        IntOrderedSet set = new IntOrderedSet();
+        for (int value = 1; value <= 20; value++) {
+            set.add(value);
+        }
+        Assertions.assertFalse(set.add(5), "Повторное добавление не должно менять множество");
+        for (int value = 1; value <= 20; value += 2) {
+            set.remove(value);
+        }
+        Assertions.assertFalse(set.remove(1), "Удаление отсутствующего значения не должно менять множество");
+        set.add(1);
+
+        Assertions.assertArrayEquals(new int[]{2, 4, 6, 8, 10, 12, 14, 16, 18, 20, 1}, set.toArray(),
+                "Значения перебираются в порядке добавления");
+        Assertions.assertEquals(11, set.size());
+        Assertions.assertTrue(set.contains(1));
+        Assertions.assertFalse(set.contains(3));
+        PrimitiveIterator.OfInt iterator = set.iterator();
+        Assertions.assertEquals(2, iterator.nextInt());
+        Assertions.assertEquals("[2, 4, 6, 8, 10, 12, 14, 16, 18, 20, 1]", set.toString());
+    }
+
+    @Test
+    public void shouldMatchLinkedHashSetOnRandomOperations() {
+        Random random = new Random(42);
+        IntOrderedSet set = new IntOrderedSet();
+        LinkedHashSet<Integer> expected = new LinkedHashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            int value = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                Assertions.assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                Assertions.assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        Assertions.assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), set.toArray(),
+                "Порядок и состав должны совпадать с LinkedHashSet");
+        for (int value = -1_000; value < 1_000; value++) {
+            Assertions.assertEquals(expected.contains(value), set.contains(value));
+        }
+        set.clear();
+        Assertions.assertTrue(set.isEmpty());
+        Assertions.assertFalse(set.iterator().hasNext());
+    }
+}
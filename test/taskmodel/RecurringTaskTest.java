@@ -0,0 +1,60 @@
+package taskmodel;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class RecurringTaskTest {
+
+    @Test
+    public void shouldExpandOccurrencesOnlyInsideRequestedWindow() {
+        LocalDateTime firstStart = LocalDateTime.of(2024, 3, 4, 9, 0); //понедельник
+        RecurringTask standup = new RecurringTask(1, "Планерка", "Каждые два дня", TaskStatus.NEW,
+                Duration.ofMinutes(15), firstStart, new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 2));
+
+        List<Task> occurrences = standup.getOccurrencesStartingBetween(LocalDateTime.of(2025, 3, 1, 0, 0),
+                LocalDateTime.of(2025, 3, 7, 0, 0));
+        Assertions.assertEquals(List.of(LocalDateTime.of(2025, 3, 1, 9, 0), LocalDateTime.of(2025, 3, 3, 9, 0),
+                        LocalDateTime.of(2025, 3, 5, 9, 0)),
+                occurrences.stream().map(Task::getStartTime).collect(Collectors.toList()),
+                "Повторения строятся только внутри окна, периоды до него пропускаются");
+        Assertions.assertEquals(1, occurrences.get(0).getId(), "Повторение должно иметь id повторяющейся задачи");
+        Assertions.assertEquals(List.of(LocalDateTime.of(2024, 3, 4, 9, 0)),
+                standup.getOccurrences(LocalDateTime.of(2024, 3, 4, 9, 10), LocalDateTime.of(2024, 3, 5, 0, 0))
+                        .stream().map(Task::getStartTime).collect(Collectors.toList()),
+                "В окно попадает повторение, начавшееся раньше и еще не завершившееся");
+    }
+
+    @Test
+    public void shouldExpandWeeklyOccurrencesByDaysUntilDate() {
+        LocalDateTime firstStart = LocalDateTime.of(2024, 3, 5, 14, 0); //вторник
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 2,
+                EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.THURSDAY), LocalDate.of(2024, 3, 21));
+        RecurringTask review = new RecurringTask("Ревью", "Раз в две недели", Duration.ofHours(1), firstStart, rule);
+
+        Assertions.assertEquals(List.of(LocalDateTime.of(2024, 3, 7, 14, 0), LocalDateTime.of(2024, 3, 18, 14, 0),
+                        LocalDateTime.of(2024, 3, 21, 14, 0)),
+                review.getOccurrencesStartingBetween(firstStart.minusDays(10), firstStart.plusYears(1)).stream()
+                        .map(Task::getStartTime).collect(Collectors.toList()),
+                "Повторения строятся по дням недели через период и не позже даты окончания");
+    }
+
+    @Test
+    public void shouldParseRuleFromItsString() {
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 2,
+                EnumSet.of(DayOfWeek.THURSDAY, DayOfWeek.MONDAY), LocalDate.of(2024, 12, 31));
+        Assertions.assertEquals("FREQ=WEEKLY;INTERVAL=2;BYDAY=MONDAY,THURSDAY;UNTIL=2024-12-31", rule.toString());
+        Assertions.assertEquals(rule, RecurrenceRule.parse(rule.toString()), "Правило должно восстанавливаться из строки");
+        Assertions.assertEquals(new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 1), RecurrenceRule.parse("FREQ=DAILY"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("INTERVAL=2"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;BYDAY=MONDAY"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=HOURLY"));
+    }
+}